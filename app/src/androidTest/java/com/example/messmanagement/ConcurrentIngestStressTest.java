@@ -0,0 +1,144 @@
+package com.example.messmanagement;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * One writer ingests remote meal batches (like FirestoreSyncWorker / PullSync)
+ * while several readers run the screens' monthly queries on the same helper.
+ * With WAL nobody gets SQLITE_BUSY, and every read sees whole batches only.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class ConcurrentIngestStressTest {
+
+    private static final String DB_NAME = "concurrent_ingest_test.db";
+    private static final int MEMBERS = 10;
+    private static final int DAYS = 28;
+    private static final int ROUNDS = 100;
+    private static final int READERS = 3;
+    private static final String INGEST_MONTH = "2024-06"; // outside the generated history
+
+    private Context ctx;
+    private MessDBHelper db;
+    private String historyMonth;
+
+    @Before
+    public void setUp() throws Exception {
+        ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        ctx.deleteDatabase(DB_NAME);
+        db = MessDBHelper.openScratch(ctx, DB_NAME);
+
+        SyntheticDataset.Config cfg = new SyntheticDataset.Config();
+        cfg.members = MEMBERS;
+        cfg.startDate = "2023-01-01";
+        cfg.days = 120;
+        historyMonth = SyntheticDataset.generate(db, cfg).lastDate.substring(0, 7);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        ctx.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void helperRunsInWalMode() {
+        Cursor c = db.getReadableDatabase().rawQuery("PRAGMA journal_mode", null);
+        assertTrue(c.moveToFirst());
+        assertEquals("wal", c.getString(0).toLowerCase(Locale.US));
+        c.close();
+    }
+
+    @Test
+    public void readersSeeWholeBatchesWhileWorkerIngests() throws Exception {
+        int rows = MEMBERS * DAYS;
+        // before the first batch, then a round with breakfast off (2 meals a row) or on (3)
+        Set<Integer> consistent = new HashSet<>(Arrays.asList(0, 2 * rows, 3 * rows));
+
+        ConcurrentLinkedQueue<String> torn = new ConcurrentLinkedQueue<>();
+        AtomicBoolean ingesting = new AtomicBoolean(true);
+        AtomicInteger readsDuringIngest = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(READERS + 1);
+
+        try {
+            Future<?> writer = pool.submit(() -> {
+                start.await();
+                try {
+                    for (int r = 0; r < ROUNDS; r++) db.upsertMealsFromRemote(batch(r % 2));
+                } finally {
+                    ingesting.set(false);
+                }
+                return null;
+            });
+
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < READERS; i++) {
+                String member = SyntheticDataset.memberEmail(i);
+                readers.add(pool.submit(() -> {
+                    start.await();
+                    while (ingesting.get()) {
+                        int total = db.getMonthlyTotalMealsAllMembers(INGEST_MONTH);
+                        if (!consistent.contains(total)) torn.add(String.valueOf(total));
+                        db.getMonthlyMealCountsForMember(member, INGEST_MONTH);
+                        db.computeMonthlyLedger(historyMonth);
+                        db.getMonthlyOtherExpensesForMember(member, historyMonth);
+                        if (ingesting.get()) readsDuringIngest.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            // a SQLiteDatabaseLockedException on any thread fails the test here
+            writer.get(3, TimeUnit.MINUTES);
+            for (Future<?> reader : readers) reader.get(1, TimeUnit.MINUTES);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertTrue("reads saw half-applied batches: " + torn, torn.isEmpty());
+        assertTrue("no read finished while the writer was ingesting", readsDuringIngest.get() > 0);
+        int last = (ROUNDS - 1) % 2;
+        assertEquals((2 + last) * rows, db.getMonthlyTotalMealsAllMembers(INGEST_MONTH));
+    }
+
+    // every member, every day of INGEST_MONTH: lunch + dinner, breakfast as given
+    private static List<RemoteMeal> batch(int breakfast) {
+        List<RemoteMeal> meals = new ArrayList<>(MEMBERS * DAYS);
+        for (int m = 0; m < MEMBERS; m++) {
+            for (int d = 1; d <= DAYS; d++) {
+                meals.add(new RemoteMeal(SyntheticDataset.memberEmail(m),
+                        String.format(Locale.US, "%s-%02d", INGEST_MONTH, d), breakfast, 1, 1));
+            }
+        }
+        return meals;
+    }
+}
@@ -0,0 +1,334 @@
+package com.example.messmanagement;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Times MessDBHelper's read aggregates and remote-upsert paths against a
+ * SyntheticDataset in a scratch database (the app's own db is never touched),
+ * a cold ingest of INGEST_DOCS remote docs into an empty database (one batch vs
+ * one call per doc, as the snapshot listeners used to do), the meal toggle rate,
+ * plus KeyValueDB's cold start (open + first read) on both of its backends.
+ *
+ * Output is JSON lines: one "meta" line, then one line per operation with
+ * median/p95/max in microseconds. Written to cacheDir/db_bench.jsonl and logcat
+ * (tag "DbBenchmark"), so runs can be pulled and diffed over time.
+ *
+ * Run by DbBenchmarkTest: ./gradlew :app:connectedDebugAndroidTest
+ */
+public class DbBenchmark {
+
+    private static final String TAG = "DbBenchmark";
+    private static final String DB_NAME = "bench_mess.db";
+    private static final int WARMUP = 3;
+    private static final int RUNS = 25;
+
+    // cold ingest: a fresh database per run, so every doc is an insert
+    private static final String INGEST_DB_NAME = "bench_ingest.db";
+    private static final int INGEST_DOCS = 5000;
+    private static final int INGEST_MEMBERS = 50;
+    private static final int INGEST_RUNS = 3;
+
+    // meal taps: members x days x 3 meals, in a month the dataset never wrote
+    private static final String TOGGLE_MONTH = "2099-01";
+    private static final int TOGGLE_MEMBERS = 10;
+    private static final int TOGGLE_DAYS = 20;
+
+    // KeyValueDB cold start: session keys, rewritten a few times since the last compaction
+    private static final String KV_DB_NAME = "bench_key_value.db";
+    private static final int KV_KEYS = 40;
+    private static final int KV_ROUNDS = 10;
+
+    private interface Op {
+        Object run() throws Exception;
+    }
+
+    private interface DbOp {
+        void run(MessDBHelper db) throws Exception;
+    }
+
+    private interface TapOp {
+        boolean tap(int i);
+    }
+
+    private final List<String> lines = new ArrayList<>();
+
+    public static File run(Context context, SyntheticDataset.Config cfg) throws Exception {
+        return new DbBenchmark().runInternal(context.getApplicationContext(), cfg);
+    }
+
+    private File runInternal(Context ctx, SyntheticDataset.Config cfg) throws Exception {
+        ctx.deleteDatabase(DB_NAME);
+        MessDBHelper db = MessDBHelper.openScratch(ctx, DB_NAME);
+        try {
+            long t0 = System.nanoTime();
+            SyntheticDataset.Result data = SyntheticDataset.generate(db, cfg);
+            long genMs = (System.nanoTime() - t0) / 1_000_000;
+
+            lines.add(String.format(Locale.US,
+                    "{\"type\":\"meta\",\"time\":%d,\"device\":\"%s\",\"sdk\":%d,\"seed\":%d,\"members\":%d," +
+                            "\"meal_rows\":%d,\"expenses\":%d,\"payments\":%d,\"price_changes\":%d,\"generate_ms\":%d," +
+                            "\"db_bytes\":%d}",
+                    System.currentTimeMillis(), json(Build.MODEL), Build.VERSION.SDK_INT, cfg.seed, data.members,
+                    data.mealRows, data.expenses, data.payments, data.priceChanges, genMs,
+                    usedBytes(db.getReadableDatabase())));
+
+            String month = data.lastDate.substring(0, 7);
+            String member = SyntheticDataset.memberEmail(cfg.members / 2);
+
+            // monthly aggregates
+            time("getMonthlyPaidByMember", () -> db.getMonthlyPaidByMember(member, month));
+            time("getMonthlyTotalPaidAllMembers", () -> db.getMonthlyTotalPaidAllMembers(month));
+            time("getMonthlyMealCountsForMember", () -> db.getMonthlyMealCountsForMember(member, month));
+            time("getMonthlyTotalMealsAllMembers", () -> db.getMonthlyTotalMealsAllMembers(month));
+            time("getMonthlyOtherExpensesForMember", () -> db.getMonthlyOtherExpensesForMember(member, month));
+            time("getMonthlyTotalExpenses", () -> db.getMonthlyTotalExpenses(month));
+            time("getMonthlyMealCostForMember", () -> db.getMonthlyMealCostForMember(member, month));
+            time("getMonthlyTotalMealCostAllMembers", () -> db.getMonthlyTotalMealCostAllMembers(month));
+            time("getMonthlyOtherExpenses", () -> db.getMonthlyOtherExpenses(month));
+            time("getMemberLocalExpenseAndPaymentForMonth", () -> db.getMemberLocalExpenseAndPaymentForMonth(member, month));
+            time("getTotalLocalOtherExpensesForMonth", () -> db.getTotalLocalOtherExpensesForMonth(month));
+            time("getMemberExpenseBreakdown", () -> db.getMemberExpenseBreakdown(member, month));
+            time("computeMemberLedger", () -> db.computeMemberLedger(member, month));
+            time("computeMonthlyLedger", () -> db.computeMonthlyLedger(month));
+            time("getDueOutbox", () -> db.getDueOutbox(System.currentTimeMillis(), 500));
+            time("getExpensesByMemberPage", () -> db.getExpensesByMemberPage(member, null, MessDBHelper.EXPENSE_PAGE_SIZE));
+
+            // remote upserts: a month snapshot that changes nothing, then one that flips every row
+            List<RemoteMeal> same = new ArrayList<>();
+            List<RemoteMeal> flipped = new ArrayList<>();
+            String upsertMonth = data.firstDate.substring(0, 7);
+            for (int i = 0; i < cfg.members; i++) {
+                for (int dd = 1; dd <= 28; dd++) {
+                    String date = String.format(Locale.US, "%s-%02d", upsertMonth, dd);
+                    int[] cur = db.getMealsForDate(SyntheticDataset.memberEmail(i), date);
+                    same.add(new RemoteMeal(SyntheticDataset.memberEmail(i), date, cur[0], cur[1], cur[2]));
+                    flipped.add(new RemoteMeal(SyntheticDataset.memberEmail(i), date, 1 - cur[0], cur[1], cur[2]));
+                }
+            }
+            time("upsertMealsFromRemote_unchanged_" + same.size(), () -> {
+                db.upsertMealsFromRemote(same);
+                return null;
+            });
+            timeOnce("upsertMealsFromRemote_changed_" + flipped.size(), () -> {
+                db.upsertMealsFromRemote(flipped);
+                return null;
+            });
+
+            List<RemoteExpense> monthExpenses = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                monthExpenses.add(new RemoteExpense("bench-e-" + i, upsertMonth + "-15", "Bench", "Food",
+                        SyntheticDataset.memberEmail(i % cfg.members), Money.paisa(100 + i)));
+            }
+            time("replaceSyncedExpensesForMonth_" + monthExpenses.size(),
+                    () -> {
+                        db.replaceSyncedExpensesForMonth(upsertMonth, monthExpenses);
+                        return null;
+                    });
+
+            // meal button taps: first pass sets every meal (0 -> 1), second pass is all no-op taps
+            String[] mealNames = {"breakfast", "lunch", "dinner"};
+            int taps = TOGGLE_MEMBERS * TOGGLE_DAYS * mealNames.length;
+            TapOp tap = i -> db.setMealForDate(SyntheticDataset.memberEmail(i / (TOGGLE_DAYS * 3)),
+                    String.format(Locale.US, "%s-%02d", TOGGLE_MONTH, 1 + (i / 3) % TOGGLE_DAYS),
+                    mealNames[i % 3], 1);
+            timeTaps("setMealForDate_changed", taps, tap, true);
+            timeTaps("setMealForDate_unchanged", taps, tap, false);
+        } finally {
+            db.close();
+            ctx.deleteDatabase(DB_NAME);
+        }
+
+        benchColdIngest(ctx);
+        benchKeyValueBackends(ctx);
+
+        File out = new File(ctx.getCacheDir(), "db_bench.jsonl");
+        try (FileWriter w = new FileWriter(out, false)) {
+            for (String line : lines) {
+                w.write(line);
+                w.write('\n');
+                Log.i(TAG, line);
+            }
+        }
+        return out;
+    }
+
+    // INGEST_DOCS meals and INGEST_DOCS expenses that none of the rows exist for yet
+    private void benchColdIngest(Context ctx) throws Exception {
+        List<RemoteMeal> meals = new ArrayList<>();
+        List<RemoteExpense> expenses = new ArrayList<>();
+        int days = INGEST_DOCS / INGEST_MEMBERS;
+        for (int i = 0; i < INGEST_DOCS; i++) {
+            String member = SyntheticDataset.memberEmail(i % INGEST_MEMBERS);
+            String date = ingestDate(i / INGEST_MEMBERS % days);
+            meals.add(new RemoteMeal(member, date, i % 2, 1, (i / 2) % 2));
+            expenses.add(new RemoteExpense("bench-cold-e-" + i, date, "Bench", "Food", member, Money.paisa(50 + i % 500)));
+        }
+
+        timeFresh(ctx, "upsertMealsFromRemote_cold_" + meals.size(), db -> db.upsertMealsFromRemote(meals));
+        timeFresh(ctx, "upsertMealsFromRemote_cold_one_per_call_" + meals.size(), db -> {
+            for (RemoteMeal m : meals) db.upsertMealsFromRemote(Collections.singletonList(m));
+        });
+        timeFresh(ctx, "upsertExpensesFromRemote_cold_" + expenses.size(), db -> db.upsertExpensesFromRemote(expenses));
+        timeFresh(ctx, "upsertExpensesFromRemote_cold_one_per_call_" + expenses.size(), db -> {
+            for (RemoteExpense e : expenses) db.upsertExpensesFromRemote(Collections.singletonList(e));
+        });
+    }
+
+    // consecutive days from 2024-01-01
+    private static String ingestDate(int dayIndex) {
+        Calendar cal = Calendar.getInstance(Locale.US);
+        cal.clear();
+        cal.set(2024, Calendar.JANUARY, 1);
+        cal.add(Calendar.DAY_OF_MONTH, dayIndex);
+        return String.format(Locale.US, "%tF", cal);
+    }
+
+    // each run is a fresh open, like the first getValueByKey after process start
+    private void benchKeyValueBackends(Context ctx) throws Exception {
+        Map<String, String> rows = new LinkedHashMap<>();
+        for (int i = 0; i < KV_KEYS; i++) rows.put("bench_key_" + i, "bench_value_" + i);
+        String firstKey = "bench_key_0";
+
+        File logFile = new File(ctx.getCacheDir(), "bench_key_value.log");
+        logFile.delete();
+        KeyValueLog writer = new KeyValueLog(logFile);
+        writer.open();
+        for (int round = 0; round < KV_ROUNDS; round++) writer.append(rows, null);
+        writer.close();
+
+        // same table and settings as KeyValueDB's SQLite backend
+        ctx.deleteDatabase(KV_DB_NAME);
+        String dbPath = ctx.getDatabasePath(KV_DB_NAME).getPath();
+        SQLiteDatabase kv = ctx.openOrCreateDatabase(KV_DB_NAME, Context.MODE_PRIVATE, null);
+        kv.enableWriteAheadLogging();
+        kv.execSQL("CREATE TABLE IF NOT EXISTS key_value_pairs (keyname TEXT PRIMARY KEY, itemvalue TEXT)");
+        for (Map.Entry<String, String> e : rows.entrySet()) {
+            ContentValues cv = new ContentValues();
+            cv.put("keyname", e.getKey());
+            cv.put("itemvalue", e.getValue());
+            kv.insertWithOnConflict("key_value_pairs", null, cv, SQLiteDatabase.CONFLICT_REPLACE);
+        }
+        kv.close();
+
+        try {
+            time("kv_cold_open_first_read_log", () -> {
+                KeyValueLog log = new KeyValueLog(logFile);
+                try {
+                    return log.open().get(firstKey);
+                } finally {
+                    log.close();
+                }
+            });
+            time("kv_cold_open_first_read_sqlite", () -> {
+                SQLiteDatabase sqlite = SQLiteDatabase.openDatabase(dbPath, null,
+                        SQLiteDatabase.OPEN_READWRITE | SQLiteDatabase.ENABLE_WRITE_AHEAD_LOGGING);
+                try {
+                    Map<String, String> all = new HashMap<>();
+                    Cursor c = sqlite.rawQuery("SELECT keyname, itemvalue FROM key_value_pairs", null);
+                    while (c.moveToNext()) all.put(c.getString(0), c.getString(1));
+                    c.close();
+                    return all.get(firstKey);
+                } finally {
+                    sqlite.close();
+                }
+            });
+        } finally {
+            logFile.delete();
+            ctx.deleteDatabase(KV_DB_NAME);
+        }
+    }
+
+    private void time(String name, Op op) throws Exception {
+        for (int i = 0; i < WARMUP; i++) op.run();
+
+        long[] us = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long t = System.nanoTime();
+            op.run();
+            us[i] = (System.nanoTime() - t) / 1000;
+        }
+        Arrays.sort(us);
+        lines.add(String.format(Locale.US,
+                "{\"type\":\"op\",\"op\":\"%s\",\"runs\":%d,\"median_us\":%d,\"p95_us\":%d,\"max_us\":%d}",
+                name, RUNS, us[RUNS / 2], us[(int) Math.ceil(RUNS * 0.95) - 1], us[RUNS - 1]));
+    }
+
+    // each run gets a new empty scratch database; only op itself is timed
+    private void timeFresh(Context ctx, String name, DbOp op) throws Exception {
+        long[] us = new long[INGEST_RUNS];
+        for (int i = 0; i < INGEST_RUNS; i++) {
+            ctx.deleteDatabase(INGEST_DB_NAME);
+            MessDBHelper db = MessDBHelper.openScratch(ctx, INGEST_DB_NAME);
+            try {
+                db.getWritableDatabase(); // schema creation is not part of the ingest
+                long t = System.nanoTime();
+                op.run(db);
+                us[i] = (System.nanoTime() - t) / 1000;
+            } finally {
+                db.close();
+                ctx.deleteDatabase(INGEST_DB_NAME);
+            }
+        }
+        Arrays.sort(us);
+        lines.add(String.format(Locale.US,
+                "{\"type\":\"op\",\"op\":\"%s\",\"runs\":%d,\"median_us\":%d,\"p95_us\":%d,\"max_us\":%d}",
+                name, INGEST_RUNS, us[INGEST_RUNS / 2], us[INGEST_RUNS - 1], us[INGEST_RUNS - 1]));
+    }
+
+    // one timing per tap, plus taps per second over the whole pass
+    private void timeTaps(String name, int taps, TapOp op, boolean expectChanged) {
+        long[] us = new long[taps];
+        long start = System.nanoTime();
+        for (int i = 0; i < taps; i++) {
+            long t = System.nanoTime();
+            boolean changed = op.tap(i);
+            us[i] = (System.nanoTime() - t) / 1000;
+            if (changed != expectChanged) throw new IllegalStateException(name + ": tap " + i + " changed=" + changed);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Arrays.sort(us);
+        lines.add(String.format(Locale.US,
+                "{\"type\":\"op\",\"op\":\"%s\",\"runs\":%d,\"median_us\":%d,\"p95_us\":%d,\"max_us\":%d," +
+                        "\"per_sec\":%.0f}",
+                name, taps, us[taps / 2], us[(int) Math.ceil(taps * 0.95) - 1], us[taps - 1], taps / seconds));
+    }
+
+    // for writes whose second run would be a different (no-op) case
+    private void timeOnce(String name, Op op) throws Exception {
+        long t = System.nanoTime();
+        op.run();
+        long us = (System.nanoTime() - t) / 1000;
+        lines.add(String.format(Locale.US,
+                "{\"type\":\"op\",\"op\":\"%s\",\"runs\":1,\"median_us\":%d,\"p95_us\":%d,\"max_us\":%d}",
+                name, us, us, us));
+    }
+
+    private static String json(String s) {
+        return s == null ? "" : s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    // in-use pages only, so the number compares across schema versions without a VACUUM
+    private static long usedBytes(SQLiteDatabase db) {
+        long pages = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null)
+                - DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+        return pages * DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.messmanagement;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs DbBenchmark on the default SyntheticDataset; results are in logcat
+ * (tag "DbBenchmark") and the app's cacheDir/db_bench.jsonl.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class DbBenchmarkTest {
+
+    @Test
+    public void writesMetaThenOneLinePerOperation() throws Exception {
+        Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        File out = DbBenchmark.run(ctx, new SyntheticDataset.Config());
+
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader r = new BufferedReader(new FileReader(out))) {
+            for (String line; (line = r.readLine()) != null; ) lines.add(line);
+        }
+        assertTrue(lines.size() > 1);
+        assertTrue(lines.get(0), lines.get(0).contains("\"type\":\"meta\""));
+        for (String line : lines.subList(1, lines.size())) {
+            assertTrue(line, line.contains("\"type\":\"op\""));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.messmanagement;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * v9: month filters are half-open date ranges, so the monthly reads search
+ * meals_daily / expenses through an index instead of scanning them.
+ * Each case captures the SQL one helper call ran and checks its EXPLAIN QUERY PLAN.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MonthRangePlanTest {
+
+    private static final String DB_NAME = "month_range_plan_test.db";
+
+    private Context ctx;
+    private MessDBHelper db;
+    private String member;
+    private String month;
+
+    @Before
+    public void setUp() throws Exception {
+        ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        ctx.deleteDatabase(DB_NAME);
+        db = MessDBHelper.openScratch(ctx, DB_NAME);
+
+        SyntheticDataset.Config cfg = new SyntheticDataset.Config();
+        cfg.members = 8;
+        cfg.days = 90;
+        SyntheticDataset.Result data = SyntheticDataset.generate(db, cfg);
+        member = SyntheticDataset.memberEmail(1);
+        month = data.lastDate.substring(0, 7);
+    }
+
+    @After
+    public void tearDown() {
+        QueryStats.setCapture(false);
+        db.close();
+        ctx.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void v9IndexesExist() {
+        Cursor c = db.getReadableDatabase().rawQuery(
+                "SELECT name FROM sqlite_master WHERE type='index' AND name IN (?, ?, ?)",
+                new String[]{"idx_expenses_date_cat_paidby_amount", "idx_expenses_remote_id", "idx_meals_daily_date_member"});
+        int found = c.getCount();
+        c.close();
+        assertEquals(3, found);
+    }
+
+    @Test
+    public void allMembersMealMonthSearchesDateIndex() {
+        assertSearches("idx_meals_daily_date_member (meal_date>? AND meal_date<?)",
+                () -> db.getMonthlyTotalMealsAllMembers(month));
+    }
+
+    @Test
+    public void memberMealMonthSearchesPrimaryKeyRange() {
+        assertSearches("(member_id=? AND meal_date>? AND meal_date<?)",
+                () -> db.getMonthlyMealCountsForMember(member, month));
+    }
+
+    @Test
+    public void expenseMonthSearchesCoveringIndex() {
+        assertSearches("COVERING INDEX idx_expenses_date_cat_paidby_amount (expense_date>? AND expense_date<?)",
+                () -> db.getMonthlyOtherExpenses(month));
+    }
+
+    @Test
+    public void memberPaymentsSearchPayerDateIndex() {
+        assertSearches("idx_expenses_paidby_date (paid_by_id=? AND expense_date>? AND expense_date<?)",
+                () -> db.getMonthlyPaidByMember(member, month));
+    }
+
+    @Test
+    public void remoteExpenseUpdateSearchesRemoteIdIndex() {
+        String plan = QueryPlanCheck.explain(db.getReadableDatabase(), remoteExpenseUpdateSql());
+        assertTrue(plan, plan.contains("idx_expenses_remote_id (remote_id=?)"));
+    }
+
+    // every statement the call ran is free of gated full scans, and one of them uses the expected index
+    private void assertSearches(String expected, Runnable call) {
+        QueryStats.setCapture(true);
+        try {
+            call.run();
+        } finally {
+            QueryStats.setCapture(false);
+        }
+
+        Map<String, String> plans = new TreeMap<>();
+        for (String sql : QueryStats.capturedSql().keySet()) {
+            plans.put(QueryPlanCheck.key(sql), QueryPlanCheck.explain(db.getReadableDatabase(), sql));
+        }
+        assertFalse("no SQL captured", plans.isEmpty());
+
+        boolean used = false;
+        for (Map.Entry<String, String> e : plans.entrySet()) {
+            assertTrue("full scan:\n" + e.getKey() + "\n" + e.getValue(),
+                    QueryPlanCheck.fullScans(e.getKey(), e.getValue()).isEmpty());
+            if (e.getValue().contains(expected)) used = true;
+        }
+        assertTrue("no plan uses " + expected + ":\n" + plans, used);
+    }
+
+    private static String remoteExpenseUpdateSql() {
+        for (String sql : MessDBHelper.planProbeSql()) {
+            if (sql.startsWith("UPDATE " + MessDBHelper.TABLE_EXPENSES)) return sql;
+        }
+        throw new AssertionError("no expenses UPDATE in planProbeSql");
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.messmanagement;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * PullSync.attachMonth's queries against the Firestore emulator: a month scope
+ * (optionally one member) reads exactly that scope's docs on its first run, and
+ * only the changed docs after that (the multi-inequality updatedAt + date query).
+ *
+ * Seeds MONTHS x MEMBERS meal docs and EXPENSES_PER_MONTH expenses per month,
+ * each with an old updatedAt, 2 x OVERLAP_SECONDS apart, so only the newest doc
+ * of a scope is inside the overlap PullSync re-reads past its mark.
+ *
+ * Needs the emulator (firebase.json) and its address as a runner argument:
+ *   firebase emulators:exec --only firestore \
+ *     "./gradlew :app:connectedDebugAndroidTest \
+ *      -Pandroid.testInstrumentationRunnerArguments.firestoreEmulator=10.0.2.2:8080"
+ * Without it the tests are skipped. The emulator does not enforce composite
+ * indexes; firestore.indexes.json is checked on deploy.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class PullSyncEmulatorTest {
+
+    private static final String APP_NAME = "pull-sync-emulator-test";
+    private static final String[] MONTHS = {"2031-03", "2031-04", "2031-05"};
+    private static final String MONTH = "2031-04";
+    private static final int MEMBERS = 12;              // 12 x 30 April docs: the first read takes two pages
+    private static final int EXPENSES_PER_MONTH = 40;
+    private static final long SEEDED_FROM = 1704067200L; // 2024-01-01, long before any real write
+
+    private static FirebaseFirestore fs;
+
+    private Context ctx;
+    private PullSync pull;
+
+    // seeded docs in write order (oldest updatedAt first)
+    private final List<Doc> meals = new ArrayList<>();
+    private final List<Doc> expenses = new ArrayList<>();
+
+    private static final class Doc {
+        final String id, date, member;
+
+        Doc(String id, String date, String member) {
+            this.id = id;
+            this.date = date;
+            this.member = member;
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        String emulator = InstrumentationRegistry.getArguments().getString("firestoreEmulator");
+        assumeTrue("no firestoreEmulator runner argument (host:port)", emulator != null);
+        String host = emulator.substring(0, emulator.lastIndexOf(':'));
+        int port = Integer.parseInt(emulator.substring(emulator.lastIndexOf(':') + 1));
+
+        ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FirebaseFirestore emulated = firestore(ctx, host, port);
+        clearEmulator(host, port, FirebaseApp.getInstance(APP_NAME).getOptions().getProjectId());
+
+        pull = new PullSync(ctx, emulated);
+        KeyValueDB kvDb = KeyValueDB.getInstance(ctx);
+        kvDb.deleteDataByKey(PullSync.monthMarkKey(PullSync.MEALS, MONTH, null));
+        kvDb.deleteDataByKey(PullSync.monthMarkKey(PullSync.MEALS, MONTH, member(3)));
+        kvDb.deleteDataByKey(PullSync.monthMarkKey(PullSync.EXPENSES, MONTH, null));
+
+        seed(emulated);
+    }
+
+    @Test
+    public void monthMealsReadOnlyThatMonth() throws Exception {
+        List<Doc> scope = inMonth(meals, null);
+        assertEquals(scope.size(), (int) pull.catchUpMonth(PullSync.MEALS, MONTH, null).get());
+
+        List<Doc> changed = newest(scope, 3);
+        touchMeals(changed);
+        assertEquals(changed.size(), (int) pull.catchUpMonth(PullSync.MEALS, MONTH, null).get());
+
+        // the flipped breakfast reached SQLite
+        Doc d = changed.get(0);
+        assertEquals(1, MessDBHelper.getInstance(ctx).getMealsForDate(d.member, d.date)[0]);
+    }
+
+    @Test
+    public void memberMonthMealsReadOnlyTheirDocs() throws Exception {
+        String member = member(3);
+        List<Doc> scope = inMonth(meals, member);
+        assertEquals(scope.size(), (int) pull.catchUpMonth(PullSync.MEALS, MONTH, member).get());
+
+        // another member's change in the same month is not read
+        touchMeals(newest(inMonth(meals, member(4)), 1));
+        List<Doc> changed = newest(scope, 2);
+        touchMeals(changed);
+        assertEquals(changed.size(), (int) pull.catchUpMonth(PullSync.MEALS, MONTH, member).get());
+    }
+
+    @Test
+    public void monthExpensesReadOnlyThatMonth() throws Exception {
+        List<Doc> scope = inMonth(expenses, null);
+        assertEquals(scope.size(), (int) pull.catchUpMonth(PullSync.EXPENSES, MONTH, null).get());
+
+        List<Doc> changed = newest(scope, 2);
+        WriteBatch batch = fs.batch();
+        for (Doc d : changed) {
+            Map<String, Object> update = new HashMap<>();
+            update.put("title", "Changed");
+            update.put(PullSync.FIELD_UPDATED_AT, FieldValue.serverTimestamp());
+            batch.update(fs.collection(PullSync.EXPENSES).document(d.id), update);
+        }
+        Tasks.await(batch.commit());
+        assertEquals(changed.size(), (int) pull.catchUpMonth(PullSync.EXPENSES, MONTH, null).get());
+    }
+
+    // ---------------- emulator + seed ----------------
+
+    private static synchronized FirebaseFirestore firestore(Context ctx, String host, int port) {
+        if (fs == null) {
+            // own app: the default instance may already be in use by other tests (useEmulator must come first)
+            FirebaseApp app = FirebaseApp.initializeApp(ctx, FirebaseApp.getInstance().getOptions(), APP_NAME);
+            fs = FirebaseFirestore.getInstance(app);
+            fs.useEmulator(host, port);
+        }
+        return fs;
+    }
+
+    private static void clearEmulator(String host, int port, String projectId) throws Exception {
+        URL url = new URL("http://" + host + ":" + port + "/emulator/v1/projects/" + projectId +
+                "/databases/(default)/documents");
+        HttpURLConnection c = (HttpURLConnection) url.openConnection();
+        c.setRequestMethod("DELETE");
+        try {
+            assertEquals(200, c.getResponseCode());
+        } finally {
+            c.disconnect();
+        }
+    }
+
+    private void seed(FirebaseFirestore fs) throws Exception {
+        List<Map<String, Object>> docs = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        long at = SEEDED_FROM;
+
+        for (String month : MONTHS) {
+            int days = month.equals(MONTH) ? 30 : 28;
+            for (int day = 1; day <= days; day++) {
+                for (int m = 0; m < MEMBERS; m++) {
+                    String date = String.format(Locale.US, "%s-%02d", month, day);
+                    Doc d = new Doc(member(m) + "_" + date, date, member(m));
+                    meals.add(d);
+
+                    Map<String, Object> meal = new HashMap<>();
+                    meal.put(PullSync.FIELD_MEMBER, d.member);
+                    meal.put(PullSync.FIELD_DATE, date);
+                    meal.put("breakfast", 0);
+                    meal.put("lunch", 1);
+                    meal.put("dinner", 1);
+                    meal.put(PullSync.FIELD_UPDATED_AT, new Timestamp(at, 0));
+                    at += 2 * PullSync.OVERLAP_SECONDS;
+                    docs.add(meal);
+                    paths.add(PullSync.MEALS + "/" + d.id);
+                }
+            }
+            for (int i = 0; i < EXPENSES_PER_MONTH; i++) {
+                String date = String.format(Locale.US, "%s-%02d", month, 1 + i % 28);
+                Doc d = new Doc("pull-test-" + month + "-" + i, date, member(i % MEMBERS));
+                expenses.add(d);
+
+                Map<String, Object> exp = new HashMap<>();
+                exp.put(PullSync.FIELD_DATE, date);
+                exp.put("paidBy", d.member);
+                exp.put("title", "Bazar");
+                exp.put("category", "Food");
+                FirestoreMoney.put(exp, "amount", Money.paisa(100 + i));
+                exp.put(PullSync.FIELD_UPDATED_AT, new Timestamp(at, 0));
+                at += 2 * PullSync.OVERLAP_SECONDS;
+                docs.add(exp);
+                paths.add(PullSync.EXPENSES + "/" + d.id);
+            }
+        }
+
+        // 500 writes per batch at most
+        for (int from = 0; from < docs.size(); from += 500) {
+            WriteBatch batch = fs.batch();
+            for (int i = from; i < Math.min(from + 500, docs.size()); i++) {
+                batch.set(fs.document(paths.get(i)), docs.get(i));
+            }
+            Tasks.await(batch.commit());
+        }
+    }
+
+    private void touchMeals(List<Doc> docs) throws Exception {
+        WriteBatch batch = fs.batch();
+        for (Doc d : docs) {
+            Map<String, Object> update = new HashMap<>();
+            update.put("breakfast", 1);
+            update.put(PullSync.FIELD_UPDATED_AT, FieldValue.serverTimestamp());
+            batch.update(fs.collection(PullSync.MEALS).document(d.id), update);
+        }
+        Tasks.await(batch.commit());
+    }
+
+    private static List<Doc> inMonth(List<Doc> docs, String member) {
+        List<Doc> out = new ArrayList<>();
+        for (Doc d : docs) {
+            if (d.date.startsWith(MONTH) && (member == null || member.equals(d.member))) out.add(d);
+        }
+        return out;
+    }
+
+    // the newest seeded doc of a scope is the only one inside the overlap, so it is always among these
+    private static List<Doc> newest(List<Doc> scope, int n) {
+        return new ArrayList<>(scope.subList(scope.size() - n, scope.size()));
+    }
+
+    private static String member(int i) {
+        return String.format(Locale.US, "pull-test-%02d@mess.test", i);
+    }
+}
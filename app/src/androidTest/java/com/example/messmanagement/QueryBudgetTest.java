@@ -0,0 +1,103 @@
+package com.example.messmanagement;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Query budgets per screen refresh (QueryStats). The budgets don't depend on
+ * how many members or rows there are, so a read that turns into one query per
+ * member (N+1) fails here instead of on a device.
+ *
+ * Budgets are what the reads cost today:
+ *   dashboard (admin)  prices 1 + meals/cost/paid 2 each (isMonthClosed + sum) + other 1 = 8
+ *   dashboard (member) prices 1 + isMonthClosed 1 + memberId 1 (cold cache) + ledger 1 = 4
+ *   monthly summary    prices 1 + isMonthClosed 1 + ledger 1 + other 1 = 4
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryBudgetTest {
+
+    private static final String DB_NAME = "query_budget_test.db";
+
+    static final int DASHBOARD_ADMIN_BUDGET = 8;
+    static final int DASHBOARD_MEMBER_BUDGET = 4;
+    static final int MONTHLY_SUMMARY_BUDGET = 4;
+
+    private Context ctx;
+    private MessDBHelper db;
+    private String member;
+    private String openMonth;
+    private String closedMonth;
+
+    @Before
+    public void setUp() throws Exception {
+        ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        ctx.deleteDatabase(DB_NAME);
+        db = MessDBHelper.openScratch(ctx, DB_NAME);
+
+        SyntheticDataset.Config cfg = new SyntheticDataset.Config();
+        cfg.members = 30;
+        cfg.days = 90;
+        SyntheticDataset.Result data = SyntheticDataset.generate(db, cfg);
+        member = SyntheticDataset.memberEmail(1);
+        openMonth = data.lastDate.substring(0, 7);
+        closedMonth = data.firstDate.substring(0, 7);
+        db.closeMonthsBefore(MessDBHelper.monthOf(data.lastDate));
+        assertTrue(db.isMonthClosed(closedMonth));
+
+        QueryStats.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        QueryStats.setEnabled(false);
+        QueryStats.setScreen(null);
+        QueryStats.reset();
+        db.close();
+        ctx.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void dashboardAdminRefresh() {
+        for (String month : new String[]{openMonth, closedMonth}) {
+            start("dashboard_admin");
+            DashboardActivity.LocalNumbers n = DashboardActivity.readLocalNumbers(db, month, member, true);
+            assertTrue(month, n.totalMeals > 0);
+            QueryStats.assertQueryBudget("dashboard_admin", DASHBOARD_ADMIN_BUDGET);
+        }
+    }
+
+    @Test
+    public void dashboardMemberRefresh() {
+        for (String month : new String[]{openMonth, closedMonth}) {
+            start("dashboard_member");
+            DashboardActivity.LocalNumbers n = DashboardActivity.readLocalNumbers(db, month, member, false);
+            assertTrue(month, n.totalMeals > 0);
+            QueryStats.assertQueryBudget("dashboard_member", DASHBOARD_MEMBER_BUDGET);
+        }
+    }
+
+    @Test
+    public void monthlySummaryRefresh() {
+        for (String month : new String[]{openMonth, closedMonth}) {
+            start("monthly_summary");
+            db.getCurrentMealPrices(); // setupMealRateText
+            MonthlySummaryActivity.LocalLedger r = MonthlySummaryActivity.readLedger(db, month);
+            assertEquals(month, 30, r.rows.size());
+            QueryStats.assertQueryBudget("monthly_summary", MONTHLY_SUMMARY_BUDGET);
+        }
+    }
+
+    private static void start(String screen) {
+        QueryStats.reset();
+        QueryStats.setScreen(screen);
+    }
+}
@@ -0,0 +1,512 @@
+package com.example.messmanagement;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.util.Log;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Check that MessDBHelper's queries still use their indexes, plus a differential
+ * check of the monthly aggregates against naive sums over the raw rows.
+ *
+ * Plans: the helper's read paths run on a SyntheticDataset in a scratch db while
+ * QueryStats captures their SQL; MessDBHelper.planProbeSql() adds the compiled
+ * writes and trigger bodies. Each statement gets EXPLAIN QUERY PLAN. A full scan
+ * of meals_daily, expenses, users or meal_prices fails the check unless the
+ * golden plan for that statement (androidTest assets/query_plans.golden) has
+ * the same scan. Other plan differences are only reported. Current plans go to
+ * the app's cacheDir/query_plans.txt; copy it over the golden file to accept them.
+ *
+ * Aggregates: a dataset with a random seed (logged, so a failure can be replayed)
+ * is compared month by month, before and after closing the older months, and
+ * again after remote edits land in a closed month.
+ *
+ * Run by QueryPlanCheckTest: ./gradlew :app:connectedDebugAndroidTest
+ */
+public class QueryPlanCheck {
+
+    private static final String TAG = "QueryPlanCheck";
+    private static final String DB_NAME = "plan_check_mess.db";
+    static final String GOLDEN_ASSET = "query_plans.golden";
+    private static final double EPS = 0.005;
+
+    private static final Set<String> GATED_TABLES = new HashSet<>(Arrays.asList(
+            MessDBHelper.TABLE_MEALS_DAILY, MessDBHelper.TABLE_EXPENSES,
+            MessDBHelper.TABLE_USERS, MessDBHelper.TABLE_MEAL_PRICES));
+
+    // "SCAN meals_daily", "SCAN TABLE meals_daily AS m" (old SQLite), "SCAN m" (new SQLite); no index
+    private static final Pattern FULL_SCAN = Pattern.compile("^SCAN (\\w+)(?: AS (\\w+))?$");
+    private static final Pattern TABLE_ALIAS = Pattern.compile(
+            "\\b(" + String.join("|", GATED_TABLES) + ")\\s+(?:AS\\s+)?(\\w+)", Pattern.CASE_INSENSITIVE);
+
+    public static class Report {
+        public final List<String> fullScans = new ArrayList<>();
+        public final List<String> changedPlans = new ArrayList<>();
+        public final List<String> mismatches = new ArrayList<>();
+        public int statements;
+        public long seed;
+        public File planFile;
+
+        public boolean passed() {
+            return fullScans.isEmpty() && mismatches.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return (passed() ? "PASSED" : "FAILED") + ": " + statements + " statements, " +
+                    fullScans.size() + " new full scans, " + changedPlans.size() + " changed plans, " +
+                    mismatches.size() + " aggregate mismatches (seed " + seed + ")";
+        }
+    }
+
+    public static Report run(Context context) throws Exception {
+        return run(context, new Random().nextLong());
+    }
+
+    public static Report run(Context context, long seed) throws Exception {
+        Context ctx = context.getApplicationContext();
+        Report report = new Report();
+        report.seed = seed;
+        try {
+            checkPlans(ctx, report);
+            checkAggregates(ctx, report, seed);
+        } finally {
+            ctx.deleteDatabase(DB_NAME);
+        }
+        return report;
+    }
+
+    // ---------------- query plans ----------------
+
+    private static void checkPlans(Context ctx, Report report) throws Exception {
+        SyntheticDataset.Config cfg = new SyntheticDataset.Config();
+        cfg.members = 20;
+        cfg.days = 120;
+
+        Map<String, String> sites = new TreeMap<>();
+        Map<String, String> plans = new HashMap<>();
+
+        ctx.deleteDatabase(DB_NAME);
+        MessDBHelper db = MessDBHelper.openScratch(ctx, DB_NAME);
+        try {
+            SyntheticDataset.Result data = SyntheticDataset.generate(db, cfg);
+            String closed = data.firstDate.substring(0, 7);
+            db.closeMonthsBefore(addMonths(closed, 1));
+
+            QueryStats.setCapture(true);
+            try {
+                exercise(db, SyntheticDataset.memberEmail(1), data.lastDate, closed);
+            } finally {
+                QueryStats.setCapture(false);
+            }
+
+            for (Map.Entry<String, String> e : QueryStats.capturedSql().entrySet()) {
+                sites.put(key(e.getKey()), e.getValue());
+            }
+            for (String sql : MessDBHelper.planProbeSql()) sites.put(key(sql), "MessDBHelper.planProbeSql");
+
+            SQLiteDatabase sdb = db.getReadableDatabase();
+            for (String sql : sites.keySet()) plans.put(sql, explain(sdb, sql));
+        } finally {
+            db.close();
+        }
+
+        Map<String, String> golden = loadGolden();
+        report.statements = plans.size();
+
+        for (Map.Entry<String, String> e : sites.entrySet()) {
+            String sql = e.getKey();
+            String site = e.getValue();
+            String plan = plans.get(sql);
+            String expected = golden.get(sql);
+
+            Set<String> known = expected != null ? fullScans(sql, expected) : Collections.emptySet();
+            for (String scan : fullScans(sql, plan)) {
+                if (!known.contains(scan)) report.fullScans.add(site + ": " + scan + "\n    " + sql);
+            }
+            if (expected == null) report.changedPlans.add("new " + site + ": " + sql);
+            else if (!expected.equals(plan)) report.changedPlans.add("changed " + site + ": " + sql + "\n" + plan);
+        }
+
+        // written in golden-file format, sorted by SQL so two runs diff cleanly
+        report.planFile = new File(ctx.getCacheDir(), "query_plans.txt");
+        try (FileWriter w = new FileWriter(report.planFile, false)) {
+            w.write("# EXPLAIN QUERY PLAN for every MessDBHelper statement (QueryPlanCheck)\n\n");
+            for (Map.Entry<String, String> e : sites.entrySet()) {
+                w.write("# " + e.getValue() + "\n");
+                w.write("SQL: " + e.getKey() + "\n");
+                w.write(plans.get(e.getKey()));
+                w.write("\n");
+            }
+        }
+    }
+
+    // every read path the screens and workers use, including a closed (archived) month
+    private static void exercise(MessDBHelper db, String member, String lastDate, String closedMonth) {
+        String month = lastDate.substring(0, 7);
+
+        // users
+        db.checkUsernameExists(member);
+        db.checkLocalLoginByUsernamePassword(member, "not-the-password");
+        db.hasAdminAccount();
+        db.isUserAdmin("synthetic-uid-1");
+        db.getUserStatusByUsername(member);
+        db.getUserRoleByUsername(member);
+        db.getPendingMembers();
+        db.getUserDirectory().invalidateAll();
+        db.getDisplayNameByUsername(member);
+        db.getUserDirectory().invalidateAll();
+        db.preloadUserProfiles(Arrays.asList(member, SyntheticDataset.memberEmail(2)));
+
+        // members
+        db.getAllMembers();
+        db.getMemberCount();
+        db.getMemberByName(member);
+
+        // meals + prices
+        int[] meals = db.getMealsForDate(member, lastDate);
+        db.upsertMealsFromRemote(Collections.singletonList(
+                new RemoteMeal(member, lastDate, meals[0], meals[1], meals[2])));
+        db.getMonthlyMealCountsForMember(member, month);
+        db.getMonthlyTotalMealsAllMembers(month);
+        db.getMealsForMonth(month);
+        db.getCurrentMealPrices();
+        db.getMealPriceTable();
+
+        // expenses + payments
+        List<Expense> page = db.getExpensesByMemberPage(member, null, 5);
+        if (!page.isEmpty()) db.getExpensesByMemberPage(member, page.get(page.size() - 1), 5);
+        page = db.getAllExpensesPage(null, 5);
+        if (!page.isEmpty()) db.getAllExpensesPage(page.get(page.size() - 1), 5);
+        db.getExpensesForMonth(month);
+        db.getTotalSpentByMember(member);
+        db.getMonthlyPaidByMember(member, month);
+        db.getMonthlyTotalPaidAllMembers(month);
+        db.getMonthlyOtherExpensesForMember(member, month);
+        db.getMonthlyOtherExpenses(month);
+        db.getMemberLocalExpenseAndPaymentForMonth(member, month);
+        db.getTotalLocalOtherExpensesForMonth(month);
+
+        // sync outbox
+        db.getDueOutbox(System.currentTimeMillis(), 500);
+        db.getOutboxCounts();
+        db.getDeadOutboxItems(5);
+
+        // calculations + ledgers
+        db.getMonthlyMealCostForMember(member, month);
+        db.getMonthlyTotalMealCostAllMembers(month);
+        db.getMonthlyTotalExpenses(month);
+        db.getMemberExpenseBreakdown(member, month);
+        db.computeMemberLedger(member, month);
+        db.computeMonthlyLedger(month);
+
+        // archive
+        db.isMonthClosed(closedMonth);
+        db.getArchivedCategoryTotals(closedMonth);
+        db.computeMonthlyLedger(closedMonth);
+        db.getMonthlyTotalMealCostAllMembers(closedMonth);
+        db.getMonthlyTotalMealsAllMembers(closedMonth);
+    }
+
+    static String explain(SQLiteDatabase db, String sql) {
+        StringBuilder plan = new StringBuilder();
+        try {
+            Cursor c = db.rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+            int detail = c.getColumnIndexOrThrow("detail");
+            while (c.moveToNext()) plan.append("  ").append(normalize(c.getString(detail))).append('\n');
+            c.close();
+        } catch (SQLiteException e) {
+            // e.g. a temp table that only exists inside the helper call
+            plan.append("  ERROR ").append(e.getMessage()).append('\n');
+        }
+        return plan.toString();
+    }
+
+    // wording differs between SQLite 3.9 (API 24) and current versions
+    static String normalize(String detail) {
+        String d = detail.trim();
+        if (d.startsWith("EXECUTE ")) d = d.substring("EXECUTE ".length());
+        return d.replace("SCAN TABLE ", "SCAN ").replace("SEARCH TABLE ", "SEARCH ");
+    }
+
+    // full scans of a gated table (by name or by the alias the statement gives it)
+    static Set<String> fullScans(String sql, String plan) {
+        Set<String> names = new HashSet<>(GATED_TABLES);
+        Matcher alias = TABLE_ALIAS.matcher(sql);
+        while (alias.find()) names.add(alias.group(2));
+
+        Set<String> scans = new HashSet<>();
+        for (String line : plan.split("\n")) {
+            Matcher m = FULL_SCAN.matcher(line.trim());
+            if (!m.matches()) continue;
+            if (names.contains(m.group(1)) || (m.group(2) != null && names.contains(m.group(2)))) {
+                scans.add(line.trim());
+            }
+        }
+        return scans;
+    }
+
+    static String key(String sql) {
+        return sql.trim().replaceAll("\\s+", " ");
+    }
+
+    // the golden file ships in the test APK, not the app
+    private static Map<String, String> loadGolden() {
+        Map<String, String> golden = new HashMap<>();
+        Context testContext = InstrumentationRegistry.getInstrumentation().getContext();
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(
+                testContext.getAssets().open(GOLDEN_ASSET), StandardCharsets.UTF_8))) {
+            String sql = null;
+            StringBuilder plan = new StringBuilder();
+            for (String line; (line = r.readLine()) != null; ) {
+                if (line.startsWith("SQL: ")) {
+                    if (sql != null) golden.put(sql, plan.toString());
+                    sql = key(line.substring("SQL: ".length()));
+                    plan.setLength(0);
+                } else if (line.startsWith("  ") && sql != null) {
+                    plan.append(line).append('\n');
+                }
+            }
+            if (sql != null) golden.put(sql, plan.toString());
+        } catch (IOException e) {
+            Log.w(TAG, "no " + GOLDEN_ASSET + " asset; every plan counts as new");
+        }
+        return golden;
+    }
+
+    // ---------------- aggregates vs naive reference ----------------
+
+    private static void checkAggregates(Context ctx, Report report, long seed) throws Exception {
+        Random rnd = new Random(seed);
+        SyntheticDataset.Config cfg = new SyntheticDataset.Config();
+        cfg.seed = seed;
+        cfg.members = 5 + rnd.nextInt(15);
+        cfg.days = 60 + rnd.nextInt(90);
+        cfg.startDate = String.format(Locale.US, "%d-%02d-%02d", 2023 + rnd.nextInt(3), 1 + rnd.nextInt(12), 1 + rnd.nextInt(28));
+        cfg.breakfastSkip = rnd.nextDouble() * 0.6;
+        cfg.bazarPerDay = rnd.nextDouble();
+        cfg.minDaysBetweenPrices = 5 + rnd.nextInt(20);
+        cfg.maxDaysBetweenPrices = cfg.minDaysBetweenPrices + rnd.nextInt(20);
+
+        ctx.deleteDatabase(DB_NAME);
+        MessDBHelper db = MessDBHelper.openScratch(ctx, DB_NAME);
+        try {
+            SyntheticDataset.Result data = SyntheticDataset.generate(db, cfg);
+            Reference ref = new Reference(db.getReadableDatabase());
+
+            List<String> months = new ArrayList<>();
+            String last = data.lastDate.substring(0, 7);
+            for (String m = data.firstDate.substring(0, 7); m.compareTo(last) <= 0; m = addMonths(m, 1)) months.add(m);
+
+            List<String> members = new ArrayList<>();
+            for (Member m : db.getAllMembers()) members.add(m.name);
+
+            compareMonths(db, ref, members, months, "open", report);
+            // closing keeps the raw rows, so the same reference applies to the archive
+            db.closeMonthsBefore(last);
+            compareMonths(db, ref, members, months, "closed", report);
+
+            // another phone's late upload into a closed month: the archive has to follow it
+            String closedMonth = months.get(0);
+            if (!closedMonth.equals(last) && !members.isEmpty()) {
+                String member = members.get(0);
+                String day = closedMonth + "-15";
+                int[] cur = db.getMealsForDate(member, day);
+                db.upsertMealsFromRemote(Collections.singletonList(
+                        new RemoteMeal(member, day, 1 - cur[0], cur[1], cur[2])));
+                db.upsertExpensesFromRemote(Collections.singletonList(
+                        new RemoteExpense("plan-check-late", day, "Late", "Food", member, Money.paisa(123.45))));
+                if (!db.isMonthClosed(closedMonth)) report.mismatches.add("late edit reopened " + closedMonth);
+                compareMonths(db, new Reference(db.getReadableDatabase()), members, months, "late edit", report);
+            }
+
+            // this phone back-dating into a closed month (date picker): same, in the write's transaction
+            String backDated = months.size() > 2 ? months.get(1) : null;
+            if (backDated != null && !members.isEmpty()) {
+                String member = members.get(members.size() - 1);
+                String day = backDated + "-20";
+                db.addExpensePending("plan-check-local", "Back-dated", Money.paisa(77.70), "Food", member, day);
+                db.addPayment(member, Money.paisa(500), day);
+                db.addExpense("Back-dated synced", Money.paisa(12.34), "Utility", member, day);
+                int[] cur = db.getMealsForDate(member, day);
+                String[] meals = {"breakfast", "lunch", "dinner"};
+                for (int i = 0; i < 3; i++) {
+                    if (cur[i] == 0) db.setMealForDate(member, day, meals[i], 1);
+                }
+                if (!db.isMonthClosed(backDated)) report.mismatches.add("local edit reopened " + backDated);
+                compareMonths(db, new Reference(db.getReadableDatabase()), members, months, "local edit", report);
+
+                // a compacted month only has its statement left: local writes dated in it are refused
+                String compacted = months.get(0);
+                if (db.compactMonthsBefore(backDated) != 1) report.mismatches.add("could not compact " + compacted);
+                double paidBefore = db.getMonthlyTotalPaidAllMembers(compacted);
+                String old = compacted + "-10";
+                if (db.addPayment(member, Money.paisa(900), old) != -1
+                        || db.addExpense("Too late", Money.paisa(1), "Food", member, old) != -1
+                        || db.addExpensePending("plan-check-too-late", "Too late", Money.paisa(1), "Food", member, old) != -1
+                        || db.setMealForDate(member, old, "dinner", 1)) {
+                    report.mismatches.add("local write accepted in compacted " + compacted);
+                }
+                expect(report, "compacted " + compacted + " total paid", paidBefore, db.getMonthlyTotalPaidAllMembers(compacted));
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    private static void compareMonths(MessDBHelper db, Reference ref, List<String> members,
+                                      List<String> months, String phase, Report report) {
+        for (String month : months) {
+            String at = phase + " " + month;
+            int totalMeals = 0;
+            double totalCost = 0, totalOther = 0, totalPaid = 0;
+
+            Map<String, Summary> ledger = new HashMap<>();
+            for (Summary s : db.computeMonthlyLedger(month)) ledger.put(s.memberName, s);
+
+            for (String member : members) {
+                int[] counts = ref.counts(member, month);
+                double cost = ref.mealCost(member, month);
+                double other = ref.expenses(member, month, false);
+                double paid = ref.expenses(member, month, true);
+                totalMeals += counts[0] + counts[1] + counts[2];
+                totalCost += cost;
+                totalOther += other;
+                totalPaid += paid;
+
+                String who = at + " " + member;
+                int[] got = db.getMonthlyMealCountsForMember(member, month);
+                for (int i = 0; i < 3; i++) expect(report, who + " meal count " + i, counts[i], got[i]);
+                expect(report, who + " meal cost", cost, db.getMonthlyMealCostForMember(member, month));
+                expect(report, who + " other expenses", other, db.getMonthlyOtherExpensesForMember(member, month));
+                expect(report, who + " paid", paid, db.getMonthlyPaidByMember(member, month));
+
+                Summary s = ledger.get(member);
+                if (s == null) {
+                    report.mismatches.add(who + ": missing from computeMonthlyLedger");
+                } else {
+                    expect(report, who + " ledger meal cost", cost, s.mealCost);
+                    expect(report, who + " ledger balance", cost + other - paid, s.balance);
+                }
+            }
+
+            expect(report, at + " total meals", totalMeals, db.getMonthlyTotalMealsAllMembers(month));
+            expect(report, at + " total meal cost", totalCost, db.getMonthlyTotalMealCostAllMembers(month));
+            expect(report, at + " total other expenses", totalOther, db.getMonthlyOtherExpenses(month));
+            expect(report, at + " total paid", totalPaid, db.getMonthlyTotalPaidAllMembers(month));
+        }
+    }
+
+    private static void expect(Report report, String what, double expected, double actual) {
+        if (Math.abs(expected - actual) > EPS) {
+            report.mismatches.add(what + ": expected " + expected + ", got " + actual);
+        }
+    }
+
+    // raw rows in memory; every answer is a plain loop over all of them
+    private static class Reference {
+        final List<String[]> meals = new ArrayList<>();    // member, date, b, l, d
+        final List<String[]> expenses = new ArrayList<>(); // payer, date, category, amount (paisa)
+        final List<String[]> prices = new ArrayList<>();   // date, b, l, d (paisa)
+
+        Reference(SQLiteDatabase db) {
+            // back to emails through member_keys, so the reference never trusts the id mapping
+            String key = " LEFT JOIN " + MessDBHelper.TABLE_MEMBER_KEYS + " k ON k." + MessDBHelper.COL_MKEY_ID + " = ";
+            load(db, "SELECT k." + MessDBHelper.COL_MKEY_EMAIL + ", m." + MessDBHelper.COL_MEAL_DATE + ", m." +
+                    MessDBHelper.COL_MEAL_BREAKFAST + ", m." + MessDBHelper.COL_MEAL_LUNCH + ", m." +
+                    MessDBHelper.COL_MEAL_DINNER + " FROM " + MessDBHelper.TABLE_MEALS_DAILY + " m" +
+                    key + "m." + MessDBHelper.COL_MEAL_MEMBER_ID, meals);
+            load(db, "SELECT k." + MessDBHelper.COL_MKEY_EMAIL + ", e." + MessDBHelper.COL_EXPENSE_DATE + ", e." +
+                    MessDBHelper.COL_EXPENSE_CATEGORY + ", e." + MessDBHelper.COL_EXPENSE_AMOUNT +
+                    " FROM " + MessDBHelper.TABLE_EXPENSES + " e" +
+                    key + "e." + MessDBHelper.COL_EXPENSE_PAIDBY_ID, expenses);
+            load(db, "SELECT " + MessDBHelper.COL_PRICE_DATE + ", " + MessDBHelper.COL_PRICE_BREAKFAST + ", " +
+                    MessDBHelper.COL_PRICE_LUNCH + ", " + MessDBHelper.COL_PRICE_DINNER +
+                    " FROM " + MessDBHelper.TABLE_MEAL_PRICES, prices);
+        }
+
+        private static void load(SQLiteDatabase db, String sql, List<String[]> into) {
+            Cursor c = db.rawQuery(sql, null);
+            while (c.moveToNext()) {
+                String[] row = new String[c.getColumnCount()];
+                for (int i = 0; i < row.length; i++) row[i] = c.getString(i);
+                into.add(row);
+            }
+            c.close();
+        }
+
+        int[] counts(String member, String month) {
+            int[] n = new int[3];
+            for (String[] r : meals) {
+                if (!member.equals(r[0]) || !r[1].startsWith(month)) continue;
+                for (int i = 0; i < 3; i++) n[i] += Integer.parseInt(r[2 + i]);
+            }
+            return n;
+        }
+
+        double mealCost(String member, String month) {
+            long sum = 0;
+            for (String[] r : meals) {
+                if (!member.equals(r[0]) || !r[1].startsWith(month)) continue;
+                long[] p = priceOn(r[1]);
+                for (int i = 0; i < 3; i++) sum += Integer.parseInt(r[2 + i]) * p[i];
+            }
+            return Money.taka(sum);
+        }
+
+        // latest price dated on or before the day, else the v1 defaults
+        long[] priceOn(String date) {
+            String best = null;
+            long[] p = {MealLedger.DEFAULT_BREAKFAST_PRICE, MealLedger.DEFAULT_LUNCH_PRICE, MealLedger.DEFAULT_DINNER_PRICE};
+            for (String[] r : prices) {
+                if (r[0].compareTo(date) > 0 || (best != null && r[0].compareTo(best) <= 0)) continue;
+                best = r[0];
+                for (int i = 0; i < 3; i++) p[i] = Long.parseLong(r[1 + i]);
+            }
+            return p;
+        }
+
+        double expenses(String member, String month, boolean payments) {
+            long sum = 0;
+            for (String[] r : expenses) {
+                if (!member.equals(r[0]) || r[1] == null || !r[1].startsWith(month)) continue;
+                if (MessDBHelper.CATEGORY_PAYMENT.equals(r[2]) != payments) continue;
+                sum += Long.parseLong(r[3]);
+            }
+            return Money.taka(sum);
+        }
+    }
+
+    private static String addMonths(String month, int n) throws Exception {
+        SimpleDateFormat f = new SimpleDateFormat("yyyy-MM", Locale.US);
+        Calendar cal = Calendar.getInstance(Locale.US);
+        cal.setTime(f.parse(month));
+        cal.add(Calendar.MONTH, n);
+        return f.format(cal.getTime());
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.messmanagement;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Fails when a MessDBHelper statement starts scanning a gated table (see
+ * QueryPlanCheck) or a monthly aggregate drifts from the naive sums.
+ * Changed-but-indexed plans are only logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanCheckTest {
+
+    private static final String TAG = "QueryPlanCheck";
+
+    @Test
+    public void plansKeepTheirIndexesAndAggregatesMatch() throws Exception {
+        Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        QueryPlanCheck.Report report = QueryPlanCheck.run(ctx);
+
+        for (String s : report.changedPlans) Log.w(TAG, s);
+        Log.i(TAG, report + "; plans: " + report.planFile.getAbsolutePath());
+
+        StringBuilder failures = new StringBuilder(report.toString());
+        for (String s : report.fullScans) failures.append("\nfull scan: ").append(s);
+        for (String s : report.mismatches) failures.append("\nmismatch: ").append(s);
+        assertTrue(failures.toString(), report.passed());
+    }
+}
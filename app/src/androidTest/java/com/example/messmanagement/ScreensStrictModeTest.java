@@ -0,0 +1,111 @@
+package com.example.messmanagement;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.os.StrictMode;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The MessRepository-backed screens run with a main-thread StrictMode policy
+ * that kills the process on any disk read or write, so a MessDBHelper /
+ * KeyValueDB call that slips back onto the UI thread fails the run.
+ * Process-wide singletons (Firebase, KeyValueDB's first load) are created
+ * before the policy is installed, as they are once per app start anyway.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class ScreensStrictModeTest {
+
+    private Instrumentation instrumentation;
+    private Context ctx;
+    private MessRepository repo;
+    private StrictMode.ThreadPolicy previous;
+
+    @Before
+    public void setUp() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        ctx = instrumentation.getTargetContext();
+
+        instrumentation.runOnMainSync(() -> {
+            FirebaseAuth.getInstance();
+            FirebaseFirestore.getInstance();
+            KeyValueDB.getInstance(ctx).getValueByKey("username");
+            repo = MessRepository.getInstance(ctx);
+            PullSync.getInstance(ctx);
+
+            previous = StrictMode.getThreadPolicy();
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .penaltyDeath()
+                    .build());
+        });
+    }
+
+    @After
+    public void tearDown() {
+        instrumentation.runOnMainSync(() -> StrictMode.setThreadPolicy(previous));
+    }
+
+    @Test
+    public void dashboard() throws Exception {
+        try (ActivityScenario<DashboardActivity> ignored = ActivityScenario.launch(DashboardActivity.class)) {
+            settle();
+        }
+    }
+
+    @Test
+    public void monthlySummary() throws Exception {
+        try (ActivityScenario<MonthlySummaryActivity> ignored = ActivityScenario.launch(MonthlySummaryActivity.class)) {
+            settle();
+        }
+    }
+
+    @Test
+    public void memberDetails() throws Exception {
+        Intent intent = new Intent(ctx, MemberDetailsActivity.class)
+                .putExtra("member_name", SyntheticDataset.memberEmail(1));
+        try (ActivityScenario<MemberDetailsActivity> ignored = ActivityScenario.launch(intent)) {
+            settle();
+        }
+    }
+
+    // lets the screen's queued reads/writes finish, then runs their deliver(...) callbacks on main
+    private void settle() throws Exception {
+        repo.write(db -> null).get(30, TimeUnit.SECONDS);
+
+        // every reader thread parked at once means every read queued before them is done
+        CountDownLatch allParked = new CountDownLatch(MessRepository.READER_THREADS);
+        List<Future<Object>> parked = new ArrayList<>();
+        for (int i = 0; i < MessRepository.READER_THREADS; i++) {
+            parked.add(repo.read(db -> {
+                allParked.countDown();
+                allParked.await();
+                return null;
+            }));
+        }
+        for (Future<Object> f : parked) f.get(30, TimeUnit.SECONDS);
+
+        instrumentation.waitForIdleSync();
+    }
+}
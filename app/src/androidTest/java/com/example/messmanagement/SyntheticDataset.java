@@ -0,0 +1,162 @@
+package com.example.messmanagement;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Deterministic fake mess data for benchmarks and load testing.
+ * Same Config (seed included) -> same rows, regardless of device or clock.
+ * Writes through the normal MessDBHelper APIs, so triggers/rollups are exercised too.
+ * Only ever point it at a scratch database (MessDBHelper.openScratch).
+ */
+public class SyntheticDataset {
+
+    public static class Config {
+        public long seed = 42L;
+        public int members = 60;
+        public String startDate = "2023-01-01";
+        public int days = 3 * 365;
+
+        public double breakfastSkip = 0.30;
+        public double lunchSkip = 0.10;
+        public double dinnerSkip = 0.15;
+
+        public double bazarPerDay = 0.6;       // chance of a Food/Market expense each day
+        public int paymentsPerMonth = 2;       // per member
+        public int minDaysBetweenPrices = 30;
+        public int maxDaysBetweenPrices = 60;
+
+        public int pendingDays = 3;            // last N days written as local (unsynced) meals
+    }
+
+    public static class Result {
+        public int members, mealRows, expenses, payments, priceChanges, pendingMeals;
+        public String firstDate, lastDate;
+
+        @Override
+        public String toString() {
+            return members + " members, " + mealRows + " meal rows, " + expenses + " expenses, " +
+                    payments + " payments, " + priceChanges + " price changes, " +
+                    pendingMeals + " pending meals (" + firstDate + " .. " + lastDate + ")";
+        }
+    }
+
+    private static final String[] BAZAR_CATEGORIES = {"Food", "Market"};
+    private static final String[] MONTHLY_CATEGORIES = {"Utility", "Others"};
+
+    public static String memberEmail(int i) {
+        return String.format(Locale.US, "member%02d@mess.test", i);
+    }
+
+    public static Result generate(MessDBHelper db, Config cfg) throws Exception {
+        Random rnd = new Random(cfg.seed);
+        SimpleDateFormat day = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        Result r = new Result();
+
+        // members (+ per-member appetite so skip rates differ a little)
+        double[][] skip = new double[cfg.members][3];
+        for (int i = 0; i < cfg.members; i++) {
+            db.upsertUserFromRemote("synthetic-uid-" + i, String.format(Locale.US, "Member %02d", i),
+                    memberEmail(i), "01700" + String.format(Locale.US, "%06d", i), "Hall " + (i % 4),
+                    "01800" + String.format(Locale.US, "%06d", i), i == 0, "active");
+            double jitter = (rnd.nextDouble() - 0.5) * 0.2;
+            skip[i][0] = clamp(cfg.breakfastSkip + jitter);
+            skip[i][1] = clamp(cfg.lunchSkip + jitter / 2);
+            skip[i][2] = clamp(cfg.dinnerSkip + jitter);
+        }
+        r.members = cfg.members;
+
+        Calendar cal = Calendar.getInstance(Locale.US);
+        cal.setTime(day.parse(cfg.startDate));
+
+        long b = 5000, l = 15000, d = 15000; // paisa
+        int nextPriceIn = 0;
+        long expenseSeq = 0;
+
+        List<RemoteMeal> meals = new ArrayList<>();
+        List<RemoteExpense> expenses = new ArrayList<>();
+        String month = null;
+        r.firstDate = day.format(cal.getTime());
+
+        for (int n = 0; n < cfg.days; n++, cal.add(Calendar.DAY_OF_MONTH, 1)) {
+            String date = day.format(cal.getTime());
+            String m = date.substring(0, 7);
+
+            // flush one month at a time through the batch upserts
+            if (month != null && !month.equals(m)) {
+                r.mealRows += meals.size();
+                db.upsertMealsFromRemote(meals);
+                db.upsertExpensesFromRemote(expenses);
+                meals.clear();
+                expenses.clear();
+            }
+            if (!m.equals(month)) {
+                month = m;
+                // monthly bills + payments
+                for (String cat : MONTHLY_CATEGORIES) {
+                    expenses.add(new RemoteExpense("syn-e-" + (expenseSeq++), date, cat + " bill", cat,
+                            memberEmail(rnd.nextInt(cfg.members)), Money.paisa(800 + rnd.nextDouble() * 1500)));
+                    r.expenses++;
+                }
+                for (int i = 0; i < cfg.members; i++) {
+                    for (int p = 0; p < cfg.paymentsPerMonth; p++) {
+                        String payDate = m + String.format(Locale.US, "-%02d", 1 + rnd.nextInt(28));
+                        expenses.add(new RemoteExpense("syn-e-" + (expenseSeq++), payDate, "Payment",
+                                MessDBHelper.CATEGORY_PAYMENT, memberEmail(i), Money.paisa(1000 + rnd.nextDouble() * 4000)));
+                        r.payments++;
+                    }
+                }
+            }
+
+            if (nextPriceIn-- <= 0) {
+                if (r.priceChanges > 0) {
+                    b = Math.max(3000, b + (rnd.nextInt(21) - 10) * 100);
+                    l = Math.max(8000, l + (rnd.nextInt(41) - 20) * 100);
+                    d = Math.max(8000, d + (rnd.nextInt(41) - 20) * 100);
+                }
+                db.insertMealPriceHistory(b, l, d, date);
+                r.priceChanges++;
+                nextPriceIn = cfg.minDaysBetweenPrices +
+                        rnd.nextInt(cfg.maxDaysBetweenPrices - cfg.minDaysBetweenPrices + 1);
+            }
+
+            if (rnd.nextDouble() < cfg.bazarPerDay) {
+                String cat = BAZAR_CATEGORIES[rnd.nextInt(BAZAR_CATEGORIES.length)];
+                expenses.add(new RemoteExpense("syn-e-" + (expenseSeq++), date, cat + " bazar", cat,
+                        memberEmail(rnd.nextInt(cfg.members)), Money.paisa(300 + rnd.nextDouble() * 2200)));
+                r.expenses++;
+            }
+
+            boolean pending = n >= cfg.days - cfg.pendingDays;
+            for (int i = 0; i < cfg.members; i++) {
+                int mb = rnd.nextDouble() < skip[i][0] ? 0 : 1;
+                int ml = rnd.nextDouble() < skip[i][1] ? 0 : 1;
+                int md = rnd.nextDouble() < skip[i][2] ? 0 : 1;
+                if (mb + ml + md == 0) continue; // away for the day: no row
+
+                if (pending) {
+                    if (mb == 1) db.setMealForDate(memberEmail(i), date, "Breakfast", 1);
+                    if (ml == 1) db.setMealForDate(memberEmail(i), date, "Lunch", 1);
+                    if (md == 1) db.setMealForDate(memberEmail(i), date, "Dinner", 1);
+                    r.pendingMeals++;
+                } else {
+                    meals.add(new RemoteMeal(memberEmail(i), date, mb, ml, md));
+                }
+            }
+            r.lastDate = date;
+        }
+
+        r.mealRows += meals.size() + r.pendingMeals;
+        db.upsertMealsFromRemote(meals);
+        db.upsertExpensesFromRemote(expenses);
+        return r;
+    }
+
+    private static double clamp(double p) {
+        return Math.max(0.0, Math.min(0.95, p));
+    }
+}
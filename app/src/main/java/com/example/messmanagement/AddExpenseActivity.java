@@ -31,8 +31,8 @@ public class AddExpenseActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_add_expense);
 
-        messDb = new MessDBHelper(this);
-        kvDb = new KeyValueDB(this);
+        messDb = MessDBHelper.getInstance(this);
+        kvDb = KeyValueDB.getInstance(this);
 
         currentUserName = kvDb.getValueByKey("username");
         if (currentUserName == null) currentUserName = "Guest";
@@ -152,7 +152,12 @@ public class AddExpenseActivity extends AppCompatActivity {
         String remoteId = UUID.randomUUID().toString();
 
         // save locally as PENDING (sync_state=0)
-        messDb.addExpensePending(remoteId, title, amount, category, paidBy, date);
+        long id = messDb.addExpensePending(remoteId, title, Money.paisa(amount), category, paidBy, date);
+        if (id == -1) {
+            // ✅ compacted months are final (only their statement is kept)
+            Toast.makeText(this, "That month is archived; pick a more recent date", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
         // trigger background sync when internet returns
         SyncScheduler.runOneTimeSyncNow(this);
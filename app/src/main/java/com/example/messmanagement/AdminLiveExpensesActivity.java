@@ -4,17 +4,10 @@ import android.os.Bundle;
 import android.widget.ArrayAdapter;
 import android.widget.ImageView;
 import android.widget.ListView;
-import android.widget.Toast;
 
-import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.EventListener;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.google.firebase.firestore.ListenerRegistration;
-import com.google.firebase.firestore.QuerySnapshot;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -29,7 +22,6 @@ public class AdminLiveExpensesActivity extends AppCompatActivity {
     private ArrayList<String> expensesData = new ArrayList<>();
     private ArrayAdapter<String> expensesAdapter;
 
-    private FirebaseFirestore fs;
     private ListenerRegistration expensesListener;
 
     @Override
@@ -37,8 +29,6 @@ public class AdminLiveExpensesActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_admin_live_expenses);
 
-        fs = FirebaseFirestore.getInstance();
-
         ivBack = findViewById(R.id.ivBack);
         lvExpenses = findViewById(R.id.lvExpenses);
 
@@ -53,8 +43,6 @@ public class AdminLiveExpensesActivity extends AppCompatActivity {
                 expensesData
         );
         lvExpenses.setAdapter(expensesAdapter);
-
-        attachExpensesListener();
     }
 
     private String getCurrentMonthPrefix() {
@@ -66,52 +54,43 @@ public class AdminLiveExpensesActivity extends AppCompatActivity {
             expensesListener.remove();
             expensesListener = null;
         }
+        expensesListener = PullSync.getInstance(this).attachMonth(this, PullSync.EXPENSES,
+                getCurrentMonthPrefix(), null, this::showExpenses);
+    }
 
+    // ✅ rendered from SQLite; the pull only reads this month's docs changed since the last one
+    private void showExpenses() {
         final String monthPrefix = getCurrentMonthPrefix();
+        MessRepository repo = MessRepository.getInstance(this);
+
+        repo.deliver(this, repo.read(db -> db.getExpensesForMonth(monthPrefix)), expenses -> {
+            expensesData.clear();
+
+            for (Expense e : expenses) {
+                String title = (e.title == null || e.title.isEmpty()) ? "(No title)" : e.title;
+                String category = (e.category == null) ? "" : e.category;
+                String paidBy = (e.paidBy == null) ? "" : e.paidBy;
+
+                String row = e.date + " | " + title +
+                        " (" + category + ") by " + paidBy +
+                        " = " + String.format(Locale.getDefault(), "%.0f ৳", Money.taka(e.amountPaisa));
 
-        expensesListener = fs.collection("expenses")
-                .addSnapshotListener(new EventListener<QuerySnapshot>() {
-                    @Override
-                    public void onEvent(@Nullable QuerySnapshot value,
-                                        @Nullable FirebaseFirestoreException error) {
-                        if (error != null) {
-                            Toast.makeText(AdminLiveExpensesActivity.this,
-                                    "Expenses listen failed: " + error.getMessage(),
-                                    Toast.LENGTH_SHORT).show();
-                            return;
-                        }
-                        if (value == null) return;
-
-                        expensesData.clear();
-
-                        for (DocumentSnapshot doc : value.getDocuments()) {
-                            String date = doc.getString("date");
-                            if (date == null || !date.startsWith(monthPrefix)) continue;
-
-                            String title = doc.getString("title");
-                            String category = doc.getString("category");
-                            String paidBy = doc.getString("paidBy");
-                            Double amount = doc.getDouble("amount");
-
-                            if (title == null) title = "(No title)";
-                            if (category == null) category = "";
-                            if (paidBy == null) paidBy = "";
-                            if (amount == null) amount = 0.0;
-
-                            String row = date + " | " + title +
-                                    " (" + category + ") by " + paidBy +
-                                    " = " + String.format(Locale.getDefault(), "%.0f ৳", amount);
-
-                            expensesData.add(row);
-                        }
-
-                        if (expensesData.isEmpty()) {
-                            expensesData.add("No expenses found for this month");
-                        }
-
-                        expensesAdapter.notifyDataSetChanged();
-                    }
-                });
+                expensesData.add(row);
+            }
+
+            if (expensesData.isEmpty()) {
+                expensesData.add("No expenses found for this month");
+            }
+
+            expensesAdapter.notifyDataSetChanged();
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showExpenses();
+        attachExpensesListener();
     }
 
     @Override
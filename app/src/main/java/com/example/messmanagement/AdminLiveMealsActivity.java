@@ -4,17 +4,10 @@ import android.os.Bundle;
 import android.widget.ArrayAdapter;
 import android.widget.ImageView;
 import android.widget.ListView;
-import android.widget.Toast;
 
-import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.EventListener;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.google.firebase.firestore.ListenerRegistration;
-import com.google.firebase.firestore.QuerySnapshot;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -29,7 +22,6 @@ public class AdminLiveMealsActivity extends AppCompatActivity {
     private final ArrayList<String> mealsData = new ArrayList<>();
     private ArrayAdapter<String> mealsAdapter;
 
-    private FirebaseFirestore fs;
     private ListenerRegistration mealsListener;
 
     @Override
@@ -37,8 +29,6 @@ public class AdminLiveMealsActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_admin_live_meals);
 
-        fs = FirebaseFirestore.getInstance();
-
         ivBack = findViewById(R.id.ivBack);
         lvMeals = findViewById(R.id.lvMeals);
 
@@ -50,8 +40,6 @@ public class AdminLiveMealsActivity extends AppCompatActivity {
                 mealsData
         );
         lvMeals.setAdapter(mealsAdapter);
-
-        attachMealsListener();
     }
 
     private String getCurrentMonthPrefix() {
@@ -63,56 +51,43 @@ public class AdminLiveMealsActivity extends AppCompatActivity {
             mealsListener.remove();
             mealsListener = null;
         }
+        mealsListener = PullSync.getInstance(this).attachMonth(this, PullSync.MEALS,
+                getCurrentMonthPrefix(), null, this::showMeals);
+    }
 
+    // ✅ rendered from SQLite; the pull only reads this month's docs changed since the last one
+    private void showMeals() {
         final String monthPrefix = getCurrentMonthPrefix();
+        MessRepository repo = MessRepository.getInstance(this);
+
+        repo.deliver(this, repo.read(db -> db.getMealsForMonth(monthPrefix)), meals -> {
+            mealsData.clear();
+
+            for (RemoteMeal m : meals) {
+                String bTxt = (m.breakfast == 1) ? "YES" : "NO";
+                String lTxt = (m.lunch == 1) ? "YES" : "NO";
+                String dTxt = (m.dinner == 1) ? "YES" : "NO";
+
+                String row =
+                        m.memberName + "  (" + m.date + ")\n" +
+                                "Breakfast: " + bTxt + "   Lunch: " + lTxt + "   Dinner: " + dTxt;
 
-        mealsListener = fs.collection("meals_daily")
-                .addSnapshotListener(new EventListener<QuerySnapshot>() {
-                    @Override
-                    public void onEvent(@Nullable QuerySnapshot value,
-                                        @Nullable FirebaseFirestoreException error) {
-                        if (error != null) {
-                            Toast.makeText(AdminLiveMealsActivity.this,
-                                    "Meals listen failed: " + error.getMessage(),
-                                    Toast.LENGTH_SHORT).show();
-                            return;
-                        }
-                        if (value == null) return;
-
-                        mealsData.clear();
-
-                        for (DocumentSnapshot doc : value.getDocuments()) {
-                            String member = doc.getString("memberName");
-                            String date = doc.getString("date");
-                            Long bL = doc.getLong("breakfast");
-                            Long lL = doc.getLong("lunch");
-                            Long dL = doc.getLong("dinner");
-
-                            if (member == null || date == null) continue;
-                            if (!date.startsWith(monthPrefix)) continue;
-
-                            int b = (bL == null) ? 0 : bL.intValue();
-                            int l = (lL == null) ? 0 : lL.intValue();
-                            int d = (dL == null) ? 0 : dL.intValue();
-
-                            String bTxt = (b == 1) ? "YES" : "NO";
-                            String lTxt = (l == 1) ? "YES" : "NO";
-                            String dTxt = (d == 1) ? "YES" : "NO";
-
-                            String row =
-                                    member + "  (" + date + ")\n" +
-                                            "Breakfast: " + bTxt + "   Lunch: " + lTxt + "   Dinner: " + dTxt;
-
-                            mealsData.add(row);
-                        }
-
-                        if (mealsData.isEmpty()) {
-                            mealsData.add("No meals found for this month");
-                        }
-
-                        mealsAdapter.notifyDataSetChanged();
-                    }
-                });
+                mealsData.add(row);
+            }
+
+            if (mealsData.isEmpty()) {
+                mealsData.add("No meals found for this month");
+            }
+
+            mealsAdapter.notifyDataSetChanged();
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showMeals();
+        attachMealsListener();
     }
 
     @Override
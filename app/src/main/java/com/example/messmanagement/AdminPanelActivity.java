@@ -1,5 +1,6 @@
 package com.example.messmanagement;
 
+import android.app.AlertDialog;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.widget.Button;
@@ -12,12 +13,17 @@ import androidx.appcompat.app.AppCompatActivity;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
 public class AdminPanelActivity extends AppCompatActivity {
 
     private ImageView ivBack;
     private Button btnAddMember, btnRemoveMember, btnApproveMembers,
             btnSetMealPrice, btnShowMonthlyReport,
-            btnLiveMeals, btnLiveExpenses;
+            btnLiveMeals, btnLiveExpenses, btnDbHealth;
 
     private MessDBHelper messDb;
     private String currentAdminUid = "";
@@ -27,7 +33,7 @@ public class AdminPanelActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_admin_panel);
 
-        messDb = new MessDBHelper(this);
+        messDb = MessDBHelper.getInstance(this);
 
         // ✅ Prefer Firebase UID (works on any device)
         FirebaseUser fu = FirebaseAuth.getInstance().getCurrentUser();
@@ -48,6 +54,7 @@ public class AdminPanelActivity extends AppCompatActivity {
         btnShowMonthlyReport = findViewById(R.id.btnShowMonthlyReport);
         btnLiveMeals = findViewById(R.id.btnLiveMeals);
         btnLiveExpenses = findViewById(R.id.btnLiveExpenses);
+        btnDbHealth = findViewById(R.id.btnDbHealth);
 
         ivBack.setOnClickListener(v -> finish());
 
@@ -80,6 +87,80 @@ public class AdminPanelActivity extends AppCompatActivity {
 
         btnLiveExpenses.setOnClickListener(v ->
                 startActivity(new Intent(this, AdminLiveExpensesActivity.class)));
+
+        btnDbHealth.setOnClickListener(v -> showDbHealth());
+    }
+
+    // last maintenance runs (DbMaintenanceWorker), newest first, plus the sync outbox
+    private void showDbHealth() {
+        MessRepository repo = MessRepository.getInstance(this);
+        repo.deliver(this, repo.read(db -> {
+            DbHealth h = new DbHealth();
+            h.runs = db.getMaintenanceRuns(10);
+            h.outboxCounts = db.getOutboxCounts();
+            h.deadLetters = db.getDeadOutboxItems(5);
+            return h;
+        }), this::showDbHealth);
+    }
+
+    private static class DbHealth {
+        List<MaintenanceRun> runs;
+        int[] outboxCounts;            // {pending, dead}
+        List<OutboxItem> deadLetters;  // newest first
+    }
+
+    private void showDbHealth(DbHealth h) {
+        StringBuilder sb = new StringBuilder();
+        SimpleDateFormat when = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
+
+        sb.append(String.format(Locale.getDefault(), "Sync outbox: %d waiting, %d failed\n",
+                h.outboxCounts[0], h.outboxCounts[1]));
+        SharedPreferences stats = getSharedPreferences(FirestoreSyncWorker.PREFS_SYNC_STATS, MODE_PRIVATE);
+        sb.append(String.format(Locale.getDefault(), "Uploaded %d, %d extra meal taps merged before upload\n",
+                stats.getLong(FirestoreSyncWorker.KEY_DELIVERED, 0), stats.getLong(FirestoreSyncWorker.KEY_ABSORBED, 0)));
+        for (OutboxItem item : h.deadLetters) {
+            sb.append("⚠ ").append(item.entity).append(' ').append(item.key)
+                    .append(" (").append(item.attempts).append(" tries): ").append(item.lastError).append('\n');
+        }
+        sb.append('\n');
+
+        if (h.runs.isEmpty()) {
+            sb.append("No maintenance has run yet.\nIt runs about once a day while the phone is idle and charging.");
+        }
+        for (MaintenanceRun r : h.runs) {
+            sb.append(when.format(new Date(r.runAt)))
+                    .append(" — integrity: ").append(r.integrity).append('\n')
+                    .append(String.format(Locale.getDefault(),
+                            "DB %s (WAL %s), %d pages, %d free → %s\n",
+                            size(r.dbBytes), size(r.walBytes), r.pageCount, r.freelistPages, size(r.dbBytesAfter)))
+                    .append(String.format(Locale.getDefault(),
+                            "analyze %d ms · %s vacuum %d ms · check %d ms\n",
+                            r.analyzeMs, r.vacuumMode, r.vacuumMs, r.integrityMs));
+            if (r.error != null) sb.append("⚠ ").append(r.error).append('\n');
+            sb.append('\n');
+        }
+
+        AlertDialog.Builder dialog = new AlertDialog.Builder(this)
+                .setTitle("Database Health")
+                .setMessage(sb.toString().trim())
+                .setPositiveButton("OK", null);
+        if (h.outboxCounts[1] > 0) {
+            dialog.setNeutralButton("Retry failed", (d, w) -> retryDeadLetters());
+        }
+        dialog.show();
+    }
+
+    private void retryDeadLetters() {
+        MessRepository repo = MessRepository.getInstance(this);
+        repo.deliver(this, repo.write(MessDBHelper::retryDeadOutbox), n -> {
+            SyncScheduler.runOneTimeSyncNow(this);
+            Toast.makeText(this, n + " upload(s) queued again", Toast.LENGTH_SHORT).show();
+        });
+    }
+
+    private static String size(long bytes) {
+        if (bytes >= 1024 * 1024) return String.format(Locale.getDefault(), "%.1f MB", bytes / (1024.0 * 1024.0));
+        return String.format(Locale.getDefault(), "%d KB", bytes / 1024);
     }
 
     @Override
@@ -35,7 +35,7 @@ public class ApproveMembersActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_approve_members);
 
-        messDb = new MessDBHelper(this);
+        messDb = MessDBHelper.getInstance(this);
         fs = FirebaseFirestore.getInstance();
 
         lvPendingMembers = findViewById(R.id.lvPendingMembers);
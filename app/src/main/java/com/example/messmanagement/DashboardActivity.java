@@ -14,7 +14,6 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.work.Constraints;
 import androidx.work.ExistingPeriodicWorkPolicy;
@@ -26,19 +25,14 @@ import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.MetadataChanges;
 import com.google.firebase.firestore.Query;
-import com.google.firebase.firestore.QuerySnapshot;
 import com.google.firebase.messaging.FirebaseMessaging;
 
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 public class DashboardActivity extends AppCompatActivity {
@@ -53,7 +47,7 @@ public class DashboardActivity extends AppCompatActivity {
 
     private LinearLayout navMeals, navExpenses, navMembers, navProfile;
 
-    private MessDBHelper messDb;
+    private MessRepository repo;
     private KeyValueDB kvDb;
 
     private String currentUserName;
@@ -80,8 +74,8 @@ public class DashboardActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_dashboard);
 
-        messDb = new MessDBHelper(this);
-        kvDb = new KeyValueDB(this);
+        repo = MessRepository.getInstance(this);
+        kvDb = KeyValueDB.getInstance(this);
         fs = FirebaseFirestore.getInstance();
         mAuth = FirebaseAuth.getInstance();
 
@@ -96,13 +90,11 @@ public class DashboardActivity extends AppCompatActivity {
         else currentUserName = kvDb.getValueByKey("username");
         if (currentUserName == null) currentUserName = "Guest";
 
-        // ---------- role ----------
-        currentRole = messDb.getUserRoleByUsername(currentUserName);
-        if (currentRole == null) currentRole = kvDb.getValueByKey("role");
-        if (currentRole == null) currentRole = "member";
+        // ---------- role (cached now, confirmed from users table in onResume) ----------
+        currentRole = kvDb.getValueByKey("role");
+        if (currentRole == null || currentRole.trim().isEmpty()) currentRole = "member";
 
         kvDb.insertOrUpdate("username", currentUserName);
-        kvDb.insertOrUpdate("role", currentRole);
 
         setupNotificationsIfLoggedIn();
 
@@ -111,8 +103,7 @@ public class DashboardActivity extends AppCompatActivity {
         setupPayButton();
         setupNavigation();
 
-        setupLocalMealRatesAndCounts();
-        updateMoneyFromLocalDB();
+        refreshFromLocalDB();
 
         if (fu != null) {
             attachAllFirestoreListeners();
@@ -123,6 +114,7 @@ public class DashboardActivity extends AppCompatActivity {
         }
 
         scheduleDailyReminders();
+        SyncScheduler.scheduleDbMaintenance(this);
     }
 
     private void bindViews() {
@@ -216,21 +208,16 @@ public class DashboardActivity extends AppCompatActivity {
                     DocumentSnapshot d = snap.getDocuments().get(0);
 
                     String effectiveDate = d.getString("effectiveDate");
-                    Double b = d.getDouble("breakfastPrice");
-                    Double l = d.getDouble("lunchPrice");
-                    Double dn = d.getDouble("dinnerPrice");
-
                     if (effectiveDate == null) return;
 
-                    double bPrice = (b == null) ? 0.0 : b;
-                    double lPrice = (l == null) ? 0.0 : l;
-                    double dPrice = (dn == null) ? 0.0 : dn;
-
-                    // ✅ signature: (double,double,double,String)
-                    messDb.insertMealPriceHistory(bPrice, lPrice, dPrice, effectiveDate);
+                    long bPrice = FirestoreMoney.get(d, "breakfastPrice");
+                    long lPrice = FirestoreMoney.get(d, "lunchPrice");
+                    long dPrice = FirestoreMoney.get(d, "dinnerPrice");
 
-                    setupLocalMealRatesAndCounts();
-                    updateMoneyFromLocalDB();
+                    // ✅ signature: (long,long,long,String) — paisa
+                    repo.deliver(this,
+                            repo.insertMealPriceHistory(bPrice, lPrice, dPrice, effectiveDate),
+                            ok -> refreshFromLocalDB());
                 });
     }
 
@@ -391,83 +378,80 @@ public class DashboardActivity extends AppCompatActivity {
             return;
         }
 
+        String member = currentUserName;
         String today = getTodayDate();
 
-        messDb.setMealForDate(currentUserName, today, mealType, val);
-
-        setupLocalMealRatesAndCounts();
-        updateMoneyFromLocalDB();
+        // ✅ write on the db thread, then refresh; the outbox uploads the day once the taps settle
+        repo.deliver(this, repo.setMealForDate(member, today, mealType, val), daily -> {
+            if (daily == null) return; // nothing changed: no recompute, no sync
 
-        FirebaseUser fu = mAuth.getCurrentUser();
-        if (fu != null) {
-            syncMealToFirestore(currentUserName, today);
-        }
+            refreshFromLocalDB();
+            SyncScheduler.scheduleMealFlush(this);
+        });
     }
 
-    private void syncMealToFirestore(String member, String date) {
-        if (member == null || date == null) return;
-
-        int[] daily = messDb.getMealsForDate(member, date);
-
-        Map<String, Object> mealMap = new HashMap<>();
-        mealMap.put("memberName", member);
-        mealMap.put("date", date);
-        mealMap.put("breakfast", daily[0]);
-        mealMap.put("lunch", daily[1]);
-        mealMap.put("dinner", daily[2]);
-
-        String docId = member + "_" + date;
-
-        fs.collection("meals_daily")
-                .document(docId)
-                .set(mealMap);
+    // everything the dashboard cards show, read in one background task
+    static class LocalNumbers {
+        double[] mealPrices;
+        int totalMeals;
+        boolean admin;
+        double totalExpenses;
+        double totalPayments;
+        Summary mine;
     }
 
-    private void setupLocalMealRatesAndCounts() {
+    private void refreshFromLocalDB() {
         String monthPrefix = getCurrentMonthPrefix();
+        String member = currentUserName;
+        boolean admin = "admin".equalsIgnoreCase(currentRole);
 
-        double[] mealPrices = messDb.getCurrentMealPrices();
-        String mealPricesText = String.format(Locale.getDefault(),
-                "Breakfast = %.0f\nLunch = %.0f\nDinner = %.0f",
-                mealPrices[0], mealPrices[1], mealPrices[2]);
-        tvMealRateValue.setText(mealPricesText);
+        repo.deliver(this, repo.read(db -> readLocalNumbers(db, monthPrefix, member, admin)), this::bindLocalNumbers);
+    }
 
-        if ("admin".equalsIgnoreCase(currentRole)) {
-            int totalMeals = messDb.getMonthlyTotalMealsAllMembers(monthPrefix);
-            tvTotalMealsValue.setText(String.valueOf(totalMeals));
+    // ✅ everything one refresh reads (db thread); QueryBudgetTest holds it to a fixed query count
+    static LocalNumbers readLocalNumbers(MessDBHelper db, String monthPrefix, String member, boolean admin) {
+        LocalNumbers n = new LocalNumbers();
+        n.admin = admin;
+        n.mealPrices = db.getCurrentMealPrices();
+
+        if (admin) {
+            n.totalMeals = db.getMonthlyTotalMealsAllMembers(monthPrefix);
+            double totalMealCost = db.getMonthlyTotalMealCostAllMembers(monthPrefix);
+            double totalOtherExpenses = db.getTotalLocalOtherExpensesForMonth(monthPrefix);
+            n.totalExpenses = totalMealCost + totalOtherExpenses;
+            n.totalPayments = db.getMonthlyTotalPaidAllMembers(monthPrefix);
         } else {
-            int[] counts = messDb.getMonthlyMealCountsForMember(currentUserName, monthPrefix);
-            int myMeals = counts[0] + counts[1] + counts[2];
-            tvTotalMealsValue.setText(String.valueOf(myMeals));
+            n.mine = db.computeMemberLedger(member, monthPrefix);
+            n.totalMeals = n.mine.breakfast + n.mine.lunch + n.mine.dinner;
         }
+        return n;
     }
 
-    private void updateMoneyFromLocalDB() {
-        String monthPrefix = getCurrentMonthPrefix();
-
-        if ("admin".equalsIgnoreCase(currentRole)) {
-            double totalMealCost = messDb.getMonthlyTotalMealCostAllMembers(monthPrefix);
-            double totalOtherExpenses = messDb.getTotalLocalOtherExpensesForMonth(monthPrefix);
-            double totalPayments = messDb.getMonthlyTotalPaidAllMembers(monthPrefix);
+    private void bindLocalNumbers(LocalNumbers n) {
+        String mealPricesText = String.format(Locale.getDefault(),
+                "Breakfast = %.0f\nLunch = %.0f\nDinner = %.0f",
+                n.mealPrices[0], n.mealPrices[1], n.mealPrices[2]);
+        tvMealRateValue.setText(mealPricesText);
+        tvTotalMealsValue.setText(String.valueOf(n.totalMeals));
 
-            double totalExpenses = totalMealCost + totalOtherExpenses;
-            double outstanding = totalExpenses - totalPayments;
+        if (n.admin) {
+            double outstanding = MealLedger.balance(n.totalExpenses, n.totalPayments);
 
-            tvTotalExpenseValue.setText(String.format(Locale.getDefault(), "%.0f ৳", totalExpenses));
-            tvPaidValue.setText(String.format(Locale.getDefault(), "%.0f ৳", totalPayments));
+            tvTotalExpenseValue.setText(String.format(Locale.getDefault(), "%.0f ৳", n.totalExpenses));
+            tvPaidValue.setText(String.format(Locale.getDefault(), "%.0f ৳", n.totalPayments));
 
             if (outstanding > 0) tvOutstandingDuesValue.setText(String.format(Locale.getDefault(), "Due: %.0f ৳", outstanding));
             else if (outstanding < 0) tvOutstandingDuesValue.setText(String.format(Locale.getDefault(), "Balance: %.0f ৳", -outstanding));
             else tvOutstandingDuesValue.setText("Balanced");
 
         } else {
-            double[] otherAndPaid = messDb.getMemberLocalExpenseAndPaymentForMonth(currentUserName, monthPrefix);
-            double myOtherExpenses = otherAndPaid[0];
-            double myPayments = otherAndPaid[1];
+            Summary mine = n.mine;
+            double myOtherExpenses = mine.otherShare;
+            double myPayments = mine.paid;
 
-            double mealCost = messDb.getMonthlyMealCostForMember(currentUserName, monthPrefix);
-            double totalCost = mealCost + myOtherExpenses;
-            double balance = totalCost - myPayments;
+            double mealCost = mine.mealCost;
+            double totalCost = mine.totalCost;
+            double balance = mine.balance;
 
             tvTotalExpenseValue.setText(String.format(Locale.getDefault(), "%.0f ৳", totalCost));
             tvPaidValue.setText(String.format(Locale.getDefault(), "%.0f ৳", myPayments));
@@ -501,85 +485,17 @@ public class DashboardActivity extends AppCompatActivity {
 
     // ===================== REALTIME LISTENERS =====================
 
+    // ✅ this month's docs changed since the last pull are read; the cards render from SQLite
     private void attachRealtimeExpensesListener() {
         detachExpenseListener();
-
-        expensesListener = fs.collection("expenses")
-                .addSnapshotListener((@Nullable QuerySnapshot value,
-                                      @Nullable FirebaseFirestoreException error) -> {
-                    if (error != null) {
-                        Toast.makeText(DashboardActivity.this,
-                                "Expense listen failed: " + error.getMessage(),
-                                Toast.LENGTH_LONG).show();
-                        return;
-                    }
-                    if (value == null) return;
-
-                    String monthPrefix = getCurrentMonthPrefix();
-                    messDb.clearSyncedExpensesForMonth(monthPrefix);
-
-                    for (DocumentSnapshot doc : value.getDocuments()) {
-                        String date = doc.getString("date");
-                        String title = doc.getString("title");
-                        String category = doc.getString("category");
-                        String paidBy = doc.getString("paidBy");
-                        Double amount = doc.getDouble("amount");
-                        if (amount == null) amount = 0.0;
-                        if (category == null) category = "";
-
-                        if (date != null && paidBy != null && date.startsWith(monthPrefix)) {
-                            messDb.upsertExpenseFromRemote(
-                                    doc.getId(),
-                                    date,
-                                    title != null ? title : "",
-                                    category,
-                                    paidBy,
-                                    amount
-                            );
-                        }
-                    }
-
-                    updateMoneyFromLocalDB();
-                });
+        expensesListener = PullSync.getInstance(this).attachMonth(this, PullSync.EXPENSES,
+                getCurrentMonthPrefix(), null, this::refreshFromLocalDB);
     }
 
     private void attachRealtimeMealsListener() {
         detachMealsListener();
-
-        mealsListener = fs.collection("meals_daily")
-                .addSnapshotListener((@Nullable QuerySnapshot value,
-                                      @Nullable FirebaseFirestoreException error) -> {
-                    if (error != null) {
-                        Toast.makeText(DashboardActivity.this,
-                                "Meals listen failed: " + error.getMessage(),
-                                Toast.LENGTH_LONG).show();
-                        return;
-                    }
-                    if (value == null) return;
-
-                    String monthPrefix = getCurrentMonthPrefix();
-
-                    for (DocumentSnapshot doc : value.getDocuments()) {
-                        String memberName = doc.getString("memberName");
-                        String date = doc.getString("date");
-
-                        if (memberName == null || date == null) continue;
-                        if (!date.startsWith(monthPrefix)) continue;
-
-                        Long bL = doc.getLong("breakfast");
-                        Long lL = doc.getLong("lunch");
-                        Long dL = doc.getLong("dinner");
-
-                        int b = (bL == null) ? 0 : bL.intValue();
-                        int l = (lL == null) ? 0 : lL.intValue();
-                        int d = (dL == null) ? 0 : dL.intValue();
-
-                        messDb.upsertMealsFromRemote(memberName, date, b, l, d);
-                    }
-
-                    setupLocalMealRatesAndCounts();
-                    updateMoneyFromLocalDB();
-                });
+        mealsListener = PullSync.getInstance(this).attachMonth(this, PullSync.MEALS,
+                getCurrentMonthPrefix(), null, this::refreshFromLocalDB);
     }
 
     private void detachExpenseListener() {
@@ -600,16 +516,22 @@ public class DashboardActivity extends AppCompatActivity {
     protected void onResume() {
         super.onResume();
 
+        setupHeader();
+        refreshFromLocalDB();
+
         if (currentUserName != null && !"Guest".equals(currentUserName)) {
-            String dbRole = messDb.getUserRoleByUsername(currentUserName);
-            if (dbRole != null) currentRole = dbRole;
-            kvDb.insertOrUpdate("role", currentRole);
+            String member = currentUserName;
+            repo.deliver(this, repo.read(db -> db.getUserRoleByUsername(member)), dbRole -> {
+                if (dbRole == null) return;
+                kvDb.insertOrUpdate("role", dbRole);
+                if (dbRole.equalsIgnoreCase(currentRole)) return;
+
+                currentRole = dbRole;
+                setupHeader();
+                refreshFromLocalDB();
+            });
         }
 
-        setupHeader();
-        setupLocalMealRatesAndCounts();
-        updateMoneyFromLocalDB();
-
         FirebaseUser fu = mAuth.getCurrentUser();
         if (fu != null) {
             // safe re-attach
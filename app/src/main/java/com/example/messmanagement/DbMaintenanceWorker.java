@@ -0,0 +1,39 @@
+package com.example.messmanagement;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+// ANALYZE + incremental vacuum + quick_check on mess_management.db (see MessDBHelper.runMaintenance)
+public class DbMaintenanceWorker extends Worker {
+
+    public static final String UNIQUE_WORK_NAME = "mess_db_maintenance";
+    private static final String TAG = "DbMaintenance";
+
+    public DbMaintenanceWorker(@NonNull Context context,
+                               @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        MaintenanceRun run = MessDBHelper.getInstance(getApplicationContext()).runMaintenance();
+        Log.i(TAG, run.vacuumMode + " vacuum, " + run.dbBytes + " -> " + run.dbBytesAfter + " bytes, " +
+                "analyze " + run.analyzeMs + " ms, vacuum " + run.vacuumMs + " ms, check " + run.integrityMs + " ms, " +
+                "integrity " + run.integrity + (run.error != null ? ", error " + run.error : ""));
+        return Result.success();
+    }
+
+    // heavy file I/O: only while the phone is idle and on the charger
+    public static Constraints idleChargingConstraints() {
+        return new Constraints.Builder()
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .build();
+    }
+}
@@ -15,6 +15,7 @@ import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
 import java.text.SimpleDateFormat;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
 
@@ -33,21 +34,22 @@ public class DueReminderWorker extends Worker {
     public Result doWork() {
         Context ctx = getApplicationContext();
 
-        KeyValueDB kvDb = new KeyValueDB(ctx);
+        closeFinishedMonths(ctx);
+
+        KeyValueDB kvDb = KeyValueDB.getInstance(ctx);
         String username = kvDb.getValueByKey("username");
         if (username == null || "Guest".equals(username)) {
             return Result.success();
         }
 
-        MessDBHelper messDb = new MessDBHelper(ctx);
+        MessDBHelper messDb = MessDBHelper.getInstance(ctx);
 
         // 1) Check current month due from local DB
         String monthPrefix = new SimpleDateFormat("yyyy-MM", Locale.getDefault())
                 .format(new Date());
-        ExpenseBreakdown breakdown =
-                messDb.getMemberExpenseBreakdown(username, monthPrefix);
+        Summary ledger = messDb.computeMemberLedger(username, monthPrefix);
 
-        boolean hasDue = breakdown != null && breakdown.balance > 0;
+        boolean hasDue = ledger != null && ledger.balance > 0;
 
         // 2) Check if today's meals are empty (user forgot to add meals)
         String today = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault())
@@ -97,6 +99,20 @@ public class DueReminderWorker extends Worker {
         return Result.success();
     }
 
+    // ✅ archive months older than last month (this month + last month stay live);
+    // their raw rows go only after COMPACT_AFTER_MONTHS, so late uploads from other phones still count
+    private void closeFinishedMonths(Context ctx) {
+        SimpleDateFormat monthFormat = new SimpleDateFormat("yyyy-MM", Locale.US);
+        MessDBHelper db = MessDBHelper.getInstance(ctx);
+
+        Calendar cal = Calendar.getInstance();
+        cal.add(Calendar.MONTH, -1);
+        db.closeMonthsBefore(monthFormat.format(cal.getTime()));
+
+        cal.add(Calendar.MONTH, 1 - MessDBHelper.COMPACT_AFTER_MONTHS);
+        db.compactMonthsBefore(monthFormat.format(cal.getTime()));
+    }
+
     private void createNotificationChannel(Context context) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             CharSequence name = "Mess Reminders";
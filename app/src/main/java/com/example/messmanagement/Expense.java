@@ -3,7 +3,7 @@ package com.example.messmanagement;
 public class Expense {
     public long id;
     public String title;
-    public double amount;
+    public long amountPaisa;
     public String category;
     public String paidBy;
     public String date;
@@ -0,0 +1,31 @@
+package com.example.messmanagement;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.Map;
+
+/**
+ * Money fields on Firestore docs.
+ * Writes carry "<field>Paisa" (exact integer) next to the old "<field>" taka
+ * double, so app versions that only know the double keep working. Reads prefer
+ * the paisa field and fall back to the double on docs written before it existed.
+ */
+public final class FirestoreMoney {
+
+    static final String PAISA_SUFFIX = "Paisa";
+
+    private FirestoreMoney() { }
+
+    public static long get(DocumentSnapshot doc, String field) {
+        Object paisa = doc.get(field + PAISA_SUFFIX);
+        Object taka = doc.get(field);
+        return Money.fromRemote(
+                paisa instanceof Number ? (Number) paisa : null,
+                taka instanceof Number ? (Number) taka : null);
+    }
+
+    public static void put(Map<String, Object> doc, String field, long paisa) {
+        doc.put(field + PAISA_SUFFIX, paisa);
+        doc.put(field, Money.taka(paisa));
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.messmanagement;
 
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.work.Constraints;
@@ -9,24 +12,59 @@ import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
 import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.WriteBatch;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Drains the outbox table (MessDBHelper, SYNC OUTBOX) into Firestore.
+ * Due items go out in WriteBatch commits; a batch that fails is retried item
+ * by item, so one bad doc only holds up itself. A failed item backs off on its
+ * own and becomes a dead letter (Admin Panel → Database Health) after
+ * MAX_ATTEMPTS tries, or at once if Firestore rejects it as invalid.
+ * Meal taps reach the outbox already coalesced per day (MessDBHelper.enqueueMeal),
+ * so a burst of taps is one doc write and one notification.
+ */
 public class FirestoreSyncWorker extends Worker {
 
     public static final String UNIQUE_WORK_NAME = "mess_firestore_sync_worker";
+    private static final String TAG = "FirestoreSync";
+
+    // Firestore rejects a WriteBatch with more than 500 writes
+    static final int MAX_BATCH_WRITES = 500;
+    private static final int MAX_ITEMS_PER_RUN = 2000;
+
+    static final int MAX_ATTEMPTS = 8;
+    private static final long BACKOFF_BASE_MS = 30_000L;          // 30 s, 1 min, 2 min, ...
+    private static final long BACKOFF_MAX_MS = 6 * 60 * 60_000L;  // ... capped at 6 h
 
     private final MessDBHelper messDb;
     private final FirebaseFirestore fs;
 
+    // lifetime counters for Admin Panel → Database Health
+    static final String PREFS_SYNC_STATS = "SyncStats";
+    static final String KEY_DELIVERED = "delivered";
+    static final String KEY_ABSORBED = "absorbed";
+
+    private int delivered, absorbed, retrying, dead;
+
     public FirestoreSyncWorker(@NonNull Context context, @NonNull WorkerParameters params) {
         super(context, params);
-        messDb = new MessDBHelper(context);
+        messDb = MessDBHelper.getInstance(context);
         fs = FirebaseFirestore.getInstance();
     }
 
@@ -34,75 +72,219 @@ public class FirestoreSyncWorker extends Worker {
     @Override
     public Result doWork() {
         try {
-            // ===================== 1) MEALS =====================
-            // IMPORTANT: this requires you to store which meal changed last.
-            // pm.changedMealType = "Breakfast"/"Lunch"/"Dinner"
-            // pm.changedValue    = 1 or 0
-            List<PendingMeal> pendingMeals = messDb.getPendingMeals();
-            for (PendingMeal pm : pendingMeals) {
-                if (pm.memberName == null || pm.date == null) continue;
-
-                String docId = pm.memberName + "_" + pm.date;
-
-                Map<String, Object> mealMap = new HashMap<>();
-                mealMap.put("memberName", pm.memberName);
-                mealMap.put("date", pm.date);
-                mealMap.put("breakfast", pm.breakfast);
-                mealMap.put("lunch", pm.lunch);
-                mealMap.put("dinner", pm.dinner);
-
-                Tasks.await(fs.collection("meals_daily").document(docId).set(mealMap));
-                messDb.markMealSynced(pm.memberName, pm.date);
-
-                // ✅ Notify only if this sync was triggered by a specific meal ADD (value=1)
-                if (pm.changedMealType != null && pm.changedValue == 1) {
-                    createMealNotification(
-                            pm.memberName,
-                            pm.date,
-                            pm.changedMealType
-                    );
+            List<OutboxItem> due = messDb.getDueOutbox(System.currentTimeMillis(), MAX_ITEMS_PER_RUN);
+            if (due.isEmpty()) return Result.success();
+
+            // parse everything first so the notification names come from one users query
+            List<OutboxItem> items = new ArrayList<>();
+            List<JSONObject> payloads = new ArrayList<>();
+            Set<String> senders = new HashSet<>();
+            for (OutboxItem item : due) {
+                try {
+                    JSONObject p = new JSONObject(item.payload);
+                    senders.add(p.optString(MessDBHelper.OUTBOX_MEAL.equals(item.entity) ? "memberName" : "paidBy"));
+                    items.add(item);
+                    payloads.add(p);
+                } catch (JSONException e) {
+                    fail(item, "bad payload: " + e.getMessage(), true);
+                }
+            }
+            messDb.preloadUserProfiles(senders);
+
+            // an item's doc and its notification always go in the same batch
+            List<Upload> batch = new ArrayList<>();
+            int writes = 0;
+            for (int i = 0; i < items.size(); i++) {
+                Upload u = toUpload(items.get(i), payloads.get(i));
+                if (u == null) continue;
+                if (writes + u.refs.size() > MAX_BATCH_WRITES) {
+                    commit(batch);
+                    batch = new ArrayList<>();
+                    writes = 0;
                 }
+                batch.add(u);
+                writes += u.refs.size();
             }
+            commit(batch);
 
-            // ===================== 2) EXPENSES =====================
-            List<PendingExpense> pendingExpenses = messDb.getPendingExpenses();
-            for (PendingExpense pe : pendingExpenses) {
-                if (pe.remoteId == null || pe.remoteId.trim().isEmpty()) continue;
+            recordStats();
+            Log.i(TAG, "outbox run: " + delivered + " delivered (" + absorbed + " earlier writes absorbed), " +
+                    retrying + " backing off, " + dead + " dead");
+            return Result.success();
 
-                Map<String, Object> exp = new HashMap<>();
-                exp.put("date", pe.date);
-                exp.put("title", pe.title);
-                exp.put("category", pe.category);
-                exp.put("paidBy", pe.paidBy);
-                exp.put("amount", pe.amount);
+        } catch (Exception e) {
+            // local db trouble or the worker was stopped; every item keeps its own state
+            Log.w(TAG, "sync run failed, will retry", e);
+            return Result.retry();
+        }
+    }
+
+    // ===================== UPLOADS =====================
+
+    /** One outbox item and the Firestore writes that deliver it. */
+    private static final class Upload {
+        final OutboxItem item;
+        final List<DocumentReference> refs = new ArrayList<>();
+        final List<Map<String, Object>> docs = new ArrayList<>();
+
+        Upload(OutboxItem item) {
+            this.item = item;
+        }
+
+        void set(DocumentReference ref, Map<String, Object> doc) {
+            refs.add(ref);
+            docs.add(doc);
+        }
+    }
+
+    private Upload toUpload(OutboxItem item, JSONObject p) {
+        Upload u = new Upload(item);
+        try {
+            if (MessDBHelper.OUTBOX_MEAL.equals(item.entity)) {
+                String member = p.getString("memberName");
+                String date = p.getString("date");
 
-                Tasks.await(fs.collection("expenses").document(pe.remoteId).set(exp));
-                messDb.markExpenseSynced(pe.remoteId);
+                Map<String, Object> mealMap = new HashMap<>();
+                mealMap.put("memberName", member);
+                mealMap.put("date", date);
+                mealMap.put("breakfast", p.getInt("breakfast"));
+                mealMap.put("lunch", p.getInt("lunch"));
+                mealMap.put("dinner", p.getInt("dinner"));
+                mealMap.put(PullSync.FIELD_UPDATED_AT, FieldValue.serverTimestamp()); // ✅ pull-sync mark
+                u.set(fs.collection("meals_daily").document(item.key), mealMap);
+
+                // ✅ Notify only for meals ADDED (0 -> 1) since Firestore last got this doc
+                List<String> added = addedMeals(p);
+                if (!added.isEmpty()) addMealNotification(u, member, date, added);
+            } else if (MessDBHelper.OUTBOX_EXPENSE.equals(item.entity)) {
+                String title = p.optString("title", null);
+                long amountPaisa = p.getLong("amountPaisa");
+                String category = p.optString("category", null);
+                String paidBy = p.optString("paidBy", null);
+                String date = p.optString("date", null);
+
+                Map<String, Object> exp = new HashMap<>();
+                exp.put("date", date);
+                exp.put("title", title);
+                exp.put("category", category);
+                exp.put("paidBy", paidBy);
+                FirestoreMoney.put(exp, "amount", amountPaisa);
+                exp.put(PullSync.FIELD_UPDATED_AT, FieldValue.serverTimestamp()); // ✅ pull-sync mark
+                u.set(fs.collection("expenses").document(item.key), exp);
 
                 // ✅ Notify for every expense (including payments)
-                createExpenseNotification(pe);
+                addExpenseNotification(u, item.key, title, amountPaisa, category, paidBy, date);
+            } else {
+                fail(item, "unknown entity " + item.entity, true);
+                return null;
             }
+        } catch (JSONException e) {
+            fail(item, "bad payload: " + e.getMessage(), true);
+            return null;
+        }
+        return u;
+    }
 
-            return Result.success();
+    private static final String[] MEAL_TYPES = {"Breakfast", "Lunch", "Dinner"};
 
-        } catch (Exception e) {
-            return Result.retry();
+    private static List<String> addedMeals(JSONObject p) throws JSONException {
+        List<String> added = new ArrayList<>();
+        if (!p.has(MessDBHelper.MEAL_BASE_FIELDS[0])) {
+            // queued before v17: only the last tap is known
+            String changedMealType = p.optString("changedMealType", null);
+            if (changedMealType != null && p.optInt("changedValue") == 1) added.add(changedMealType);
+            return added;
+        }
+        String[] now = {"breakfast", "lunch", "dinner"};
+        for (int i = 0; i < 3; i++) {
+            if (p.getInt(now[i]) == 1 && p.optInt(MessDBHelper.MEAL_BASE_FIELDS[i]) == 0) added.add(MEAL_TYPES[i]);
+        }
+        return added;
+    }
+
+    // one WriteBatch for all uploads; if it fails, each upload is tried on its own
+    private void commit(List<Upload> uploads) throws InterruptedException {
+        if (uploads.isEmpty()) return;
+
+        WriteBatch batch = fs.batch();
+        int writes = 0;
+        for (Upload u : uploads) {
+            for (int i = 0; i < u.refs.size(); i++) batch.set(u.refs.get(i), u.docs.get(i));
+            writes += u.refs.size();
+        }
+
+        long t0 = SystemClock.elapsedRealtime();
+        try {
+            Tasks.await(batch.commit());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (uploads.size() == 1) {
+                fail(uploads.get(0).item, cause.toString(), isPermanent(cause));
+                return;
+            }
+            Log.w(TAG, "batch of " + uploads.size() + " items failed (" + cause + "), retrying one by one");
+            for (Upload u : uploads) {
+                List<Upload> one = new ArrayList<>();
+                one.add(u);
+                commit(one);
+            }
+            return;
+        }
+        long commitMs = SystemClock.elapsedRealtime() - t0;
+
+        List<OutboxItem> items = new ArrayList<>(uploads.size());
+        for (Upload u : uploads) {
+            items.add(u.item);
+            absorbed += u.item.coalesced;
         }
+        messDb.markOutboxDelivered(items);
+        delivered += items.size();
+        Log.i(TAG, "commit: " + writes + " docs (" + items.size() + " outbox items) in " + commitMs + " ms");
+    }
+
+    // retrying can't fix a doc Firestore refuses as malformed
+    private static boolean isPermanent(Throwable t) {
+        return t instanceof FirebaseFirestoreException &&
+                ((FirebaseFirestoreException) t).getCode() == FirebaseFirestoreException.Code.INVALID_ARGUMENT;
+    }
+
+    private void fail(OutboxItem item, String error, boolean permanent) {
+        int attempts = item.attempts + 1;
+        boolean isDead = permanent || attempts >= MAX_ATTEMPTS;
+        messDb.markOutboxFailed(item.id, attempts, System.currentTimeMillis() + backoffMs(attempts), isDead, error);
+        if (isDead) dead++;
+        else retrying++;
+        Log.w(TAG, item.entity + " " + item.key + " failed (attempt " + attempts + ")" +
+                (isDead ? ", now a dead letter" : "") + ": " + error);
+    }
+
+    static long backoffMs(int attempts) {
+        return Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << Math.min(attempts - 1, 20));
+    }
+
+    private void recordStats() {
+        if (delivered == 0) return;
+        SharedPreferences prefs = getApplicationContext().getSharedPreferences(PREFS_SYNC_STATS, Context.MODE_PRIVATE);
+        prefs.edit()
+                .putLong(KEY_DELIVERED, prefs.getLong(KEY_DELIVERED, 0) + delivered)
+                .putLong(KEY_ABSORBED, prefs.getLong(KEY_ABSORBED, 0) + absorbed)
+                .apply();
     }
 
     // ===================== NOTIFICATION HELPERS =====================
 
-    private void createMealNotification(String memberEmail, String date, String mealType) throws Exception {
+    private void addMealNotification(Upload u, String memberEmail, String date, List<String> mealTypes) {
         String displayName = messDb.getDisplayNameByUsername(memberEmail);
         if (displayName == null || displayName.trim().isEmpty()) displayName = memberEmail;
 
         String month = (date != null && date.length() >= 7) ? date.substring(0, 7) : "";
-        String mealKey = mealType.toLowerCase(Locale.getDefault());
+        String meals = joinMeals(mealTypes, " & ");
+        String mealKey = joinMeals(mealTypes, "_").toLowerCase(Locale.getDefault());
 
         Map<String, Object> n = new HashMap<>();
         n.put("type", "meal");
-        n.put("title", mealType + " Added");
-        n.put("body", displayName + " added " + mealType + " (" + date + ")");
+        n.put("title", meals + " Added");
+        n.put("body", displayName + " added " + meals + " (" + date + ")");
         n.put("senderName", displayName);      // ✅ for UI/FCM
         n.put("senderEmail", memberEmail);     // optional
         n.put("date", date);
@@ -112,21 +294,31 @@ public class FirestoreSyncWorker extends Worker {
 
         // deterministic id prevents duplicates
         String nid = "meal_" + memberEmail + "_" + date + "_" + mealKey;
-        Tasks.await(fs.collection("notifications").document(nid).set(n));
+        u.set(fs.collection("notifications").document(nid), n);
+    }
+
+    private static String joinMeals(List<String> mealTypes, String sep) {
+        StringBuilder sb = new StringBuilder();
+        for (String m : mealTypes) {
+            if (sb.length() > 0) sb.append(sep);
+            sb.append(m);
+        }
+        return sb.toString();
     }
 
-    private void createExpenseNotification(PendingExpense pe) throws Exception {
-        String paidByEmail = (pe.paidBy == null) ? "" : pe.paidBy;
+    private void addExpenseNotification(Upload u, String remoteId, String expenseTitle, long amountPaisa,
+                                        String expenseCategory, String paidBy, String expenseDate) {
+        String paidByEmail = (paidBy == null) ? "" : paidBy;
         String displayName = messDb.getDisplayNameByUsername(paidByEmail);
         if (displayName == null || displayName.trim().isEmpty()) displayName = paidByEmail;
 
-        String date = (pe.date == null) ? "" : pe.date;
+        String date = (expenseDate == null) ? "" : expenseDate;
         String month = (date.length() >= 7) ? date.substring(0, 7) : "";
 
-        String category = (pe.category == null) ? "" : pe.category;
+        String category = (expenseCategory == null) ? "" : expenseCategory;
         boolean isPayment = MessDBHelper.CATEGORY_PAYMENT.equalsIgnoreCase(category);
 
-        String safeTitle = (pe.title == null) ? "" : pe.title;
+        String safeTitle = (expenseTitle == null) ? "" : expenseTitle;
 
         String body;
         String title;
@@ -135,12 +327,12 @@ public class FirestoreSyncWorker extends Worker {
         if (isPayment) {
             type = "payment";
             title = "Payment Added";
-            body = displayName + " paid " + pe.amount + "৳ (" + date + ")";
+            body = displayName + " paid " + Money.plain(amountPaisa) + "৳ (" + date + ")";
         } else {
             type = "expense";
             title = "Expense Added";
             body = displayName + " added expense: " + safeTitle +
-                    " — " + pe.amount + "৳ (" + category + ", " + date + ")";
+                    " — " + Money.plain(amountPaisa) + "৳ (" + category + ", " + date + ")";
         }
 
         Map<String, Object> n = new HashMap<>();
@@ -153,14 +345,14 @@ public class FirestoreSyncWorker extends Worker {
 
         n.put("date", date);
         n.put("month", month);
-        n.put("amount", String.valueOf(pe.amount));
+        n.put("amount", Money.plain(amountPaisa));
         n.put("category", category);
         n.put("expenseTitle", safeTitle);
         n.put("createdAt", FieldValue.serverTimestamp());
 
         // one notification per expense
-        String nid = "exp_" + pe.remoteId;
-        Tasks.await(fs.collection("notifications").document(nid).set(n));
+        String nid = "exp_" + remoteId;
+        u.set(fs.collection("notifications").document(nid), n);
     }
 
     // ===================== WORK CONSTRAINTS =====================
@@ -5,7 +5,34 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small key/value store for session keys (username, role, is_logged_in, ...).
+ * Reads are served from an in-memory copy loaded with one query on first use;
+ * writes update that copy immediately and are written to disk in a background
+ * transaction, so bursts of writes share one commit.
+ *
+ * Storage is either the original SQLite file or, with USE_LOG_BACKEND, an
+ * append-only KeyValueLog (no SQLite open on cold start). The first start on
+ * the log backend copies the SQLite rows over and deletes KEY_VALUE.DB.
+ * An unreadable log is moved aside and a fresh one started (if even that
+ * fails, this process falls back to SQLite). A batch that fails to write is
+ * queued again and retried with backoff, so the cache never claims a write
+ * that is not on disk for good.
+ */
 public class KeyValueDB extends SQLiteOpenHelper {
 
 	// TABLE INFORMATION
@@ -14,8 +41,38 @@ public class KeyValueDB extends SQLiteOpenHelper {
 	public final String KEY = "keyname";
 	public final String VALUE = "itemvalue";
 
-	public KeyValueDB(Context context) {
-		super(context, DB_NAME, null, 1);
+	// ✅ log backend: one small file read at startup instead of opening SQLite
+	static final boolean USE_LOG_BACKEND = true;
+	static final String LOG_FILE_NAME = "key_value.log";
+
+	private static volatile KeyValueDB instance;
+
+	private final Context appContext;
+	private final KeyValueLog log;
+	private volatile boolean logUnusable = false; // log couldn't be opened even fresh: SQLite for this process
+
+	public static KeyValueDB getInstance(Context context) {
+		if (instance == null) {
+			synchronized (KeyValueDB.class) {
+				if (instance == null) {
+					instance = new KeyValueDB(context.getApplicationContext());
+				}
+			}
+		}
+		return instance;
+	}
+
+	private KeyValueDB(Context context) {
+		super(context, DB_NAME, QueryStats.CURSOR_FACTORY, 1);
+		setWriteAheadLoggingEnabled(true);
+		appContext = context;
+		log = USE_LOG_BACKEND ? new KeyValueLog(new File(context.getFilesDir(), LOG_FILE_NAME)) : null;
+	}
+
+	@Override
+	public void onConfigure(SQLiteDatabase db) {
+		super.onConfigure(db);
+		MessDBHelper.runPragma(db, "PRAGMA synchronous = NORMAL");
 	}
 
 	@Override
@@ -47,121 +104,284 @@ public class KeyValueDB extends SQLiteOpenHelper {
 		}
 	}
 
-	public Cursor execute(String query) {
-		SQLiteDatabase db = this.getWritableDatabase();
-		Cursor res = null;
-		try {
-			res = db.rawQuery(query, null);
-		} catch (Exception e) {
-			e.printStackTrace();
+	// -------------------------------------------------------------------------
+	// in-memory copy + write-behind queue
+	// -------------------------------------------------------------------------
+
+	private final ConcurrentHashMap<String, String> cache = new ConcurrentHashMap<>();
+	private volatile boolean warmed = false;
+
+	private final Object pendingLock = new Object();
+	private Map<String, String> pendingPuts = new HashMap<>();
+	private Set<String> pendingDeletes = new HashSet<>();
+	private boolean flushScheduled = false;
+
+	// failed batch retry: doubles from RETRY_MIN_MS up to RETRY_MAX_MS (kv-writer thread only)
+	private static final long RETRY_MIN_MS = 500;
+	private static final long RETRY_MAX_MS = 30_000;
+	private long retryMs = RETRY_MIN_MS;
+
+	private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "kv-writer");
+		t.setPriority(Thread.NORM_PRIORITY - 1);
+		return t;
+	});
+
+	private void ensureWarm() {
+		if (warmed) return;
+		synchronized (this) {
+			if (warmed) return;
+			cache.putAll(useLog() ? openLog() : readAllFromSqlite());
+			warmed = true;
 		}
-		return res;
 	}
 
-	// 🔴 UPDATED: now does UPSERT (insert or replace), so UNIQUE constraint errors are gone
-	public Boolean insertKeyValue(String key, String value) {
-		SQLiteDatabase db = this.getWritableDatabase();
-		ContentValues cv = new ContentValues();
-		cv.put(KEY, key);
-		cv.put(VALUE, value);
+	private Map<String, String> readAllFromSqlite() {
+		Map<String, String> all = new HashMap<>();
+		SQLiteDatabase db = this.getReadableDatabase();
+		Cursor res;
 		try {
-			db.insertWithOnConflict(
-					TABLE_KEY_VALUE,
-					null,
-					cv,
-					SQLiteDatabase.CONFLICT_REPLACE   // <── key part
-			);
-			return true;
+			res = db.rawQuery("SELECT " + KEY + ", " + VALUE + " FROM " + TABLE_KEY_VALUE, null);
 		} catch (Exception e) {
-			e.printStackTrace();
-			// in case table was missing, try to recover once
 			handleError(db, e);
+			res = db.rawQuery("SELECT " + KEY + ", " + VALUE + " FROM " + TABLE_KEY_VALUE, null);
+		}
+		while (res.moveToNext()) {
+			if (!res.isNull(0) && !res.isNull(1)) all.put(res.getString(0), res.getString(1));
+		}
+		res.close();
+		return all;
+	}
+
+	private Map<String, String> openLog() {
+		// one-time migration: copy the SQLite rows, then drop the old file
+		if (!log.getFile().exists() && appContext.getDatabasePath(DB_NAME).exists()) {
 			try {
-				db.insertWithOnConflict(
-						TABLE_KEY_VALUE,
-						null,
-						cv,
-						SQLiteDatabase.CONFLICT_REPLACE
-				);
-				return true;
-			} catch (Exception ex) {
-				ex.printStackTrace();
+				migrateToLog();
+			} catch (IOException e) {
+				// KEY_VALUE.DB is untouched: use it for now, the next start tries again
+				e.printStackTrace();
+				logUnusable = true;
+				return readAllFromSqlite();
 			}
 		}
-		return false;
-	}
 
-	public boolean updateValueByKey(String key, String value) {
-		SQLiteDatabase db = this.getWritableDatabase();
-		ContentValues cv = new ContentValues();
-		cv.put(KEY, key);
-		cv.put(VALUE, value);
 		try {
-			db.update(TABLE_KEY_VALUE, cv, KEY + "=?", new String[]{key});
-			return true;
-		} catch (Exception e) {
+			return log.open();
+		} catch (IOException e) {
 			e.printStackTrace();
 		}
-		return false;
-	}
 
-	public Integer deleteDataByKey(String key) {
-		SQLiteDatabase db = this.getWritableDatabase();
-		int isDeleted = 0;
+		// unreadable even after open() dropped a bad header: keep it aside and start over
 		try {
-			isDeleted = db.delete(TABLE_KEY_VALUE, KEY + " = ?", new String[]{key});
-		} catch (Exception e) {
-			handleError(db, e);
+			log.discard();
+			return log.open();
+		} catch (IOException e) {
+			e.printStackTrace();
+			logUnusable = true;
+			return readAllFromSqlite();
+		}
+	}
+
+	private void migrateToLog() throws IOException {
+		// built under a temp name so a crash mid-copy leaves no half log behind
+		Map<String, String> rows = readAllFromSqlite();
+		File tmp = new File(log.getFile().getPath() + ".migrate");
+		KeyValueLog copy = new KeyValueLog(tmp);
+		copy.open();
+		copy.append(rows, null);
+		copy.compact(); // fsync'd
+		copy.close();
+		if (!tmp.renameTo(log.getFile())) throw new IOException("migration rename failed: " + tmp);
+		close();
+		appContext.deleteDatabase(DB_NAME);
+	}
+
+	private boolean useLog() {
+		return log != null && !logUnusable;
+	}
+
+	// null values behave like a delete (getValueByKey returns null either way)
+	private void queuePut(String key, String value) {
+		if (value == null) {
+			queueDelete(key);
+			return;
+		}
+		cache.put(key, value);
+		synchronized (pendingLock) {
+			pendingDeletes.remove(key);
+			pendingPuts.put(key, value);
+			scheduleFlushLocked();
+		}
+	}
+
+	private void queueDelete(String key) {
+		cache.remove(key);
+		synchronized (pendingLock) {
+			pendingPuts.remove(key);
+			pendingDeletes.add(key);
+			scheduleFlushLocked();
+		}
+	}
+
+	private void scheduleFlushLocked() {
+		if (flushScheduled) return;
+		flushScheduled = true;
+		writer.execute(this::flushPending);
+	}
+
+	private void flushPending() {
+		Map<String, String> puts;
+		Set<String> deletes;
+		synchronized (pendingLock) {
+			puts = pendingPuts;
+			deletes = pendingDeletes;
+			pendingPuts = new HashMap<>();
+			pendingDeletes = new HashSet<>();
+			flushScheduled = false;
+		}
+		if (puts.isEmpty() && deletes.isEmpty()) return;
+
+		if (useLog()) {
 			try {
-				isDeleted = db.delete(TABLE_KEY_VALUE, KEY + " = ?", new String[]{key});
-			} catch (Exception ex) {
+				log.append(puts, deletes);
+				retryMs = RETRY_MIN_MS;
+			} catch (IOException e) {
+				e.printStackTrace();
+				requeue(puts, deletes);
 			}
+			return;
 		}
-		return isDeleted;
-	}
 
-	public String getValueByKey(String key) {
-		SQLiteDatabase db = this.getWritableDatabase();
-		Cursor res;
 		try {
-			res = db.rawQuery(
-					"SELECT * FROM " + TABLE_KEY_VALUE + " WHERE " + KEY + "=?",
-					new String[]{key}
-			);
-		} catch (Exception e) {
-			handleError(db, e);
-			res = db.rawQuery(
-					"SELECT * FROM " + TABLE_KEY_VALUE + " WHERE " + KEY + "=?",
-					new String[]{key}
-			);
+			SQLiteDatabase db = this.getWritableDatabase();
+			try {
+				writeBatch(db, puts, deletes);
+			} catch (Exception e) {
+				e.printStackTrace();
+				// in case table was missing, try to recover once
+				handleError(db, e);
+				writeBatch(db, puts, deletes);
+			}
+			retryMs = RETRY_MIN_MS;
+		} catch (Exception ex) {
+			ex.printStackTrace();
+			requeue(puts, deletes);
 		}
-		if (res != null && res.getCount() > 0) {
-			res.moveToNext();
-			String v = res.getString(1);
-			res.close();
-			return v;
+	}
+
+	// puts the failed batch back (writes queued since are newer and win) and retries it later
+	private void requeue(Map<String, String> puts, Set<String> deletes) {
+		synchronized (pendingLock) {
+			for (Map.Entry<String, String> e : puts.entrySet()) {
+				String key = e.getKey();
+				if (!pendingPuts.containsKey(key) && !pendingDeletes.contains(key)) pendingPuts.put(key, e.getValue());
+			}
+			for (String key : deletes) {
+				if (!pendingPuts.containsKey(key)) pendingDeletes.add(key);
+			}
+			if (!flushScheduled) {
+				flushScheduled = true;
+				writer.schedule(this::flushPending, retryMs, TimeUnit.MILLISECONDS);
+			}
 		}
-		if (res != null) res.close();
-		return null;
+		retryMs = Math.min(retryMs * 2, RETRY_MAX_MS);
 	}
 
-	// Convenience: insert if not exists, otherwise update
-	public void insertOrUpdate(String key, String value) {
-		String existing = getValueByKey(key);
-		if (existing == null) {
-			insertKeyValue(key, value);   // now does upsert anyway
-		} else {
-			updateValueByKey(key, value);
+	private void writeBatch(SQLiteDatabase db, Map<String, String> puts, Set<String> deletes) {
+		db.beginTransaction();
+		try {
+			if (!puts.isEmpty()) {
+				SQLiteStatement put = db.compileStatement(
+						"INSERT OR REPLACE INTO " + TABLE_KEY_VALUE + " (" + KEY + ", " + VALUE + ") VALUES (?, ?)");
+				for (Map.Entry<String, String> e : puts.entrySet()) {
+					put.bindString(1, e.getKey());
+					put.bindString(2, e.getValue());
+					put.executeInsert();
+				}
+			}
+			if (!deletes.isEmpty()) {
+				SQLiteStatement del = db.compileStatement(
+						"DELETE FROM " + TABLE_KEY_VALUE + " WHERE " + KEY + "=?");
+				for (String key : deletes) {
+					del.bindString(1, key);
+					del.executeUpdateDelete();
+				}
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
 		}
 	}
 
-	public void deleteQuery(String query) {
-		SQLiteDatabase db = this.getWritableDatabase();
+	/** Blocks until every queued write was tried once (a failed batch stays queued for its retry). */
+	public void flush() {
 		try {
-			db.execSQL(query);
+			writer.submit(this::flushPending).get();
 		} catch (Exception e) {
-			handleError(db, e);
-			db.execSQL(query);
+			e.printStackTrace();
 		}
 	}
-}
\ No newline at end of file
+
+	// -------------------------------------------------------------------------
+	// batch API
+	// -------------------------------------------------------------------------
+
+	public Map<String, String> getAll(Collection<String> keys) {
+		ensureWarm();
+		Map<String, String> out = new HashMap<>();
+		if (keys == null) return out;
+		for (String key : keys) {
+			if (key == null) continue;
+			String v = cache.get(key);
+			if (v != null) out.put(key, v);
+		}
+		return out;
+	}
+
+	public void putAll(Map<String, String> values) {
+		if (values == null || values.isEmpty()) return;
+		ensureWarm();
+		for (Map.Entry<String, String> e : values.entrySet()) {
+			if (e.getKey() != null) queuePut(e.getKey(), e.getValue());
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// original API (now cache-backed; no raw SQL, which would bypass the log backend)
+	// -------------------------------------------------------------------------
+
+	public Boolean insertKeyValue(String key, String value) {
+		if (key == null) return false;
+		ensureWarm();
+		queuePut(key, value);
+		return true;
+	}
+
+	// like the SQL UPDATE it replaces: no-op when the key is missing
+	public boolean updateValueByKey(String key, String value) {
+		if (key == null) return false;
+		ensureWarm();
+		if (cache.containsKey(key)) queuePut(key, value);
+		return true;
+	}
+
+	public Integer deleteDataByKey(String key) {
+		if (key == null) return 0;
+		ensureWarm();
+		boolean existed = cache.containsKey(key);
+		queueDelete(key);
+		return existed ? 1 : 0;
+	}
+
+	public String getValueByKey(String key) {
+		if (key == null) return null;
+		ensureWarm();
+		return cache.get(key);
+	}
+
+	// Convenience: insert if not exists, otherwise update (a single put now)
+	public void insertOrUpdate(String key, String value) {
+		insertKeyValue(key, value);
+	}
+}
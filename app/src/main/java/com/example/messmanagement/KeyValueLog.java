@@ -0,0 +1,247 @@
+package com.example.messmanagement;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log file used as the KeyValueDB backend.
+ *
+ * File  = "MKV1" + record*
+ * record = crc32(int) + type(byte: 1 put, 2 delete) + keyLen(int) + valueLen(int) + key + value
+ *
+ * open() maps the file read-only and replays it into an in-memory index.
+ * A record with a bad checksum or cut off at the end (crash mid-write) ends
+ * the replay and the file is truncated back to the last good record. A file
+ * that doesn't start with the header is moved aside (".corrupt") and a new
+ * log is started, so one bad file can't stop every later write.
+ * append() forces each batch to disk before returning, so a batch KeyValueDB
+ * reported as written survives power loss, not just an app crash. A batch
+ * that fails is cut off again, so later batches never land behind garbage.
+ * Once the file is mostly dead records it is rewritten (temp file + rename).
+ */
+public class KeyValueLog {
+
+    private static final byte[] MAGIC = {'M', 'K', 'V', '1'};
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_DELETE = 2;
+    private static final int RECORD_HEADER = 4 + 1 + 4 + 4;
+
+    // compact when the file is over 64 KB and more than half of it is dead
+    private static final long COMPACT_MIN_BYTES = 64 * 1024;
+
+    private final File file;
+    private final Map<String, String> index = new LinkedHashMap<>();
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private long liveBytes;
+
+    public KeyValueLog(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /** Replays the log (creating it if needed) and returns a copy of the live key/values. */
+    public synchronized Map<String, String> open() throws IOException {
+        if (channel != null) return new LinkedHashMap<>(index);
+
+        try {
+            openChannel();
+        } catch (NotALogException e) {
+            discard();
+            openChannel();
+        }
+        return new LinkedHashMap<>(index);
+    }
+
+    /** Moves the file aside (kept as ".corrupt" for inspection); the next open() starts an empty log. */
+    public synchronized void discard() throws IOException {
+        close();
+        index.clear();
+        liveBytes = 0;
+        if (!file.exists()) return;
+
+        File aside = getDiscardedFile();
+        aside.delete();
+        if (!file.renameTo(aside) && !file.delete()) throw new IOException("could not move aside: " + file);
+    }
+
+    public File getDiscardedFile() {
+        return new File(file.getPath() + ".corrupt");
+    }
+
+    private void openChannel() throws IOException {
+        boolean fresh = !file.exists() || file.length() < MAGIC.length;
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+
+        try {
+            if (fresh) {
+                channel.truncate(0);
+                channel.write(ByteBuffer.wrap(MAGIC), 0);
+                channel.force(true);
+            } else {
+                long good = replay();
+                if (good < channel.size()) channel.truncate(good); // drop torn / corrupt tail
+            }
+            channel.position(channel.size());
+        } catch (IOException | RuntimeException e) {
+            // not a log (or unreadable): stay closed, so the next call replays again instead of appending
+            index.clear();
+            liveBytes = 0;
+            close();
+            throw e;
+        }
+    }
+
+    private static final class NotALogException extends IOException {
+        NotALogException(File file) {
+            super("not a key/value log: " + file);
+        }
+    }
+
+    private long replay() throws IOException {
+        long size = channel.size();
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+        byte[] magic = new byte[MAGIC.length];
+        buf.get(magic);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) throw new NotALogException(file);
+        }
+
+        index.clear();
+        liveBytes = 0;
+        CRC32 crc = new CRC32();
+        long good = buf.position();
+
+        while (buf.remaining() >= RECORD_HEADER) {
+            int start = buf.position();
+            int storedCrc = buf.getInt();
+            byte type = buf.get();
+            int keyLen = buf.getInt();
+            int valueLen = buf.getInt();
+            if (keyLen < 0 || valueLen < 0 || (long) keyLen + valueLen > buf.remaining()) break;
+            if (type != TYPE_PUT && type != TYPE_DELETE) break;
+
+            byte[] body = new byte[RECORD_HEADER - 4 + keyLen + valueLen];
+            buf.position(start + 4);
+            buf.get(body);
+
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != storedCrc) {
+                buf.position(start);
+                break;
+            }
+
+            String key = new String(body, RECORD_HEADER - 4, keyLen, StandardCharsets.UTF_8);
+            String value = new String(body, RECORD_HEADER - 4 + keyLen, valueLen, StandardCharsets.UTF_8);
+            applyToIndex(type, key, value);
+            good = buf.position();
+        }
+        return good;
+    }
+
+    private void applyToIndex(byte type, String key, String value) {
+        String old = (type == TYPE_PUT) ? index.put(key, value) : index.remove(key);
+        if (old != null) liveBytes -= recordSize(key, old);
+        if (type == TYPE_PUT) liveBytes += recordSize(key, value);
+    }
+
+    private static long recordSize(String key, String value) {
+        return RECORD_HEADER + key.getBytes(StandardCharsets.UTF_8).length + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /** Appends one batch (one write call), then compacts if the file got mostly dead. */
+    public synchronized void append(Map<String, String> puts, Set<String> deletes) throws IOException {
+        if (channel == null) open();
+
+        long end = channel.size();
+        try {
+            ByteBuffer batch = encode(puts, deletes);
+            while (batch.hasRemaining()) channel.write(batch);
+            channel.force(false); // data only; the length change is recovered by replay anyway
+        } catch (IOException e) {
+            // drop whatever part of the batch got written; the caller still holds the batch
+            try {
+                channel.truncate(end);
+            } catch (IOException ignored) {
+            }
+            close();
+            throw e;
+        }
+
+        if (puts != null) {
+            for (Map.Entry<String, String> e : puts.entrySet()) applyToIndex(TYPE_PUT, e.getKey(), e.getValue());
+        }
+        if (deletes != null) {
+            for (String key : deletes) applyToIndex(TYPE_DELETE, key, "");
+        }
+
+        long size = channel.size();
+        if (size > COMPACT_MIN_BYTES && size > 2 * (liveBytes + MAGIC.length)) compact();
+    }
+
+    /** Rewrites the file with only the live keys; atomic via rename. */
+    public synchronized void compact() throws IOException {
+        if (channel == null) open();
+
+        File tmp = new File(file.getPath() + ".compact");
+        try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+            FileChannel ch = out.getChannel();
+            ch.truncate(0);
+            ch.write(ByteBuffer.wrap(MAGIC));
+            ByteBuffer live = encode(index, null);
+            while (live.hasRemaining()) ch.write(live);
+            ch.force(true);
+        }
+
+        close();
+        if (!tmp.renameTo(file)) throw new IOException("compaction rename failed: " + tmp);
+        open();
+    }
+
+    public synchronized void close() throws IOException {
+        if (raf != null) raf.close();
+        raf = null;
+        channel = null;
+    }
+
+    private static ByteBuffer encode(Map<String, String> puts, Set<String> deletes) {
+        int total = 0;
+        if (puts != null) for (Map.Entry<String, String> e : puts.entrySet()) total += (int) recordSize(e.getKey(), e.getValue());
+        if (deletes != null) for (String key : deletes) total += (int) recordSize(key, "");
+
+        ByteBuffer buf = ByteBuffer.allocate(total);
+        if (puts != null) for (Map.Entry<String, String> e : puts.entrySet()) putRecord(buf, TYPE_PUT, e.getKey(), e.getValue());
+        if (deletes != null) for (String key : deletes) putRecord(buf, TYPE_DELETE, key, "");
+        buf.flip();
+        return buf;
+    }
+
+    private static void putRecord(ByteBuffer buf, byte type, String key, String value) {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        byte[] v = value.getBytes(StandardCharsets.UTF_8);
+
+        int crcAt = buf.position();
+        buf.putInt(0);
+        int bodyAt = buf.position();
+        buf.put(type).putInt(k.length).putInt(v.length).put(k).put(v);
+
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), bodyAt, buf.position() - bodyAt);
+        buf.putInt(crcAt, (int) crc.getValue());
+    }
+}
@@ -47,8 +47,8 @@ public class LoginActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_login);
 
-        kvDb = new KeyValueDB(this);
-        messDb = new MessDBHelper(this);
+        kvDb = KeyValueDB.getInstance(this);
+        messDb = MessDBHelper.getInstance(this);
         mAuth = FirebaseAuth.getInstance();
         fs = FirebaseFirestore.getInstance();
 
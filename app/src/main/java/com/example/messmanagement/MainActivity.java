@@ -4,10 +4,12 @@ import android.Manifest;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.StrictMode;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
@@ -23,10 +25,11 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        enableDebugChecks();
         setContentView(R.layout.activity_main);
 
-        kvDb = new KeyValueDB(this);
-        messDb = new MessDBHelper(this);
+        kvDb = KeyValueDB.getInstance(this);
+        messDb = MessDBHelper.getInstance(this);
 
         // ✅ IMPORTANT: first-install / restore-safe session reset
         handleFirstRunReset();
@@ -38,6 +41,18 @@ public class MainActivity extends AppCompatActivity {
 
     }
 
+    // ✅ debug builds: log any disk read/write that still happens on the main thread,
+    // and per-screen SQL counts (QueryStats, logged when a screen pauses)
+    private void enableDebugChecks() {
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) == 0) return;
+        StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                .detectDiskReads()
+                .detectDiskWrites()
+                .penaltyLog()
+                .build());
+        QueryStats.install(getApplication());
+    }
+
     private void handleFirstRunReset() {
         SharedPreferences sp = getSharedPreferences("app_boot", MODE_PRIVATE);
         boolean firstRunDone = sp.getBoolean("first_run_done", false);
@@ -0,0 +1,19 @@
+package com.example.messmanagement;
+
+// one db_maintenance_log row; sizes are measured before the run, dbBytesAfter after it
+public class MaintenanceRun {
+    public long runAt;          // epoch millis
+    public long dbBytes;
+    public long walBytes;
+    public long pageCount;
+    public long freelistPages;
+    public long dbBytesAfter;
+
+    public long analyzeMs;
+    public long vacuumMs;
+    public long integrityMs;
+
+    public String vacuumMode;   // "incremental", or "full" for the one-time auto_vacuum switch
+    public String integrity;    // "ok" or the first quick_check message
+    public String error;        // first failed step, null if all ran
+}
@@ -4,18 +4,10 @@ import android.os.Bundle;
 import android.widget.ArrayAdapter;
 import android.widget.ImageView;
 import android.widget.ListView;
-import android.widget.Toast;
 
-import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.EventListener;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.google.firebase.firestore.ListenerRegistration;
-import com.google.firebase.firestore.Query;
-import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -26,7 +18,6 @@ public class ManageExpensesActivity extends AppCompatActivity {
     private ImageView ivBack;
     private ListView lvExpenses;
 
-    private FirebaseFirestore fs;
     private ListenerRegistration expensesListener;
 
     private List<String> expenseDisplayList;
@@ -42,7 +33,6 @@ public class ManageExpensesActivity extends AppCompatActivity {
 
         ivBack.setOnClickListener(v -> finish());
 
-        fs = FirebaseFirestore.getInstance();
         expenseDisplayList = new ArrayList<>();
 
         adapter = new ArrayAdapter<>(
@@ -60,49 +50,30 @@ public class ManageExpensesActivity extends AppCompatActivity {
             expensesListener.remove();
         }
 
-        expensesListener = fs.collection("expenses")
-                .orderBy("date", Query.Direction.DESCENDING)
-                .addSnapshotListener(new EventListener<QuerySnapshot>() {
-                    @Override
-                    public void onEvent(@Nullable QuerySnapshot value,
-                                        @Nullable FirebaseFirestoreException error) {
-                        if (error != null) {
-                            Toast.makeText(ManageExpensesActivity.this,
-                                    "Listen failed: " + error.getMessage(),
-                                    Toast.LENGTH_LONG).show();
-                            return;
-                        }
-                        if (value == null) return;
-
-                        expenseDisplayList.clear();
-
-                        for (DocumentSnapshot doc : value.getDocuments()) {
-                            String title = doc.getString("title");
-                            String category = doc.getString("category");
-                            String paidBy = doc.getString("paidBy");
-                            String date = doc.getString("date");
-                            Double amount = doc.getDouble("amount");
-
-                            if (title == null) title = "";
-                            if (category == null) category = "";
-                            if (paidBy == null) paidBy = "";
-                            if (date == null) date = "";
-                            if (amount == null) amount = 0.0;
-
-                            String line = String.format(Locale.getDefault(),
-                                    "%s (%s)\n৳ %.0f | %s | %s",
-                                    title,
-                                    category,
-                                    amount,
-                                    paidBy,
-                                    date
-                            );
-                            expenseDisplayList.add(line);
-                        }
-
-                        adapter.notifyDataSetChanged();
-                    }
-                });
+        showExpenses();
+        expensesListener = PullSync.getInstance(this).attach(this, PullSync.EXPENSES, this::showExpenses);
+    }
+
+    // ✅ newest first from SQLite; the pull only reads docs changed since the last one
+    private void showExpenses() {
+        MessRepository repo = MessRepository.getInstance(this);
+        repo.deliver(this, repo.read(MessDBHelper::getAllExpenses), expenses -> {
+            expenseDisplayList.clear();
+
+            for (Expense e : expenses) {
+                String line = String.format(Locale.getDefault(),
+                        "%s (%s)\n৳ %.0f | %s | %s",
+                        e.title != null ? e.title : "",
+                        e.category != null ? e.category : "",
+                        Money.taka(e.amountPaisa),
+                        e.paidBy != null ? e.paidBy : "",
+                        e.date != null ? e.date : ""
+                );
+                expenseDisplayList.add(line);
+            }
+
+            adapter.notifyDataSetChanged();
+        });
     }
 
     @Override
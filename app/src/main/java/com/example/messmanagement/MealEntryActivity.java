@@ -28,8 +28,8 @@ public class MealEntryActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_meal_entry);
 
-        messDb = new MessDBHelper(this);
-        kvDb = new KeyValueDB(this);
+        messDb = MessDBHelper.getInstance(this);
+        kvDb = KeyValueDB.getInstance(this);
 
         currentUserName = kvDb.getValueByKey("username");
         currentRole = kvDb.getValueByKey("role");
@@ -69,7 +69,9 @@ public class MealEntryActivity extends AppCompatActivity {
         String today = getTodayDate();
 
         // 1 = YES for today's meal (0 = NO)
-        messDb.setMealForDate(currentUserName, today, mealType, 1);
+        if (messDb.setMealForDate(currentUserName, today, mealType, 1)) {
+            SyncScheduler.scheduleMealFlush(this);
+        }
 
         Toast.makeText(
                 this,
@@ -5,7 +5,6 @@ import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
@@ -13,9 +12,7 @@ import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.google.firebase.firestore.ListenerRegistration;
-import com.google.firebase.firestore.QuerySnapshot;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -32,7 +29,7 @@ public class MemberDetailsActivity extends AppCompatActivity {
     // existing
     private TextView tvTotalMeals, tvTotalPaid, tvTotalDues, tvMealBreakdown;
 
-    private MessDBHelper messDb;
+    private MessRepository repo;
     private Member member;
 
     private KeyValueDB kvDb;
@@ -52,8 +49,8 @@ public class MemberDetailsActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_member_details);
 
-        messDb = new MessDBHelper(this);
-        kvDb = new KeyValueDB(this);
+        repo = MessRepository.getInstance(this);
+        kvDb = KeyValueDB.getInstance(this);
         fs = FirebaseFirestore.getInstance();
         mAuth = FirebaseAuth.getInstance();
 
@@ -101,151 +98,126 @@ public class MemberDetailsActivity extends AppCompatActivity {
                 .whereEqualTo("status", "active")
                 .get()
                 .addOnSuccessListener(qs -> {
+                    List<DocumentSnapshot> docs = qs.getDocuments();
 
-                    allMembers.clear();
+                    // ✅ IMPORTANT: store full profiles to local USERS table for offline display (db thread)
+                    repo.deliver(this, repo.write(db -> {
+                        List<Member> members = new ArrayList<>();
+                        for (DocumentSnapshot doc : docs) {
 
-                    for (DocumentSnapshot doc : qs.getDocuments()) {
+                            String username = doc.getString("username"); // email
+                            Boolean isAdminB = doc.getBoolean("isAdmin");
 
-                        String username = doc.getString("username"); // email
-                        Boolean isAdminB = doc.getBoolean("isAdmin");
-
-                        // ✅ try multiple keys (depending on your signup save)
-                        String fullName = doc.getString("fullName");
-                        if (fullName == null) fullName = doc.getString("full_name");
-                        if (fullName == null) fullName = doc.getString("name");
-
-                        String contact = doc.getString("contact");
-                        if (contact == null) contact = doc.getString("phone");
-
-                        String address = doc.getString("address");
+                            // ✅ try multiple keys (depending on your signup save)
+                            String fullName = doc.getString("fullName");
+                            if (fullName == null) fullName = doc.getString("full_name");
+                            if (fullName == null) fullName = doc.getString("name");
 
-                        String parentContact = doc.getString("parentContact");
-                        if (parentContact == null) parentContact = doc.getString("parent_phone");
+                            String contact = doc.getString("contact");
+                            if (contact == null) contact = doc.getString("phone");
 
-                        if (username == null || username.trim().isEmpty()) continue;
+                            String address = doc.getString("address");
 
-                        String role = (isAdminB != null && isAdminB) ? "admin" : "member";
+                            String parentContact = doc.getString("parentContact");
+                            if (parentContact == null) parentContact = doc.getString("parent_phone");
 
-                        // keep your list logic same
-                        Member m = new Member(-1, username, role, 0, 0.0);
-                        allMembers.add(m);
+                            if (username == null || username.trim().isEmpty()) continue;
 
-                        // ✅ IMPORTANT: store full profile to local USERS table for offline display
-                        messDb.upsertUserFromRemote(
-                                doc.getId(),                 // userId (doc id)
-                                fullName != null ? fullName : "",
-                                username,
-                                contact != null ? contact : "",
-                                address != null ? address : "",
-                                parentContact != null ? parentContact : "",
-                                (isAdminB != null && isAdminB),
-                                "active"
-                        );
-                    }
+                            String role = (isAdminB != null && isAdminB) ? "admin" : "member";
 
-                    if (allMembers.isEmpty()) {
-                        Toast.makeText(this, "No active members found", Toast.LENGTH_SHORT).show();
-                        finish();
-                        return;
-                    }
+                            // keep your list logic same
+                            members.add(new Member(-1, username, role, 0, 0.0));
 
-                    String[] items = new String[allMembers.size()];
-                    int preSelect = -1;
-
-                    String myUsername = kvDb.getValueByKey("username");
-
-                    for (int i = 0; i < allMembers.size(); i++) {
-                        Member m = allMembers.get(i);
-
-                        // ✅ show full name in picker (fallback to email)
-                        String fullName = messDb.getFullNameByUsername(m.name);
-                        if (fullName == null || fullName.trim().isEmpty()) fullName = m.name;
-
-                        String r = (m.role == null) ? "member" : m.role;
-                        items[i] = fullName + "  (" + r + ")\n" + m.name;
-
-                        if (myUsername != null && myUsername.equalsIgnoreCase(m.name)) {
-                            preSelect = i;
+                            db.upsertUserFromRemote(
+                                    doc.getId(),                 // userId (doc id)
+                                    fullName != null ? fullName : "",
+                                    username,
+                                    contact != null ? contact : "",
+                                    address != null ? address : "",
+                                    parentContact != null ? parentContact : "",
+                                    (isAdminB != null && isAdminB),
+                                    "active"
+                            );
                         }
-                    }
-
-                    AlertDialog.Builder b = new AlertDialog.Builder(this);
-                    b.setTitle("Select a member");
-
-                    final int finalPreSelect = preSelect;
-                    b.setSingleChoiceItems(items, preSelect, (dialog, which) -> {});
-
-                    b.setPositiveButton("Open", (dialog, which) -> {
-                        AlertDialog ad = (AlertDialog) dialog;
-                        int checked = ad.getListView().getCheckedItemPosition();
-                        if (checked < 0) checked = (finalPreSelect >= 0) ? finalPreSelect : 0;
-
-                        Member chosen = allMembers.get(checked);
-                        memberName = chosen.name; // email
-                        loadMemberAndInit(memberName);
-                    });
-
-                    b.setNegativeButton("Cancel", (dialog, which) -> finish());
-                    b.show();
+                        return members;
+                    }), members -> showPicker(members, "No active members found"));
                 })
                 .addOnFailureListener(e -> {
                     // fallback local only
-                    allMembers = messDb.getAllMembers();
-                    if (allMembers == null || allMembers.isEmpty()) {
-                        Toast.makeText(this, "No members found", Toast.LENGTH_SHORT).show();
-                        finish();
-                        return;
-                    }
+                    repo.deliver(this, repo.read(MessDBHelper::getAllMembers),
+                            members -> showPicker(members, "No members found"));
+                });
+    }
 
-                    String[] items = new String[allMembers.size()];
-                    int preSelect = -1;
-                    String myUsername = kvDb.getValueByKey("username");
+    private void showPicker(List<Member> members, String emptyMessage) {
+        allMembers = (members != null) ? members : new ArrayList<>();
+        if (allMembers.isEmpty()) {
+            Toast.makeText(this, emptyMessage, Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
 
-                    for (int i = 0; i < allMembers.size(); i++) {
-                        Member m = allMembers.get(i);
+        List<Member> shown = allMembers;
+        repo.deliver(this, repo.read(db -> pickerItems(db, shown)), this::showPickerDialog);
+    }
 
-                        String fullName = messDb.getFullNameByUsername(m.name);
-                        if (fullName == null || fullName.trim().isEmpty()) fullName = m.name;
+    // ✅ show full name in picker (fallback to email); one users query for every row
+    private static String[] pickerItems(MessDBHelper db, List<Member> members) {
+        List<String> usernames = new ArrayList<>();
+        for (Member m : members) usernames.add(m.name);
+        db.preloadUserProfiles(usernames);
 
-                        String role = (m.role == null) ? "member" : m.role;
-                        items[i] = fullName + "  (" + role + ")\n" + m.name;
+        String[] items = new String[members.size()];
+        for (int i = 0; i < members.size(); i++) {
+            Member m = members.get(i);
 
-                        if (myUsername != null && myUsername.equalsIgnoreCase(m.name)) {
-                            preSelect = i;
-                        }
-                    }
+            String fullName = db.getFullNameByUsername(m.name);
+            if (fullName == null || fullName.trim().isEmpty()) fullName = m.name;
 
-                    AlertDialog.Builder b = new AlertDialog.Builder(this);
-                    b.setTitle("Select a member");
+            String role = (m.role == null) ? "member" : m.role;
+            items[i] = fullName + "  (" + role + ")\n" + m.name;
+        }
+        return items;
+    }
 
-                    final int finalPreSelect = preSelect;
-                    b.setSingleChoiceItems(items, preSelect, (dialog, which) -> {});
+    private void showPickerDialog(String[] items) {
+        int preSelect = -1;
+        String myUsername = kvDb.getValueByKey("username");
+        for (int i = 0; i < allMembers.size(); i++) {
+            if (myUsername != null && myUsername.equalsIgnoreCase(allMembers.get(i).name)) {
+                preSelect = i;
+            }
+        }
 
-                    b.setPositiveButton("Open", (dialog, which) -> {
-                        AlertDialog ad = (AlertDialog) dialog;
-                        int checked = ad.getListView().getCheckedItemPosition();
-                        if (checked < 0) checked = (finalPreSelect >= 0) ? finalPreSelect : 0;
+        AlertDialog.Builder b = new AlertDialog.Builder(this);
+        b.setTitle("Select a member");
 
-                        Member chosen = allMembers.get(checked);
-                        memberName = chosen.name;
-                        loadMemberAndInit(memberName);
-                    });
+        final int finalPreSelect = preSelect;
+        b.setSingleChoiceItems(items, preSelect, (dialog, which) -> {});
 
-                    b.setNegativeButton("Cancel", (dialog, which) -> finish());
-                    b.show();
-                });
+        b.setPositiveButton("Open", (dialog, which) -> {
+            AlertDialog ad = (AlertDialog) dialog;
+            int checked = ad.getListView().getCheckedItemPosition();
+            if (checked < 0) checked = (finalPreSelect >= 0) ? finalPreSelect : 0;
+
+            Member chosen = allMembers.get(checked);
+            memberName = chosen.name; // email
+            loadMemberAndInit(memberName);
+        });
+
+        b.setNegativeButton("Cancel", (dialog, which) -> finish());
+        b.show();
     }
 
     private void loadMemberAndInit(String targetMemberName) {
         this.memberName = targetMemberName;
 
-        member = messDb.getMemberByName(memberName);
-        if (member == null) {
-            member = new Member(-1, memberName, "member", 0, 0.0);
-        }
-
-        // ✅ show cached immediately
-        updateUiFromLocal();
+        // ✅ show cached as soon as the members row is read (db thread)
+        member = new Member(-1, memberName, "member", 0, 0.0);
+        repo.deliver(this, repo.read(db -> db.getMemberByName(targetMemberName)), found -> {
+            if (found != null && targetMemberName.equals(memberName)) member = found;
+            updateUiFromLocal();
+        });
 
         detachListeners();
 
@@ -278,19 +250,21 @@ public class MemberDetailsActivity extends AppCompatActivity {
                         String status = doc.getString("status");
                         if (status == null) status = "active";
 
-                        messDb.upsertUserFromRemote(
-                                doc.getId(),
-                                fullName != null ? fullName : "",
-                                memberName,
-                                contact != null ? contact : "",
-                                address != null ? address : "",
-                                parentContact != null ? parentContact : "",
-                                (isAdminB != null && isAdminB),
-                                status
-                        );
-
-                        // ✅ refresh UI after caching profile
-                        updateUiFromLocal();
+                        String docId = doc.getId();
+                        String safeFullName = fullName != null ? fullName : "";
+                        String safeContact = contact != null ? contact : "";
+                        String safeAddress = address != null ? address : "";
+                        String safeParent = parentContact != null ? parentContact : "";
+                        boolean isAdmin = (isAdminB != null && isAdminB);
+                        String safeStatus = status;
+                        String email = memberName;
+
+                        // ✅ cache profile on the db thread, then refresh UI
+                        repo.deliver(this, repo.write(db -> {
+                            db.upsertUserFromRemote(docId, safeFullName, email,
+                                    safeContact, safeAddress, safeParent, isAdmin, safeStatus);
+                            return null;
+                        }), v -> updateUiFromLocal());
                     });
 
             attachMealsListener();
@@ -302,14 +276,37 @@ public class MemberDetailsActivity extends AppCompatActivity {
         }
     }
 
+    // profile + month breakdown, read together off the main thread
+    private static class LocalDetails {
+        String fullName, phone, parentPhone, address, role;
+        ExpenseBreakdown breakdown;
+        double[] mealPrices;
+    }
+
     private void updateUiFromLocal() {
+        String name = member.name;
+        String month = monthPrefix;
+        repo.deliver(this, repo.read(db -> {
+            LocalDetails d = new LocalDetails();
+            d.fullName = db.getFullNameByUsername(name);
+            d.phone = db.getContactByUsername(name);
+            d.parentPhone = db.getParentContactByUsername(name);
+            d.address = db.getAddressByUsername(name);
+            d.role = db.getUserRoleByUsername(name);
+            d.breakdown = db.getMemberExpenseBreakdown(name, month);
+            d.mealPrices = db.getCurrentMealPrices();
+            return d;
+        }), this::bindLocalDetails);
+    }
+
+    private void bindLocalDetails(LocalDetails d) {
         // ✅ profile (from local USERS table)
-        String fullName = messDb.getFullNameByUsername(member.name);
-        String phone = messDb.getContactByUsername(member.name);
-        String parentPhone = messDb.getParentContactByUsername(member.name);
-        String address = messDb.getAddressByUsername(member.name);
+        String fullName = d.fullName;
+        String phone = d.phone;
+        String parentPhone = d.parentPhone;
+        String address = d.address;
 
-        String role = messDb.getUserRoleByUsername(member.name);
+        String role = d.role;
         if (role == null) role = (member.role != null ? member.role : "member");
 
         tvFullName.setText("Full Name: " + (fullName == null || fullName.trim().isEmpty() ? "-" : fullName));
@@ -320,10 +317,9 @@ public class MemberDetailsActivity extends AppCompatActivity {
         tvAddress.setText("Address: " + (address == null || address.trim().isEmpty() ? "-" : address));
 
         // ✅ existing money + meal breakdown
-        ExpenseBreakdown breakdown =
-                messDb.getMemberExpenseBreakdown(member.name, monthPrefix);
+        ExpenseBreakdown breakdown = d.breakdown;
 
-        double[] mealPrices = messDb.getCurrentMealPrices();
+        double[] mealPrices = d.mealPrices;
         double breakfastPrice = mealPrices[0];
         double lunchPrice = mealPrices[1];
         double dinnerPrice = mealPrices[2];
@@ -367,70 +363,16 @@ public class MemberDetailsActivity extends AppCompatActivity {
         }
     }
 
+    // ✅ this member's meals for the month, changed since the last pull; renders from SQLite
     private void attachMealsListener() {
-        mealsListener = fs.collection("meals_daily")
-                .whereEqualTo("memberName", memberName)
-                .addSnapshotListener((@Nullable QuerySnapshot value,
-                                      @Nullable FirebaseFirestoreException error) -> {
-                    if (error != null || value == null) {
-                        updateUiFromLocal();
-                        return;
-                    }
-
-                    for (DocumentSnapshot doc : value.getDocuments()) {
-                        String date = doc.getString("date");
-                        if (date == null || !date.startsWith(monthPrefix)) continue;
-
-                        Long bL = doc.getLong("breakfast");
-                        Long lL = doc.getLong("lunch");
-                        Long dL = doc.getLong("dinner");
-
-                        int b = (bL == null) ? 0 : bL.intValue();
-                        int l = (lL == null) ? 0 : lL.intValue();
-                        int d = (dL == null) ? 0 : dL.intValue();
-
-                        messDb.upsertMealsFromRemote(memberName, date, b, l, d);
-                    }
-
-                    updateUiFromLocal();
-                });
+        mealsListener = PullSync.getInstance(this).attachMonth(this, PullSync.MEALS,
+                monthPrefix, memberName, this::updateUiFromLocal);
     }
 
+    // all members' expenses: the other-expenses share needs the month total
     private void attachExpensesListener_ALL() {
-        expensesListener = fs.collection("expenses")
-                .addSnapshotListener((@Nullable QuerySnapshot value,
-                                      @Nullable FirebaseFirestoreException error) -> {
-                    if (error != null || value == null) {
-                        updateUiFromLocal();
-                        return;
-                    }
-
-                    messDb.clearSyncedExpensesForMonth(monthPrefix);
-
-                    for (DocumentSnapshot doc : value.getDocuments()) {
-                        String date = doc.getString("date");
-                        if (date == null || !date.startsWith(monthPrefix)) continue;
-
-                        String title = doc.getString("title");
-                        String category = doc.getString("category");
-                        String paidBy = doc.getString("paidBy");
-                        Double amount = doc.getDouble("amount");
-                        if (amount == null) amount = 0.0;
-
-                        if (paidBy == null) continue;
-
-                        messDb.upsertExpenseFromRemote(
-                                doc.getId(),
-                                date,
-                                title != null ? title : "",
-                                category != null ? category : "",
-                                paidBy,
-                                amount
-                        );
-                    }
-
-                    updateUiFromLocal();
-                });
+        expensesListener = PullSync.getInstance(this).attachMonth(this, PullSync.EXPENSES,
+                monthPrefix, null, this::updateUiFromLocal);
     }
 
     private void detachListeners() {
@@ -2,28 +2,36 @@ package com.example.messmanagement;
 
 import android.os.Bundle;
 import android.view.View;
+import android.widget.AbsListView;
 import android.widget.ImageView;
 import android.widget.ListView;
 import android.widget.TextView;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import java.util.List;
+import java.util.ArrayList;
 import java.util.Locale;
 
 public class MemberExpensesActivity extends AppCompatActivity {
 
+    // start fetching the next page when this many rows are left below the fold
+    private static final int PREFETCH_ROWS = 10;
+
     private TextView tvTitle, tvSummary, tvEmptyExpenses;
     private ListView lvExpenses;
-    private MessDBHelper messDb;
+    private MessRepository repo;
     private String memberName;
 
+    private MemberExpensesAdapter adapter;
+    private boolean loadingPage = false;
+    private boolean reachedEnd = false;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_member_expenses);
 
-        messDb = new MessDBHelper(this);
+        repo = MessRepository.getInstance(this);
 
         memberName = getIntent().getStringExtra("member_name");
         if (memberName == null) memberName = "Unknown";
@@ -37,27 +45,53 @@ public class MemberExpensesActivity extends AppCompatActivity {
 
         tvTitle.setText("Expenses of " + memberName);
 
+        adapter = new MemberExpensesAdapter(this, new ArrayList<>());
+        lvExpenses.setAdapter(adapter);
+        lvExpenses.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) { }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisible, int visibleCount, int totalCount) {
+                if (totalCount > 0 && firstVisible + visibleCount >= totalCount - PREFETCH_ROWS) {
+                    loadNextPage();
+                }
+            }
+        });
+
         loadData();
     }
 
     private void loadData() {
-        List<Expense> expenses = messDb.getExpensesByMember(memberName);
+        String member = memberName;
 
-        if (expenses.isEmpty()) {
-            tvEmptyExpenses.setVisibility(View.VISIBLE);
-            lvExpenses.setVisibility(View.GONE);
-            tvSummary.setText("Total Spent: 0 ৳");
-            return;
-        }
+        // ✅ total comes from SQL, the list only holds what has been scrolled to
+        repo.deliver(this, repo.read(db -> db.getTotalSpentByMember(member)), total ->
+                tvSummary.setText(String.format(Locale.getDefault(), "Total Spent: %.0f ৳", total)));
 
-        tvEmptyExpenses.setVisibility(View.GONE);
-        lvExpenses.setVisibility(View.VISIBLE);
+        loadNextPage();
+    }
+
+    private void loadNextPage() {
+        if (loadingPage || reachedEnd) return;
+        loadingPage = true;
 
-        double total = 0;
-        for (Expense e : expenses) total += e.amount;
+        String member = memberName;
+        Expense after = adapter.lastItem();
 
-        tvSummary.setText(String.format(Locale.getDefault(), "Total Spent: %.0f ৳", total));
+        repo.deliver(this, repo.read(db ->
+                db.getExpensesByMemberPage(member, after, MessDBHelper.EXPENSE_PAGE_SIZE)), page -> {
+            loadingPage = false;
+            if (page.size() < MessDBHelper.EXPENSE_PAGE_SIZE) reachedEnd = true;
+
+            adapter.appendPage(page);
+            bindEmptyState();
+        });
+    }
 
-        lvExpenses.setAdapter(new MemberExpensesAdapter(this, expenses));
+    private void bindEmptyState() {
+        boolean empty = adapter.getCount() == 0;
+        tvEmptyExpenses.setVisibility(empty ? View.VISIBLE : View.GONE);
+        lvExpenses.setVisibility(empty ? View.GONE : View.VISIBLE);
     }
 }
@@ -21,6 +21,16 @@ public class MemberExpensesAdapter extends ArrayAdapter<Expense> {
         this.data = data;
     }
 
+    /** Appends the next page; ArrayAdapter.addAll also notifies the list. */
+    public void appendPage(List<Expense> page) {
+        if (page == null || page.isEmpty()) return;
+        addAll(page);
+    }
+
+    public Expense lastItem() {
+        return data.isEmpty() ? null : data.get(data.size() - 1);
+    }
+
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
 
@@ -32,7 +42,7 @@ public class MemberExpensesAdapter extends ArrayAdapter<Expense> {
 
         ((TextView) row.findViewById(R.id.tvExpenseTitle)).setText(e.title);
         ((TextView) row.findViewById(R.id.tvExpenseAmount))
-                .setText(String.format(Locale.getDefault(), "%.0f ৳", e.amount));
+                .setText(String.format(Locale.getDefault(), "%.0f ৳", Money.taka(e.amountPaisa)));
         ((TextView) row.findViewById(R.id.tvExpenseCategory)).setText(e.category);
         ((TextView) row.findViewById(R.id.tvExpenseDate)).setText(e.date);
 
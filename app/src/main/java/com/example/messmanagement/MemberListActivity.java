@@ -46,8 +46,8 @@ public class MemberListActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_member_list);
 
-        messDb = new MessDBHelper(this);
-        kvDb = new KeyValueDB(this);
+        messDb = MessDBHelper.getInstance(this);
+        kvDb = KeyValueDB.getInstance(this);
 
         fs = FirebaseFirestore.getInstance();
         mAuth = FirebaseAuth.getInstance();
@@ -3,16 +3,35 @@ package com.example.messmanagement;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MessDBHelper extends SQLiteOpenHelper {
 
     private static final String DB_NAME = "mess_management.db";
-    private static final int DB_VERSION = 8; // ✅ v8: add meal last_changed_type/val + price history method support
+    private static final int DB_VERSION = 18; // ✅ v18: closed months keep raw rows until compacted
 
     // -------------------------------------------------------------------------
     // MEMBERS table
@@ -39,6 +58,15 @@ public class MessDBHelper extends SQLiteOpenHelper {
     public static final String COL_USER_IS_ADMIN = "is_admin";        // 1 admin, 0 member
     public static final String COL_USER_STATUS = "status";            // "active"/"pending"/"deleted"
 
+    // -------------------------------------------------------------------------
+    // MEMBER_KEYS table (v14): email -> integer id, append-only
+    // meals_daily / expenses / rollups store the id. Rows are never deleted,
+    // so a member who is removed and later re-added keeps the same id.
+    // -------------------------------------------------------------------------
+    public static final String TABLE_MEMBER_KEYS = "member_keys";
+    public static final String COL_MKEY_ID = "id";
+    public static final String COL_MKEY_EMAIL = "email";
+
     // -------------------------------------------------------------------------
     // EXPENSES table
     // -------------------------------------------------------------------------
@@ -47,9 +75,9 @@ public class MessDBHelper extends SQLiteOpenHelper {
     public static final String COL_EXPENSE_REMOTE_ID = "remote_id";   // Firestore doc id
     public static final String COL_EXPENSE_SYNC_STATE = "sync_state"; // 0=pending, 1=synced
     public static final String COL_EXPENSE_TITLE = "title";
-    public static final String COL_EXPENSE_AMOUNT = "amount";
+    public static final String COL_EXPENSE_AMOUNT = "amount";            // paisa
     public static final String COL_EXPENSE_CATEGORY = "category";
-    public static final String COL_EXPENSE_PAIDBY = "paid_by";
+    public static final String COL_EXPENSE_PAIDBY_ID = "paid_by_id";  // member_keys.id
     public static final String COL_EXPENSE_DATE = "expense_date";     // yyyy-MM-dd
 
     public static final String CATEGORY_PAYMENT = "PAYMENT";
@@ -58,7 +86,7 @@ public class MessDBHelper extends SQLiteOpenHelper {
     // MEALS_DAILY table
     // -------------------------------------------------------------------------
     public static final String TABLE_MEALS_DAILY = "meals_daily";
-    public static final String COL_MEAL_MEMBER = "member_name";       // email
+    public static final String COL_MEAL_MEMBER_ID = "member_id";      // member_keys.id
     public static final String COL_MEAL_DATE = "meal_date";           // yyyy-MM-dd
     public static final String COL_MEAL_BREAKFAST = "breakfast";
     public static final String COL_MEAL_LUNCH = "lunch";
@@ -74,16 +102,151 @@ public class MessDBHelper extends SQLiteOpenHelper {
     // -------------------------------------------------------------------------
     public static final String TABLE_MEAL_PRICES = "meal_prices";
     public static final String COL_PRICE_ID = "id";
-    public static final String COL_PRICE_BREAKFAST = "breakfast_price";
-    public static final String COL_PRICE_LUNCH = "lunch_price";
-    public static final String COL_PRICE_DINNER = "dinner_price";
+    public static final String COL_PRICE_BREAKFAST = "breakfast_price"; // paisa
+    public static final String COL_PRICE_LUNCH = "lunch_price";         // paisa
+    public static final String COL_PRICE_DINNER = "dinner_price";       // paisa
     public static final String COL_PRICE_DATE = "price_date";
 
     // -------------------------------------------------------------------------
-    // CONSTRUCTOR
+    // INDEXES (v9)
+    // -------------------------------------------------------------------------
+    private static final String IDX_EXPENSES_DATE_CAT = "idx_expenses_date_cat_paidby_amount";
+    private static final String IDX_EXPENSES_PAIDBY_DATE = "idx_expenses_paidby_date";
+    private static final String IDX_EXPENSES_REMOTE_ID = "idx_expenses_remote_id";
+    private static final String IDX_MEALS_DATE_MEMBER = "idx_meals_daily_date_member";
+    private static final String IDX_PRICES_DATE = "idx_meal_prices_date";
+
+    // v11: (expense_date DESC, id DESC) keyset paging
+    private static final String IDX_EXPENSES_KEYSET = "idx_expenses_date_id";
+    private static final String IDX_EXPENSES_PAIDBY_KEYSET = "idx_expenses_paidby_date_id";
+
+    // -------------------------------------------------------------------------
+    // MEMBER_MONTH_TOTALS table (v10, kept up to date by triggers)
+    // -------------------------------------------------------------------------
+    public static final String TABLE_MEMBER_MONTH_TOTALS = "member_month_totals";
+    public static final String COL_MMT_MEMBER_ID = "member_id";         // member_keys.id
+    public static final String COL_MMT_MONTH = "month";                 // yyyy-MM
+    public static final String COL_MMT_BREAKFAST = "breakfast";
+    public static final String COL_MMT_LUNCH = "lunch";
+    public static final String COL_MMT_DINNER = "dinner";
+    public static final String COL_MMT_MEAL_COST = "meal_cost";      // paisa
+    public static final String COL_MMT_OTHER = "other_expenses";     // paisa
+    public static final String COL_MMT_PAID = "payments";            // paisa
+
+    // -------------------------------------------------------------------------
+    // ARCHIVED MONTHS (v12, closed months; rebuilt when a late remote edit lands)
+    // archived_months reuses the member_month_totals columns, keyed (month, member)
+    // -------------------------------------------------------------------------
+    public static final String TABLE_ARCHIVED_MONTHS = "archived_months";
+    public static final String TABLE_ARCHIVED_CATEGORIES = "archived_month_categories";
+    public static final String COL_ARCH_CLOSED_AT = "closed_at";
+    public static final String COL_ARCH_CATEGORY = "category";
+    public static final String COL_ARCH_TOTAL = "total";             // paisa
+    public static final String COL_ARCH_ENTRIES = "entries";
+
+    // v18: closed months whose raw rows were dropped (oldest-first, so always a prefix)
+    public static final String TABLE_COMPACTED_MONTHS = "compacted_months";
+    public static final String COL_COMPACTED_AT = "compacted_at";
+
+    // other devices may still upload edits to a closed month; its raw rows are kept this long
+    public static final int COMPACT_AFTER_MONTHS = 12;
+
+    // -------------------------------------------------------------------------
+    // DB MAINTENANCE LOG (v13, one row per DbMaintenanceWorker run)
     // -------------------------------------------------------------------------
-    public MessDBHelper(Context context) {
-        super(context, DB_NAME, null, DB_VERSION);
+    public static final String TABLE_MAINTENANCE_LOG = "db_maintenance_log";
+    public static final String COL_MAINT_ID = "id";
+    public static final String COL_MAINT_RUN_AT = "run_at";
+    public static final String COL_MAINT_DB_BYTES = "db_bytes";
+    public static final String COL_MAINT_WAL_BYTES = "wal_bytes";
+    public static final String COL_MAINT_PAGE_COUNT = "page_count";
+    public static final String COL_MAINT_FREELIST = "freelist_pages";
+    public static final String COL_MAINT_DB_BYTES_AFTER = "db_bytes_after";
+    public static final String COL_MAINT_ANALYZE_MS = "analyze_ms";
+    public static final String COL_MAINT_VACUUM_MS = "vacuum_ms";
+    public static final String COL_MAINT_INTEGRITY_MS = "integrity_ms";
+    public static final String COL_MAINT_VACUUM_MODE = "vacuum_mode";
+    public static final String COL_MAINT_INTEGRITY = "integrity";
+    public static final String COL_MAINT_ERROR = "error";
+
+    // -------------------------------------------------------------------------
+    // SYNC OUTBOX (v16, one row per local change waiting for Firestore)
+    // -------------------------------------------------------------------------
+    public static final String TABLE_OUTBOX = "outbox";
+    public static final String COL_OUTBOX_ID = "id";
+    public static final String COL_OUTBOX_ENTITY = "entity";                // OUTBOX_MEAL / OUTBOX_EXPENSE
+    public static final String COL_OUTBOX_KEY = "item_key";                 // Firestore doc id
+    public static final String COL_OUTBOX_PAYLOAD = "payload";              // JSON
+    public static final String COL_OUTBOX_ATTEMPTS = "attempts";
+    public static final String COL_OUTBOX_NEXT_ATTEMPT = "next_attempt_at"; // epoch millis
+    public static final String COL_OUTBOX_LAST_ERROR = "last_error";
+    public static final String COL_OUTBOX_STATE = "state";                  // OUTBOX_PENDING / OUTBOX_DEAD
+    public static final String COL_OUTBOX_CREATED_AT = "created_at";        // epoch millis
+    public static final String COL_OUTBOX_COALESCED = "coalesced";          // v17: earlier writes it replaced
+
+    public static final String OUTBOX_MEAL = "meal";
+    public static final String OUTBOX_EXPENSE = "expense";
+    public static final int OUTBOX_PENDING = 0;
+    public static final int OUTBOX_DEAD = 1;                                // dead letter, kept for the admin
+    private static final String IDX_OUTBOX_DUE = "idx_outbox_due";
+
+    // meal taps wait this long (restarted by every tap on the same day) before they upload
+    public static final long DEFAULT_MEAL_COALESCE_MS = 5_000L;
+
+    // -------------------------------------------------------------------------
+    // SINGLETON (one connection pool shared by activities + workers)
+    // -------------------------------------------------------------------------
+    private static volatile MessDBHelper instance;
+
+    public static MessDBHelper getInstance(Context context) {
+        if (instance == null) {
+            synchronized (MessDBHelper.class) {
+                if (instance == null) {
+                    instance = new MessDBHelper(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    // separate database file for tools (DbBenchmark / SyntheticDataset), never the app's own db
+    static MessDBHelper openScratch(Context context, String dbName) {
+        return new MessDBHelper(context.getApplicationContext(), dbName);
+    }
+
+    // profile lookups by username (LRU, invalidated on every users write)
+    private final UserDirectory userDirectory = new UserDirectory(this);
+
+    private MessDBHelper(Context context) {
+        this(context, DB_NAME);
+    }
+
+    private MessDBHelper(Context context, String dbName) {
+        super(context, dbName, QueryStats.CURSOR_FACTORY, DB_VERSION);
+        // ✅ WAL: UI reads never wait on the sync worker's writes
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // read-heavy: NORMAL is safe with WAL, bigger page cache, mmap reads
+        runPragma(db, "PRAGMA synchronous = NORMAL");
+        runPragma(db, "PRAGMA cache_size = -4096");      // ~4 MB
+        runPragma(db, "PRAGMA mmap_size = 33554432");    // 32 MB
+        // applies to new files; older ones are switched by DbMaintenanceWorker's first VACUUM
+        runPragma(db, "PRAGMA auto_vacuum = INCREMENTAL");
+    }
+
+    // some pragmas return a row, which execSQL rejects on Android
+    static void runPragma(SQLiteDatabase db, String pragma) {
+        try {
+            Cursor c = db.rawQuery(pragma, null);
+            if (c != null) {
+                c.moveToFirst();
+                c.close();
+            }
+        } catch (Exception ignored) {}
     }
 
     // -------------------------------------------------------------------------
@@ -113,20 +276,59 @@ public class MessDBHelper extends SQLiteOpenHelper {
                 COL_USER_IS_ADMIN + " INTEGER, " +
                 COL_USER_STATUS + " TEXT)");
 
+        // MEMBER_KEYS
+        createMemberKeys(db);
+
         // EXPENSES
-        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_EXPENSES + " (" +
+        db.execSQL(expensesTableSql(TABLE_EXPENSES));
+
+        // MEALS_DAILY (✅ includes sync_state + last_changed fields)
+        db.execSQL(mealsDailyTableSql(TABLE_MEALS_DAILY));
+
+        // MEAL_PRICES
+        db.execSQL(mealPricesTableSql(TABLE_MEAL_PRICES));
+
+        // default prices
+        ContentValues defaultPrices = new ContentValues();
+        defaultPrices.put(COL_PRICE_BREAKFAST, MealLedger.DEFAULT_BREAKFAST_PRICE);
+        defaultPrices.put(COL_PRICE_LUNCH, MealLedger.DEFAULT_LUNCH_PRICE);
+        defaultPrices.put(COL_PRICE_DINNER, MealLedger.DEFAULT_DINNER_PRICE);
+        defaultPrices.put(COL_PRICE_DATE, "2024-01-01");
+        db.insert(TABLE_MEAL_PRICES, null, defaultPrices);
+
+        createIndexes(db);
+        createMemberMonthTotals(db);
+        createArchivedMonths(db);
+        createCompactedMonths(db);
+        createMaintenanceLog(db);
+        createOutbox(db);
+    }
+
+    private static String expensesTableSql(String table) {
+        return "CREATE TABLE IF NOT EXISTS " + table + " (" +
                 COL_EXPENSE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
                 COL_EXPENSE_REMOTE_ID + " TEXT, " +
                 COL_EXPENSE_SYNC_STATE + " INTEGER DEFAULT 1, " +
                 COL_EXPENSE_TITLE + " TEXT, " +
-                COL_EXPENSE_AMOUNT + " REAL, " +
+                COL_EXPENSE_AMOUNT + " INTEGER, " +
                 COL_EXPENSE_CATEGORY + " TEXT, " +
-                COL_EXPENSE_PAIDBY + " TEXT, " +
-                COL_EXPENSE_DATE + " TEXT)");
+                COL_EXPENSE_PAIDBY_ID + " INTEGER, " +
+                COL_EXPENSE_DATE + " TEXT)";
+    }
 
-        // MEALS_DAILY (✅ includes sync_state + last_changed fields)
-        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_MEALS_DAILY + " (" +
-                COL_MEAL_MEMBER + " TEXT NOT NULL, " +
+    private static String mealPricesTableSql(String table) {
+        return "CREATE TABLE IF NOT EXISTS " + table + " (" +
+                COL_PRICE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COL_PRICE_BREAKFAST + " INTEGER DEFAULT " + MealLedger.DEFAULT_BREAKFAST_PRICE + ", " +
+                COL_PRICE_LUNCH + " INTEGER DEFAULT " + MealLedger.DEFAULT_LUNCH_PRICE + ", " +
+                COL_PRICE_DINNER + " INTEGER DEFAULT " + MealLedger.DEFAULT_DINNER_PRICE + ", " +
+                COL_PRICE_DATE + " TEXT)";
+    }
+
+    // clustered on (member_id, meal_date): no rowid, no separate primary-key index
+    private static String mealsDailyTableSql(String table) {
+        return "CREATE TABLE IF NOT EXISTS " + table + " (" +
+                COL_MEAL_MEMBER_ID + " INTEGER NOT NULL, " +
                 COL_MEAL_DATE + " TEXT NOT NULL, " +
                 COL_MEAL_BREAKFAST + " INTEGER DEFAULT 0, " +
                 COL_MEAL_LUNCH + " INTEGER DEFAULT 0, " +
@@ -134,28 +336,33 @@ public class MessDBHelper extends SQLiteOpenHelper {
                 COL_MEAL_SYNC_STATE + " INTEGER DEFAULT 1, " +
                 COL_MEAL_LAST_CHANGED_TYPE + " TEXT, " +
                 COL_MEAL_LAST_CHANGED_VAL + " INTEGER DEFAULT 0, " +
-                "PRIMARY KEY(" + COL_MEAL_MEMBER + ", " + COL_MEAL_DATE + "))");
-
-        // MEAL_PRICES
-        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_MEAL_PRICES + " (" +
-                COL_PRICE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                COL_PRICE_BREAKFAST + " REAL DEFAULT 50.0, " +
-                COL_PRICE_LUNCH + " REAL DEFAULT 150.0, " +
-                COL_PRICE_DINNER + " REAL DEFAULT 150.0, " +
-                COL_PRICE_DATE + " TEXT)");
+                "PRIMARY KEY(" + COL_MEAL_MEMBER_ID + ", " + COL_MEAL_DATE + ")) WITHOUT ROWID";
+    }
 
-        // default prices
-        ContentValues defaultPrices = new ContentValues();
-        defaultPrices.put(COL_PRICE_BREAKFAST, 50.0);
-        defaultPrices.put(COL_PRICE_LUNCH, 150.0);
-        defaultPrices.put(COL_PRICE_DINNER, 150.0);
-        defaultPrices.put(COL_PRICE_DATE, "2024-01-01");
-        db.insert(TABLE_MEAL_PRICES, null, defaultPrices);
+    // month queries use (date >= ? AND date < ?) so these can be used
+    private void createIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + IDX_EXPENSES_DATE_CAT + " ON " + TABLE_EXPENSES + " (" +
+                COL_EXPENSE_DATE + ", " + COL_EXPENSE_CATEGORY + ", " +
+                COL_EXPENSE_PAIDBY_ID + ", " + COL_EXPENSE_AMOUNT + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + IDX_EXPENSES_PAIDBY_DATE + " ON " + TABLE_EXPENSES + " (" +
+                COL_EXPENSE_PAIDBY_ID + ", " + COL_EXPENSE_DATE + ", " +
+                COL_EXPENSE_CATEGORY + ", " + COL_EXPENSE_AMOUNT + ")");
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS " + IDX_EXPENSES_REMOTE_ID + " ON " + TABLE_EXPENSES + " (" +
+                COL_EXPENSE_REMOTE_ID + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + IDX_MEALS_DATE_MEMBER + " ON " + TABLE_MEALS_DAILY + " (" +
+                COL_MEAL_DATE + ", " + COL_MEAL_MEMBER_ID + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + IDX_PRICES_DATE + " ON " + TABLE_MEAL_PRICES + " (" +
+                COL_PRICE_DATE + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + IDX_EXPENSES_KEYSET + " ON " + TABLE_EXPENSES + " (" +
+                COL_EXPENSE_DATE + ", " + COL_EXPENSE_ID + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + IDX_EXPENSES_PAIDBY_KEYSET + " ON " + TABLE_EXPENSES + " (" +
+                COL_EXPENSE_PAIDBY_ID + ", " + COL_EXPENSE_DATE + ", " + COL_EXPENSE_ID + ")");
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
 
+        // still the v3 taka table; migrateToPaisa (v15) converts it with everything else
         if (oldVersion < 3) {
             db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_MEAL_PRICES + " (" +
                     COL_PRICE_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
@@ -219,6 +426,280 @@ public class MessDBHelper extends SQLiteOpenHelper {
             cv.put(COL_MEAL_LAST_CHANGED_VAL, 0);
             db.update(TABLE_MEALS_DAILY, cv, null, null);
         }
+
+        // ✅ v9: drop duplicate remote ids so the unique remote_id index can be built
+        if (oldVersion < 9) {
+            db.execSQL("DELETE FROM " + TABLE_EXPENSES +
+                    " WHERE " + COL_EXPENSE_REMOTE_ID + " IS NOT NULL AND " + COL_EXPENSE_ID + " NOT IN (" +
+                    "SELECT MAX(" + COL_EXPENSE_ID + ") FROM " + TABLE_EXPENSES +
+                    " WHERE " + COL_EXPENSE_REMOTE_ID + " IS NOT NULL" +
+                    " GROUP BY " + COL_EXPENSE_REMOTE_ID + ")");
+        }
+
+        // v9/v11 indexes and the v10 member_month_totals rollup use the v14/v15 columns,
+        // so they are (re)created once the tables are rebuilt (end of this method)
+
+        // ✅ v12: month-close archive
+        if (oldVersion < 12) {
+            createArchivedMonths(db);
+        }
+
+        // ✅ v13: maintenance metrics (auto_vacuum itself can't change inside this transaction)
+        if (oldVersion < 13) {
+            createMaintenanceLog(db);
+        }
+
+        // ✅ v14: member emails -> member_keys ids
+        if (oldVersion < 14) {
+            migrateToMemberIds(db, oldVersion);
+        }
+
+        // ✅ v15: taka REAL -> paisa INTEGER
+        if (oldVersion < 15) {
+            migrateToPaisa(db);
+        }
+
+        // the rebuilt tables come back without indexes or rollup
+        if (oldVersion < 15) {
+            createIndexes(db);
+            createMemberMonthTotals(db);
+            fillMemberMonthTotals(db, TABLE_MEMBER_MONTH_TOTALS);
+        }
+
+        // ✅ v16: outbox replaces "scan for sync_state=0" in the sync worker
+        if (oldVersion < 16) {
+            createOutbox(db);
+            enqueuePendingRows(db);
+        }
+
+        // ✅ v17: a v16 outbox has no coalesced column yet (createOutbox above already adds it)
+        if (oldVersion == 16) {
+            db.execSQL("ALTER TABLE " + TABLE_OUTBOX + " ADD COLUMN " +
+                    COL_OUTBOX_COALESCED + " INTEGER NOT NULL DEFAULT 0");
+        }
+
+        // ✅ v18: every month closed so far was compacted right away; record the ones without raw rows
+        if (oldVersion < 18) {
+            createCompactedMonths(db);
+            if (oldVersion >= 12) markCompactedArchives(db);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // MEMBER KEYS (email <-> id; the public API keeps taking emails)
+    // -------------------------------------------------------------------------
+
+    // email -> member_keys.id; ids are never deleted or reused, so a cached id never goes stale
+    private final Map<String, Long> memberIds = new ConcurrentHashMap<>();
+
+    private void createMemberKeys(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_MEMBER_KEYS + " (" +
+                COL_MKEY_ID + " INTEGER PRIMARY KEY, " +
+                COL_MKEY_EMAIL + " TEXT NOT NULL UNIQUE)");
+    }
+
+    /** Id of a member email, or -1 if it was never stored (so read queries match no rows). */
+    long memberId(String email) {
+        if (email == null) return -1;
+        Long cached = memberIds.get(email);
+        if (cached != null) return cached;
+
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery(
+                "SELECT " + COL_MKEY_ID + " FROM " + TABLE_MEMBER_KEYS + " WHERE " + COL_MKEY_EMAIL + "=?",
+                new String[]{email});
+        long id = c.moveToFirst() ? c.getLong(0) : -1;
+        c.close();
+        if (id != -1 && !db.inTransaction()) memberIds.put(email, id);
+        return id;
+    }
+
+    // memberId as a bind argument
+    private String memberArg(String email) {
+        return String.valueOf(memberId(email));
+    }
+
+    // id of a member email, adding it to member_keys if needed (null email -> null)
+    private Long internMember(SQLiteDatabase db, String email) {
+        if (email == null) return null;
+        Long cached = memberIds.get(email);
+        if (cached != null) return cached;
+
+        long id = insertMemberKey(db, email);
+        // an id added inside a caller's transaction is only cached once it is known to be committed
+        if (!db.inTransaction()) memberIds.put(email, id);
+        return id;
+    }
+
+    /** Ingest path (remote snapshots): every distinct email is looked up or added once, in one transaction. */
+    private Map<String, Long> internMembers(SQLiteDatabase db, Collection<String> emails) {
+        Map<String, Long> ids = new HashMap<>();
+        boolean nested = db.inTransaction();
+        db.beginTransaction();
+        try {
+            for (String email : emails) {
+                if (email == null || ids.containsKey(email)) continue;
+                Long cached = memberIds.get(email);
+                ids.put(email, cached != null ? cached : insertMemberKey(db, email));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (!nested) memberIds.putAll(ids);
+        return ids;
+    }
+
+    private static long insertMemberKey(SQLiteDatabase db, String email) {
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_MEMBER_KEYS + " (" + COL_MKEY_EMAIL + ") VALUES (?)",
+                new Object[]{email});
+        return DatabaseUtils.longForQuery(db,
+                "SELECT " + COL_MKEY_ID + " FROM " + TABLE_MEMBER_KEYS + " WHERE " + COL_MKEY_EMAIL + "=?",
+                new String[]{email});
+    }
+
+    // v13 email columns, only read by migrateToMemberIds
+    private static final String V13_MEAL_MEMBER = "member_name";
+    private static final String V13_EXPENSE_PAIDBY = "paid_by";
+    private static final String V13_MMT_MEMBER = "member";
+    private static final String REBUILT = "_rebuilt";
+
+    /**
+     * v14: meals_daily, expenses and archived_months switch from email text to
+     * member_keys ids. Each table is rebuilt (create new, copy, drop old, rename);
+     * member_month_totals and its triggers refer to the old columns, so they are
+     * dropped and recomputed from the rebuilt tables.
+     */
+    private void migrateToMemberIds(SQLiteDatabase db, int oldVersion) {
+        // before v12 the archive was just created above, already with the v14 columns
+        boolean copyArchive = oldVersion >= 12;
+
+        createMemberKeys(db);
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_MEMBER_KEYS + " (" + COL_MKEY_EMAIL + ")" +
+                " SELECT " + COL_MEMBER_NAME + " FROM " + TABLE_MEMBERS + " WHERE " + COL_MEMBER_NAME + " IS NOT NULL" +
+                " UNION SELECT " + COL_USER_USERNAME + " FROM " + TABLE_USERS + " WHERE " + COL_USER_USERNAME + " IS NOT NULL" +
+                " UNION SELECT " + V13_MEAL_MEMBER + " FROM " + TABLE_MEALS_DAILY +
+                " UNION SELECT " + V13_EXPENSE_PAIDBY + " FROM " + TABLE_EXPENSES + " WHERE " + V13_EXPENSE_PAIDBY + " IS NOT NULL" +
+                (copyArchive ? " UNION SELECT " + V13_MMT_MEMBER + " FROM " + TABLE_ARCHIVED_MONTHS : ""));
+
+        dropMemberMonthTotals(db);
+
+        String mealCols = COL_MEAL_DATE + ", " + COL_MEAL_BREAKFAST + ", " + COL_MEAL_LUNCH + ", " +
+                COL_MEAL_DINNER + ", " + COL_MEAL_SYNC_STATE + ", " +
+                COL_MEAL_LAST_CHANGED_TYPE + ", " + COL_MEAL_LAST_CHANGED_VAL;
+        rebuildTable(db, TABLE_MEALS_DAILY, mealsDailyTableSql(TABLE_MEALS_DAILY + REBUILT),
+                "INSERT INTO " + TABLE_MEALS_DAILY + REBUILT + " (" + COL_MEAL_MEMBER_ID + ", " + mealCols + ")" +
+                        " SELECT k." + COL_MKEY_ID + ", m." + mealCols.replace(", ", ", m.") +
+                        " FROM " + TABLE_MEALS_DAILY + " m JOIN " + TABLE_MEMBER_KEYS + " k" +
+                        " ON k." + COL_MKEY_EMAIL + " = m." + V13_MEAL_MEMBER);
+
+        String expenseCols = COL_EXPENSE_ID + ", " + COL_EXPENSE_REMOTE_ID + ", " + COL_EXPENSE_SYNC_STATE + ", " +
+                COL_EXPENSE_TITLE + ", " + COL_EXPENSE_AMOUNT + ", " + COL_EXPENSE_CATEGORY + ", " + COL_EXPENSE_DATE;
+        rebuildTable(db, TABLE_EXPENSES, expensesTableSql(TABLE_EXPENSES + REBUILT),
+                "INSERT INTO " + TABLE_EXPENSES + REBUILT + " (" + COL_EXPENSE_PAIDBY_ID + ", " + expenseCols + ")" +
+                        " SELECT k." + COL_MKEY_ID + ", e." + expenseCols.replace(", ", ", e.") +
+                        " FROM " + TABLE_EXPENSES + " e LEFT JOIN " + TABLE_MEMBER_KEYS + " k" +
+                        " ON k." + COL_MKEY_EMAIL + " = e." + V13_EXPENSE_PAIDBY);
+
+        if (copyArchive) {
+            String archCols = COL_MMT_MONTH + ", " + COL_MMT_BREAKFAST + ", " + COL_MMT_LUNCH + ", " +
+                    COL_MMT_DINNER + ", " + COL_MMT_MEAL_COST + ", " + COL_MMT_OTHER + ", " +
+                    COL_MMT_PAID + ", " + COL_ARCH_CLOSED_AT;
+            rebuildTable(db, TABLE_ARCHIVED_MONTHS, archivedMonthsTableSql(TABLE_ARCHIVED_MONTHS + REBUILT),
+                    "INSERT INTO " + TABLE_ARCHIVED_MONTHS + REBUILT + " (" + COL_MMT_MEMBER_ID + ", " + archCols + ")" +
+                            " SELECT k." + COL_MKEY_ID + ", a." + archCols.replace(", ", ", a.") +
+                            " FROM " + TABLE_ARCHIVED_MONTHS + " a JOIN " + TABLE_MEMBER_KEYS + " k" +
+                            " ON k." + COL_MKEY_EMAIL + " = a." + V13_MMT_MEMBER);
+            createArchivedMonths(db); // read-only trigger went with the old table
+        }
+    }
+
+    // v15: every money column goes from REAL taka to INTEGER paisa
+    private void migrateToPaisa(SQLiteDatabase db) {
+        dropMemberMonthTotals(db);
+
+        rebuildTable(db, TABLE_MEAL_PRICES, mealPricesTableSql(TABLE_MEAL_PRICES + REBUILT),
+                "INSERT INTO " + TABLE_MEAL_PRICES + REBUILT + " (" + COL_PRICE_ID + ", " + COL_PRICE_DATE + ", " +
+                        COL_PRICE_BREAKFAST + ", " + COL_PRICE_LUNCH + ", " + COL_PRICE_DINNER + ")" +
+                        " SELECT " + COL_PRICE_ID + ", " + COL_PRICE_DATE + ", " +
+                        toPaisaSql(COL_PRICE_BREAKFAST) + ", " + toPaisaSql(COL_PRICE_LUNCH) + ", " +
+                        toPaisaSql(COL_PRICE_DINNER) + " FROM " + TABLE_MEAL_PRICES);
+
+        String expenseCols = COL_EXPENSE_ID + ", " + COL_EXPENSE_REMOTE_ID + ", " + COL_EXPENSE_SYNC_STATE + ", " +
+                COL_EXPENSE_TITLE + ", " + COL_EXPENSE_CATEGORY + ", " + COL_EXPENSE_PAIDBY_ID + ", " + COL_EXPENSE_DATE;
+        rebuildTable(db, TABLE_EXPENSES, expensesTableSql(TABLE_EXPENSES + REBUILT),
+                "INSERT INTO " + TABLE_EXPENSES + REBUILT + " (" + expenseCols + ", " + COL_EXPENSE_AMOUNT + ")" +
+                        " SELECT " + expenseCols + ", " + toPaisaSql(COL_EXPENSE_AMOUNT) + " FROM " + TABLE_EXPENSES);
+
+        String archCols = COL_MMT_MONTH + ", " + COL_MMT_MEMBER_ID + ", " + COL_MMT_BREAKFAST + ", " +
+                COL_MMT_LUNCH + ", " + COL_MMT_DINNER + ", " + COL_ARCH_CLOSED_AT;
+        rebuildTable(db, TABLE_ARCHIVED_MONTHS, archivedMonthsTableSql(TABLE_ARCHIVED_MONTHS + REBUILT),
+                "INSERT INTO " + TABLE_ARCHIVED_MONTHS + REBUILT + " (" + archCols + ", " +
+                        COL_MMT_MEAL_COST + ", " + COL_MMT_OTHER + ", " + COL_MMT_PAID + ")" +
+                        " SELECT " + archCols + ", " + toPaisaSql(COL_MMT_MEAL_COST) + ", " +
+                        toPaisaSql(COL_MMT_OTHER) + ", " + toPaisaSql(COL_MMT_PAID) + " FROM " + TABLE_ARCHIVED_MONTHS);
+
+        String catCols = COL_MMT_MONTH + ", " + COL_ARCH_CATEGORY + ", " + COL_ARCH_ENTRIES + ", " + COL_ARCH_CLOSED_AT;
+        rebuildTable(db, TABLE_ARCHIVED_CATEGORIES, archivedCategoriesTableSql(TABLE_ARCHIVED_CATEGORIES + REBUILT),
+                "INSERT INTO " + TABLE_ARCHIVED_CATEGORIES + REBUILT + " (" + catCols + ", " + COL_ARCH_TOTAL + ")" +
+                        " SELECT " + catCols + ", " + toPaisaSql(COL_ARCH_TOTAL) + " FROM " + TABLE_ARCHIVED_CATEGORIES);
+
+        createArchivedMonths(db); // read-only triggers went with the old tables
+    }
+
+    private static String toPaisaSql(String takaColumn) {
+        return "CAST(ROUND(" + takaColumn + " * " + Money.PAISA_PER_TAKA + ") AS INTEGER)";
+    }
+
+    /**
+     * SQLite's table rebuild: createSql makes "<table>_rebuilt", copySql fills it, then it
+     * replaces the old table. AUTOINCREMENT's high-water mark is kept, not just the largest
+     * surviving id.
+     */
+    private static void rebuildTable(SQLiteDatabase db, String table, String createSql, String copySql) {
+        long seq = DatabaseUtils.longForQuery(db,
+                "SELECT IFNULL(MAX(seq), 0) FROM sqlite_sequence WHERE name=?", new String[]{table});
+        db.execSQL(createSql);
+        db.execSQL(copySql);
+        db.execSQL("DROP TABLE " + table);
+        db.execSQL("ALTER TABLE " + table + REBUILT + " RENAME TO " + table);
+        db.execSQL("UPDATE sqlite_sequence SET seq = ? WHERE name = ? AND seq < ?",
+                new Object[]{seq, table, seq});
+    }
+
+    // -------------------------------------------------------------------------
+    // MONTH RANGE ("yyyy-MM" -> [yyyy-MM-01, next month-01))
+    // -------------------------------------------------------------------------
+
+    static String[] monthRange(String monthPrefix) {
+        try {
+            int year = Integer.parseInt(monthPrefix.substring(0, 4));
+            int month = Integer.parseInt(monthPrefix.substring(5, 7));
+            int nextYear = (month == 12) ? year + 1 : year;
+            int nextMonth = (month == 12) ? 1 : month + 1;
+            return new String[]{
+                    String.format(Locale.US, "%04d-%02d-01", year, month),
+                    String.format(Locale.US, "%04d-%02d-01", nextYear, nextMonth)
+            };
+        } catch (Exception e) {
+            // not a yyyy-MM prefix: same rows as LIKE 'prefix%'
+            return new String[]{monthPrefix, monthPrefix + "\uFFFF"};
+        }
+    }
+
+    // yyyy-MM of a yyyy-MM-dd date
+    static String monthOf(String date) {
+        return date.length() >= 7 ? date.substring(0, 7) : date;
+    }
+
+    // leading args first, then [start, end) of the month
+    private static String[] monthRangeArgs(String monthPrefix, String... leading) {
+        String[] range = monthRange(monthPrefix);
+        String[] args = new String[leading.length + 2];
+        System.arraycopy(leading, 0, args, 0, leading.length);
+        args[leading.length] = range[0];
+        args[leading.length + 1] = range[1];
+        return args;
     }
 
     // =========================================================================
@@ -248,6 +729,7 @@ public class MessDBHelper extends SQLiteOpenHelper {
         ContentValues cv = new ContentValues();
         cv.put(COL_USER_PASSWORD, password);
         db.update(TABLE_USERS, cv, COL_USER_USERNAME + "=?", new String[]{username});
+        // password is not cached, directory stays valid
     }
 
     // =========================================================================
@@ -305,6 +787,7 @@ public class MessDBHelper extends SQLiteOpenHelper {
             }
         } finally {
             if (c != null) c.close();
+            userDirectory.invalidate(email);
         }
 
         if ("active".equalsIgnoreCase(status)) {
@@ -362,6 +845,7 @@ public class MessDBHelper extends SQLiteOpenHelper {
         } else {
             db.insert(TABLE_USERS, null, cv);
         }
+        userDirectory.invalidate(user.getUsername());
     }
 
     // -------------------------------------------------------------------------
@@ -458,6 +942,7 @@ public class MessDBHelper extends SQLiteOpenHelper {
         ContentValues cv = new ContentValues();
         cv.put(COL_USER_STATUS, "deleted");
         int rows = db.update(TABLE_USERS, cv, COL_USER_USERNAME + "=?", new String[]{username});
+        userDirectory.invalidate(username);
         return rows > 0;
     }
 
@@ -471,6 +956,7 @@ public class MessDBHelper extends SQLiteOpenHelper {
         int rows = db.update(TABLE_USERS, cv,
                 COL_USER_FULL_NAME + "=? OR " + COL_USER_USERNAME + "=?",
                 new String[]{fullNameOrEmail, fullNameOrEmail});
+        userDirectory.invalidateAll();
         return rows > 0;
     }
 
@@ -574,176 +1060,244 @@ public class MessDBHelper extends SQLiteOpenHelper {
     // EXPENSES
     // -------------------------------------------------------------------------
 
-    public long addExpense(String title, double amount,
+    /** -1 if date is in a compacted month (see addExpensePending). */
+    public long addExpense(String title, long amountPaisa,
                            String category, String paidBy, String date) {
         SQLiteDatabase db = getWritableDatabase();
         ContentValues cv = new ContentValues();
         cv.put(COL_EXPENSE_TITLE, title);
-        cv.put(COL_EXPENSE_AMOUNT, amount);
+        cv.put(COL_EXPENSE_AMOUNT, amountPaisa);
         cv.put(COL_EXPENSE_CATEGORY, category);
-        cv.put(COL_EXPENSE_PAIDBY, paidBy);
+        cv.put(COL_EXPENSE_PAIDBY_ID, internMember(db, paidBy));
         cv.put(COL_EXPENSE_DATE, date);
 
         cv.put(COL_EXPENSE_SYNC_STATE, 1);
 
-        return db.insert(TABLE_EXPENSES, null, cv);
+        return insertExpense(db, cv, date);
     }
 
-    public long addExpensePending(String remoteId, String title, double amount,
+    /**
+     * Saves a local expense as pending and queues its upload in the same transaction.
+     * A date in a closed month rebuilds that month's archive; a date in a
+     * compacted month (raw rows gone, statement final) is refused with -1.
+     */
+    public long addExpensePending(String remoteId, String title, long amountPaisa,
                                   String category, String paidBy, String date) {
         SQLiteDatabase db = getWritableDatabase();
-        ContentValues cv = new ContentValues();
-        cv.put(COL_EXPENSE_REMOTE_ID, remoteId);
-        cv.put(COL_EXPENSE_SYNC_STATE, 0); // pending
-        cv.put(COL_EXPENSE_TITLE, title);
-        cv.put(COL_EXPENSE_AMOUNT, amount);
-        cv.put(COL_EXPENSE_CATEGORY, category);
-        cv.put(COL_EXPENSE_PAIDBY, paidBy);
-        cv.put(COL_EXPENSE_DATE, date);
-        return db.insert(TABLE_EXPENSES, null, cv);
-    }
+        if (isCompactedDate(db, date)) return -1;
 
-    public void markExpenseSynced(String remoteId) {
-        if (remoteId == null) return;
-        SQLiteDatabase db = getWritableDatabase();
-        ContentValues cv = new ContentValues();
-        cv.put(COL_EXPENSE_SYNC_STATE, 1);
-        db.update(TABLE_EXPENSES, cv, COL_EXPENSE_REMOTE_ID + "=?", new String[]{remoteId});
+        db.beginTransaction();
+        try {
+            ContentValues cv = new ContentValues();
+            cv.put(COL_EXPENSE_REMOTE_ID, remoteId);
+            cv.put(COL_EXPENSE_SYNC_STATE, 0); // pending
+            cv.put(COL_EXPENSE_TITLE, title);
+            cv.put(COL_EXPENSE_AMOUNT, amountPaisa);
+            cv.put(COL_EXPENSE_CATEGORY, category);
+            cv.put(COL_EXPENSE_PAIDBY_ID, internMember(db, paidBy));
+            cv.put(COL_EXPENSE_DATE, date);
+            long id = db.insert(TABLE_EXPENSES, null, cv);
+
+            if (id != -1 && remoteId != null) {
+                enqueue(db, OUTBOX_EXPENSE, remoteId,
+                        expensePayload(title, amountPaisa, category, paidBy, date), 0, 0);
+            }
+            if (id != -1) rebuildIfClosed(db, date);
+            db.setTransactionSuccessful();
+            return id;
+        } finally {
+            db.endTransaction();
+        }
     }
 
     public void clearSyncedExpensesForMonth(String monthPrefix) {
         if (monthPrefix == null) return;
         SQLiteDatabase db = getWritableDatabase();
         db.delete(TABLE_EXPENSES,
-                COL_EXPENSE_SYNC_STATE + "=1 AND " + COL_EXPENSE_DATE + " LIKE ?",
-                new String[]{monthPrefix + "%"});
+                COL_EXPENSE_SYNC_STATE + "=1 AND " + COL_EXPENSE_DATE + " >= ? AND " + COL_EXPENSE_DATE + " < ?",
+                monthRangeArgs(monthPrefix));
     }
 
-    public List<PendingExpense> getPendingExpenses() {
-        List<PendingExpense> list = new ArrayList<>();
-        SQLiteDatabase db = getReadableDatabase();
+    // -------------------------------------------------------------------------
+    // EXPENSE HISTORY (newest first, keyset paged on expense_date DESC, id DESC)
+    // -------------------------------------------------------------------------
 
-        Cursor c = db.rawQuery(
-                "SELECT " + COL_EXPENSE_REMOTE_ID + "," +
-                        COL_EXPENSE_TITLE + "," +
-                        COL_EXPENSE_AMOUNT + "," +
-                        COL_EXPENSE_CATEGORY + "," +
-                        COL_EXPENSE_PAIDBY + "," +
-                        COL_EXPENSE_DATE +
-                        " FROM " + TABLE_EXPENSES +
-                        " WHERE " + COL_EXPENSE_SYNC_STATE + "=0" +
-                        " AND " + COL_EXPENSE_REMOTE_ID + " IS NOT NULL",
-                null
-        );
+    public static final int EXPENSE_PAGE_SIZE = 50;
+
+    // expenses (e) with the payer's email (k)
+    private static final String EXPENSES_WITH_PAYER =
+            " FROM " + TABLE_EXPENSES + " e LEFT JOIN " + TABLE_MEMBER_KEYS + " k" +
+                    " ON k." + COL_MKEY_ID + " = e." + COL_EXPENSE_PAIDBY_ID;
+
+    private static final String EXPENSE_COLUMNS =
+            "e." + COL_EXPENSE_ID + ", e." + COL_EXPENSE_TITLE + ", e." + COL_EXPENSE_AMOUNT + ", e." +
+                    COL_EXPENSE_CATEGORY + ", k." + COL_MKEY_EMAIL + ", e." + COL_EXPENSE_DATE;
+
+    private static final String EXPENSE_NEWEST_FIRST =
+            " ORDER BY e." + COL_EXPENSE_DATE + " DESC, e." + COL_EXPENSE_ID + " DESC";
+
+    // rows strictly after (date, id) in newest-first order
+    private static final String EXPENSE_AFTER_KEY =
+            "e." + COL_EXPENSE_DATE + " <= ? AND (e." + COL_EXPENSE_DATE + " < ? OR e." + COL_EXPENSE_ID + " < ?)";
+
+    /** Reads the current row of a cursor from openExpensesByMember / openAllExpenses. */
+    public static Expense readExpense(Cursor c) {
+        Expense e = new Expense();
+        e.id = c.getLong(0);
+        e.title = c.getString(1);
+        e.amountPaisa = c.getLong(2);
+        e.category = c.getString(3);
+        e.paidBy = c.getString(4);
+        e.date = c.getString(5);
+        return e;
+    }
 
-        while (c.moveToNext()) {
-            PendingExpense p = new PendingExpense();
-            p.remoteId = c.getString(0);
-            p.title = c.getString(1);
-            p.amount = c.getDouble(2);
-            p.category = c.getString(3);
-            p.paidBy = c.getString(4);
-            p.date = c.getString(5);
-            list.add(p);
-        }
+    private static List<Expense> readExpenses(Cursor c) {
+        List<Expense> list = new ArrayList<>();
+        if (c == null) return list;
+        while (c.moveToNext()) list.add(readExpense(c));
         c.close();
         return list;
     }
 
-    public List<Expense> getExpensesByMember(String memberName) {
-        List<Expense> list = new ArrayList<>();
-        SQLiteDatabase db = getReadableDatabase();
+    /** Streaming variant: caller walks the cursor with readExpense(...) and closes it. */
+    public Cursor openExpensesByMember(String memberName) {
+        return getReadableDatabase().rawQuery(
+                "SELECT " + EXPENSE_COLUMNS + EXPENSES_WITH_PAYER +
+                        " WHERE e." + COL_EXPENSE_PAIDBY_ID + "=?" + EXPENSE_NEWEST_FIRST,
+                new String[]{memberArg(memberName)});
+    }
 
-        Cursor c = db.rawQuery(
-                "SELECT * FROM " + TABLE_EXPENSES +
-                        " WHERE " + COL_EXPENSE_PAIDBY + "=? ORDER BY " + COL_EXPENSE_DATE + " DESC",
-                new String[]{memberName}
-        );
+    public Cursor openAllExpenses() {
+        return getReadableDatabase().rawQuery(
+                "SELECT " + EXPENSE_COLUMNS + EXPENSES_WITH_PAYER + EXPENSE_NEWEST_FIRST,
+                null);
+    }
 
-        while (c.moveToNext()) {
-            Expense e = new Expense();
-            e.id = c.getLong(c.getColumnIndexOrThrow(COL_EXPENSE_ID));
-            e.title = c.getString(c.getColumnIndexOrThrow(COL_EXPENSE_TITLE));
-            e.amount = c.getDouble(c.getColumnIndexOrThrow(COL_EXPENSE_AMOUNT));
-            e.category = c.getString(c.getColumnIndexOrThrow(COL_EXPENSE_CATEGORY));
-            e.paidBy = c.getString(c.getColumnIndexOrThrow(COL_EXPENSE_PAIDBY));
-            e.date = c.getString(c.getColumnIndexOrThrow(COL_EXPENSE_DATE));
-            list.add(e);
-        }
-        c.close();
-        return list;
+    /**
+     * One page of a member's history.
+     * Pass after == null for the first page, then the last Expense of the previous page.
+     */
+    public List<Expense> getExpensesByMemberPage(String memberName, Expense after, int pageSize) {
+        SQLiteDatabase db = getReadableDatabase();
+        String member = memberArg(memberName);
+        String sql = "SELECT " + EXPENSE_COLUMNS + EXPENSES_WITH_PAYER +
+                " WHERE e." + COL_EXPENSE_PAIDBY_ID + "=?" +
+                (after != null ? " AND " + EXPENSE_AFTER_KEY : "") +
+                EXPENSE_NEWEST_FIRST + " LIMIT " + Math.max(1, pageSize);
+        String[] args = after != null
+                ? new String[]{member, after.date, after.date, String.valueOf(after.id)}
+                : new String[]{member};
+        return readExpenses(db.rawQuery(sql, args));
     }
 
-    public List<Expense> getAllExpenses() {
-        List<Expense> list = new ArrayList<>();
+    public List<Expense> getAllExpensesPage(Expense after, int pageSize) {
         SQLiteDatabase db = getReadableDatabase();
+        String sql = "SELECT " + EXPENSE_COLUMNS + EXPENSES_WITH_PAYER +
+                (after != null ? " WHERE " + EXPENSE_AFTER_KEY : "") +
+                EXPENSE_NEWEST_FIRST + " LIMIT " + Math.max(1, pageSize);
+        String[] args = after != null
+                ? new String[]{after.date, after.date, String.valueOf(after.id)}
+                : null;
+        return readExpenses(db.rawQuery(sql, args));
+    }
 
+    public double getTotalSpentByMember(String memberName) {
+        double sum = 0;
+        SQLiteDatabase db = getReadableDatabase();
         Cursor c = db.rawQuery(
-                "SELECT * FROM " + TABLE_EXPENSES + " ORDER BY " + COL_EXPENSE_DATE + " DESC",
-                null
-        );
-
-        while (c.moveToNext()) {
-            Expense e = new Expense();
-            e.id = c.getLong(c.getColumnIndexOrThrow(COL_EXPENSE_ID));
-            e.title = c.getString(c.getColumnIndexOrThrow(COL_EXPENSE_TITLE));
-            e.amount = c.getDouble(c.getColumnIndexOrThrow(COL_EXPENSE_AMOUNT));
-            e.category = c.getString(c.getColumnIndexOrThrow(COL_EXPENSE_CATEGORY));
-            e.paidBy = c.getString(c.getColumnIndexOrThrow(COL_EXPENSE_PAIDBY));
-            e.date = c.getString(c.getColumnIndexOrThrow(COL_EXPENSE_DATE));
-            list.add(e);
+                "SELECT SUM(" + COL_EXPENSE_AMOUNT + ") FROM " + TABLE_EXPENSES +
+                        " WHERE " + COL_EXPENSE_PAIDBY_ID + "=?",
+                new String[]{memberArg(memberName)});
+        if (c != null) {
+            if (c.moveToFirst() && !c.isNull(0)) sum = Money.taka(c.getLong(0));
+            c.close();
         }
-        c.close();
-        return list;
+        return sum;
+    }
+
+    public List<Expense> getExpensesByMember(String memberName) {
+        return readExpenses(openExpensesByMember(memberName));
+    }
+
+    public List<Expense> getAllExpenses() {
+        return readExpenses(openAllExpenses());
+    }
+
+    public List<Expense> getExpensesForMonth(String monthPrefix) {
+        return readExpenses(getReadableDatabase().rawQuery(
+                "SELECT " + EXPENSE_COLUMNS + EXPENSES_WITH_PAYER +
+                        " WHERE e." + COL_EXPENSE_DATE + " >= ? AND e." + COL_EXPENSE_DATE + " < ?" +
+                        EXPENSE_NEWEST_FIRST,
+                monthRangeArgs(monthPrefix)));
     }
 
     public double getMonthlyPaidByMember(String memberName, String monthPrefix) {
+        if (isMonthClosed(monthPrefix)) return computeMemberLedger(memberName, monthPrefix).paid;
+
         double sum = 0;
         SQLiteDatabase db = getReadableDatabase();
 
         Cursor c = db.rawQuery(
                 "SELECT SUM(" + COL_EXPENSE_AMOUNT + ") FROM " + TABLE_EXPENSES +
-                        " WHERE " + COL_EXPENSE_PAIDBY + "=? AND " +
+                        " WHERE " + COL_EXPENSE_PAIDBY_ID + "=? AND " +
                         COL_EXPENSE_CATEGORY + "=? AND " +
-                        COL_EXPENSE_DATE + " LIKE ?",
-                new String[]{memberName, CATEGORY_PAYMENT, monthPrefix + "%"}
+                        COL_EXPENSE_DATE + " >= ? AND " + COL_EXPENSE_DATE + " < ?",
+                monthRangeArgs(monthPrefix, memberArg(memberName), CATEGORY_PAYMENT)
         );
 
         if (c != null) {
-            if (c.moveToFirst() && !c.isNull(0)) sum = c.getDouble(0);
+            if (c.moveToFirst() && !c.isNull(0)) sum = Money.taka(c.getLong(0));
             c.close();
         }
         return sum;
     }
 
     public double getMonthlyTotalPaidAllMembers(String monthPrefix) {
+        if (isMonthClosed(monthPrefix)) return sumArchivedMonth(COL_MMT_PAID, monthPrefix);
+
         double sum = 0;
         SQLiteDatabase db = getReadableDatabase();
 
         Cursor c = db.rawQuery(
                 "SELECT SUM(" + COL_EXPENSE_AMOUNT + ") FROM " + TABLE_EXPENSES +
-                        " WHERE " + COL_EXPENSE_CATEGORY + "=? AND " + COL_EXPENSE_DATE + " LIKE ?",
-                new String[]{CATEGORY_PAYMENT, monthPrefix + "%"}
+                        " WHERE " + COL_EXPENSE_CATEGORY + "=? AND " + COL_EXPENSE_DATE + " >= ? AND " + COL_EXPENSE_DATE + " < ?",
+                monthRangeArgs(monthPrefix, CATEGORY_PAYMENT)
         );
 
         if (c != null) {
-            if (c.moveToFirst() && !c.isNull(0)) sum = c.getDouble(0);
+            if (c.moveToFirst() && !c.isNull(0)) sum = Money.taka(c.getLong(0));
             c.close();
         }
         return sum;
     }
 
-    public long addPayment(String memberName, double amount, String date) {
+    public long addPayment(String memberName, long amountPaisa, String date) {
+        SQLiteDatabase db = getWritableDatabase();
         ContentValues cv = new ContentValues();
         cv.put(COL_EXPENSE_TITLE, "Payment");
-        cv.put(COL_EXPENSE_AMOUNT, amount);
+        cv.put(COL_EXPENSE_AMOUNT, amountPaisa);
         cv.put(COL_EXPENSE_CATEGORY, CATEGORY_PAYMENT);
-        cv.put(COL_EXPENSE_PAIDBY, memberName);
+        cv.put(COL_EXPENSE_PAIDBY_ID, internMember(db, memberName));
         cv.put(COL_EXPENSE_DATE, date);
         cv.put(COL_EXPENSE_SYNC_STATE, 1);
 
-        SQLiteDatabase db = getWritableDatabase();
-        return db.insert(TABLE_EXPENSES, null, cv);
+        return insertExpense(db, cv, date);
+    }
+
+    // insert + closed-month archive rebuild in one transaction; -1 for a compacted month
+    private long insertExpense(SQLiteDatabase db, ContentValues cv, String date) {
+        if (isCompactedDate(db, date)) return -1;
+
+        db.beginTransaction();
+        try {
+            long id = db.insert(TABLE_EXPENSES, null, cv);
+            if (id != -1) rebuildIfClosed(db, date);
+            db.setTransactionSuccessful();
+            return id;
+        } finally {
+            db.endTransaction();
+        }
     }
 
     // -------------------------------------------------------------------------
@@ -752,17 +1306,31 @@ public class MessDBHelper extends SQLiteOpenHelper {
 
     public void ensureMealsDailyRow(String member, String date) {
         SQLiteDatabase db = getWritableDatabase();
+        Long memberKey = internMember(db, member);
+        if (memberKey == null || date == null) return;
+
+        db.beginTransaction();
+        try {
+            ensureMealsDailyRow(db, member, memberKey, date);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void ensureMealsDailyRow(SQLiteDatabase db, String member, long memberKey, String date) {
+
         Cursor c = db.rawQuery(
                 "SELECT 1 FROM " + TABLE_MEALS_DAILY +
-                        " WHERE " + COL_MEAL_MEMBER + "=? AND " + COL_MEAL_DATE + "=?",
-                new String[]{member, date}
+                        " WHERE " + COL_MEAL_MEMBER_ID + "=? AND " + COL_MEAL_DATE + "=?",
+                new String[]{String.valueOf(memberKey), date}
         );
         boolean exists = c != null && c.moveToFirst();
         if (c != null) c.close();
 
         if (!exists) {
             ContentValues cv = new ContentValues();
-            cv.put(COL_MEAL_MEMBER, member);
+            cv.put(COL_MEAL_MEMBER_ID, memberKey);
             cv.put(COL_MEAL_DATE, date);
             cv.put(COL_MEAL_BREAKFAST, 0);
             cv.put(COL_MEAL_LUNCH, 0);
@@ -773,80 +1341,115 @@ public class MessDBHelper extends SQLiteOpenHelper {
             cv.put(COL_MEAL_LAST_CHANGED_TYPE, (String) null);
             cv.put(COL_MEAL_LAST_CHANGED_VAL, 0);
 
-            db.insert(TABLE_MEALS_DAILY, null, cv);
+            if (db.insert(TABLE_MEALS_DAILY, null, cv) != -1) enqueueMeal(db, member, memberKey, date, -1, 0);
         }
     }
 
-    public void setMealForDate(String member, String date, String meal, int value) {
-        ensureMealsDailyRow(member, date);
+    // cached meal-toggle statements (compiled once per database handle)
+    private SQLiteDatabase mealToggleDb;
+    private SQLiteStatement mealToggleInsert;
+    private final SQLiteStatement[] mealToggleUpdate = new SQLiteStatement[3];
 
-        SQLiteDatabase db = getWritableDatabase();
+    private static int mealColumnIndex(String meal) {
+        if ("Breakfast".equalsIgnoreCase(meal)) return 0;
+        if ("Lunch".equalsIgnoreCase(meal)) return 1;
+        return 2;
+    }
 
-        Cursor c = db.rawQuery(
-                "SELECT " + COL_MEAL_BREAKFAST + ", " + COL_MEAL_LUNCH + ", " + COL_MEAL_DINNER +
-                        " FROM " + TABLE_MEALS_DAILY +
-                        " WHERE " + COL_MEAL_MEMBER + "=? AND " + COL_MEAL_DATE + "=?",
-                new String[]{member, date}
-        );
+    private void prepareMealToggle(SQLiteDatabase db) {
+        if (db == mealToggleDb && mealToggleInsert != null) return;
 
-        int b = 0, l = 0, d = 0;
-        if (c != null && c.moveToFirst()) {
-            b = c.getInt(0);
-            l = c.getInt(1);
-            d = c.getInt(2);
-        }
-        if (c != null) c.close();
+        mealToggleInsert = db.compileStatement(
+                "INSERT OR IGNORE INTO " + TABLE_MEALS_DAILY + " (" +
+                        COL_MEAL_MEMBER_ID + ", " + COL_MEAL_DATE + ", " +
+                        COL_MEAL_BREAKFAST + ", " + COL_MEAL_LUNCH + ", " + COL_MEAL_DINNER + ", " +
+                        COL_MEAL_SYNC_STATE + ", " + COL_MEAL_LAST_CHANGED_TYPE + ", " + COL_MEAL_LAST_CHANGED_VAL + ")" +
+                        " VALUES (?, ?, ?, ?, ?, 0, ?, ?)");
 
-        // keep your original "do nothing" logic
-        if ("Breakfast".equalsIgnoreCase(meal)) {
-            if (b == 1 && value == 0) return;
-            b = value;
-        } else if ("Lunch".equalsIgnoreCase(meal)) {
-            if (l == 1 && value == 0) return;
-            l = value;
-        } else {
-            if (d == 1 && value == 0) return;
-            d = value;
+        String[] cols = {COL_MEAL_BREAKFAST, COL_MEAL_LUNCH, COL_MEAL_DINNER};
+        for (int i = 0; i < cols.length; i++) {
+            mealToggleUpdate[i] = db.compileStatement(mealToggleUpdateSql(cols[i]));
         }
+        mealToggleDb = db;
+    }
 
-        ContentValues cv = new ContentValues();
-        cv.put(COL_MEAL_BREAKFAST, b);
-        cv.put(COL_MEAL_LUNCH, l);
-        cv.put(COL_MEAL_DINNER, d);
-        cv.put(COL_MEAL_SYNC_STATE, 0); // pending on change
-
-        // ✅ store last change so worker can notify once
-        cv.put(COL_MEAL_LAST_CHANGED_TYPE, meal);
-        cv.put(COL_MEAL_LAST_CHANGED_VAL, value);
-
-        db.update(TABLE_MEALS_DAILY, cv,
-                COL_MEAL_MEMBER + "=? AND " + COL_MEAL_DATE + "=?",
-                new String[]{member, date});
+    // ?1 = value, ?2 = meal name, ?3 = member id, ?4 = date
+    // keeps the original "do nothing if 1 -> 0" rule and skips no-op taps
+    private static String mealToggleUpdateSql(String col) {
+        return "UPDATE " + TABLE_MEALS_DAILY + " SET " +
+                col + "=?1, " + COL_MEAL_SYNC_STATE + "=0, " +
+                COL_MEAL_LAST_CHANGED_TYPE + "=?2, " + COL_MEAL_LAST_CHANGED_VAL + "=?1" +
+                " WHERE " + COL_MEAL_MEMBER_ID + "=?3 AND " + COL_MEAL_DATE + "=?4" +
+                " AND " + col + " IS NOT ?1" +
+                " AND NOT (" + col + "=1 AND ?1=0)";
     }
 
-    private double[] getMealPricesForDate(String date) {
-        double[] prices = new double[]{50.0, 150.0, 150.0};
-        SQLiteDatabase db = getReadableDatabase();
+    /**
+     * Sets one meal for a member/day.
+     * A missing row is created with just that meal set; an existing row is
+     * updated unless it would turn a 1 into a 0 or the value is already there.
+     *
+     * @return true if the stored row changed (callers can skip refresh/sync otherwise)
+     */
+    public synchronized boolean setMealForDate(String member, String date, String meal, int value) {
+        if (member == null || member.trim().isEmpty() || date == null) return false;
 
-        Cursor c = db.rawQuery(
-                "SELECT " + COL_PRICE_BREAKFAST + ", " + COL_PRICE_LUNCH + ", " + COL_PRICE_DINNER +
-                        " FROM " + TABLE_MEAL_PRICES +
-                        " WHERE " + COL_PRICE_DATE + " <= ?" +
-                        " ORDER BY " + COL_PRICE_DATE + " DESC LIMIT 1",
-                new String[]{date}
-        );
+        SQLiteDatabase db = getWritableDatabase();
+        if (isCompactedDate(db, date)) return false;
+        prepareMealToggle(db);
+        long memberKey = internMember(db, member);
 
-        if (c != null) {
-            if (c.moveToFirst()) {
-                prices[0] = c.getDouble(0);
-                prices[1] = c.getDouble(1);
-                prices[2] = c.getDouble(2);
+        int col = mealColumnIndex(meal);
+        boolean changed;
+
+        db.beginTransaction();
+        try {
+            SQLiteStatement insert = mealToggleInsert;
+            insert.bindLong(1, memberKey);
+            insert.bindString(2, date);
+            for (int i = 0; i < 3; i++) insert.bindLong(3 + i, i == col ? value : 0);
+            if (meal == null) insert.bindNull(6); else insert.bindString(6, meal);
+            insert.bindLong(7, value);
+
+            // meals_daily has no rowid to return, so count the inserted row instead
+            changed = insert.executeUpdateDelete() > 0;
+            int previous = 0; // a new row had nothing set
+
+            if (!changed) {
+                SQLiteStatement update = mealToggleUpdate[col];
+                update.bindLong(1, value);
+                if (meal == null) update.bindNull(2); else update.bindString(2, meal);
+                update.bindLong(3, memberKey);
+                update.bindString(4, date);
+                changed = update.executeUpdateDelete() > 0;
+                previous = 1 - value; // the update only runs when the column held the other value
             }
-            c.close();
+            if (changed) {
+                enqueueMeal(db, member, memberKey, date, col, previous);
+                rebuildIfClosed(db, date);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
-        return prices;
+        return changed;
     }
 
+    // each meals_daily row (m) joined to the meal_prices row (p) in effect on its date
+    private static final String PRICED_MEALS_FROM =
+            " FROM " + TABLE_MEALS_DAILY + " m LEFT JOIN " + TABLE_MEAL_PRICES + " p ON p." + COL_PRICE_ID + " = (" +
+                    "SELECT " + COL_PRICE_ID + " FROM " + TABLE_MEAL_PRICES +
+                    " WHERE " + COL_PRICE_DATE + " <= m." + COL_MEAL_DATE +
+                    " ORDER BY " + COL_PRICE_DATE + " DESC LIMIT 1)";
+
+    // same defaults as the v1 meal_prices row when no price is effective yet (all integer paisa)
+    private static final String MEAL_COST_EXPR =
+            "m." + COL_MEAL_BREAKFAST + " * COALESCE(p." + COL_PRICE_BREAKFAST + ", " + MealLedger.DEFAULT_BREAKFAST_PRICE + ") + " +
+                    "m." + COL_MEAL_LUNCH + " * COALESCE(p." + COL_PRICE_LUNCH + ", " + MealLedger.DEFAULT_LUNCH_PRICE + ") + " +
+                    "m." + COL_MEAL_DINNER + " * COALESCE(p." + COL_PRICE_DINNER + ", " + MealLedger.DEFAULT_DINNER_PRICE + ")";
+
+    private static final String MEAL_MONTH_WHERE =
+            "m." + COL_MEAL_DATE + " >= ? AND m." + COL_MEAL_DATE + " < ?";
 
     public int[] getMealsForDate(String member, String date) {
         int[] result = new int[]{0, 0, 0};
@@ -856,8 +1459,8 @@ public class MessDBHelper extends SQLiteOpenHelper {
         Cursor c = db.rawQuery(
                 "SELECT " + COL_MEAL_BREAKFAST + ", " + COL_MEAL_LUNCH + ", " + COL_MEAL_DINNER +
                         " FROM " + TABLE_MEALS_DAILY +
-                        " WHERE " + COL_MEAL_MEMBER + "=? AND " + COL_MEAL_DATE + "=?",
-                new String[]{member, date}
+                        " WHERE " + COL_MEAL_MEMBER_ID + "=? AND " + COL_MEAL_DATE + "=?",
+                new String[]{memberArg(member), date}
         );
 
         if (c != null) {
@@ -875,12 +1478,17 @@ public class MessDBHelper extends SQLiteOpenHelper {
         int[] counts = new int[3];
         if (member == null || member.trim().isEmpty()) return counts;
 
+        if (isMonthClosed(monthPrefix)) {
+            Summary s = computeMemberLedger(member, monthPrefix);
+            return new int[]{s.breakfast, s.lunch, s.dinner};
+        }
+
         SQLiteDatabase db = getReadableDatabase();
         Cursor c = db.rawQuery(
                 "SELECT SUM(" + COL_MEAL_BREAKFAST + "), SUM(" + COL_MEAL_LUNCH + "), SUM(" + COL_MEAL_DINNER + ")" +
                         " FROM " + TABLE_MEALS_DAILY +
-                        " WHERE " + COL_MEAL_MEMBER + "=? AND " + COL_MEAL_DATE + " LIKE ?",
-                new String[]{member, monthPrefix + "%"}
+                        " WHERE " + COL_MEAL_MEMBER_ID + "=? AND " + COL_MEAL_DATE + " >= ? AND " + COL_MEAL_DATE + " < ?",
+                monthRangeArgs(monthPrefix, memberArg(member))
         );
 
         if (c != null) {
@@ -895,13 +1503,17 @@ public class MessDBHelper extends SQLiteOpenHelper {
     }
 
     public int getMonthlyTotalMealsAllMembers(String monthPrefix) {
+        if (isMonthClosed(monthPrefix)) {
+            return (int) sumArchivedMonth(COL_MMT_BREAKFAST + " + " + COL_MMT_LUNCH + " + " + COL_MMT_DINNER, monthPrefix);
+        }
+
         int total = 0;
         SQLiteDatabase db = getReadableDatabase();
         Cursor c = db.rawQuery(
                 "SELECT SUM(" + COL_MEAL_BREAKFAST + " + " + COL_MEAL_LUNCH + " + " + COL_MEAL_DINNER + ")" +
                         " FROM " + TABLE_MEALS_DAILY +
-                        " WHERE " + COL_MEAL_DATE + " LIKE ?",
-                new String[]{monthPrefix + "%"}
+                        " WHERE " + COL_MEAL_DATE + " >= ? AND " + COL_MEAL_DATE + " < ?",
+                monthRangeArgs(monthPrefix)
         );
 
         if (c != null) {
@@ -911,89 +1523,418 @@ public class MessDBHelper extends SQLiteOpenHelper {
         return total;
     }
 
-    public void upsertMealsFromRemote(String member, String date, int breakfast, int lunch, int dinner) {
-        if (member == null || member.trim().isEmpty() || date == null) return;
-
-        SQLiteDatabase db = getWritableDatabase();
-        ensureMealsDailyRow(member, date);
-
-        ContentValues cv = new ContentValues();
-        cv.put(COL_MEAL_BREAKFAST, breakfast);
-        cv.put(COL_MEAL_LUNCH, lunch);
-        cv.put(COL_MEAL_DINNER, dinner);
-        cv.put(COL_MEAL_SYNC_STATE, 1);
-
-        // ✅ remote updates should not trigger local notification
-        cv.put(COL_MEAL_LAST_CHANGED_TYPE, (String) null);
-        cv.put(COL_MEAL_LAST_CHANGED_VAL, 0);
+    /** Every member/day row of the month (same shape as a meals_daily doc), newest day first. */
+    public List<RemoteMeal> getMealsForMonth(String monthPrefix) {
+        List<RemoteMeal> list = new ArrayList<>();
+        Cursor c = getReadableDatabase().rawQuery(
+                "SELECT k." + COL_MKEY_EMAIL + ", m." + COL_MEAL_DATE + ", m." +
+                        COL_MEAL_BREAKFAST + ", m." + COL_MEAL_LUNCH + ", m." + COL_MEAL_DINNER +
+                        " FROM " + TABLE_MEALS_DAILY + " m JOIN " + TABLE_MEMBER_KEYS + " k" +
+                        " ON k." + COL_MKEY_ID + " = m." + COL_MEAL_MEMBER_ID +
+                        " WHERE m." + COL_MEAL_DATE + " >= ? AND m." + COL_MEAL_DATE + " < ?" +
+                        " ORDER BY m." + COL_MEAL_DATE + " DESC, k." + COL_MKEY_EMAIL,
+                monthRangeArgs(monthPrefix));
+        try {
+            while (c.moveToNext()) {
+                list.add(new RemoteMeal(c.getString(0), c.getString(1), c.getInt(2), c.getInt(3), c.getInt(4)));
+            }
+        } finally {
+            c.close();
+        }
+        return list;
+    }
 
-        db.update(TABLE_MEALS_DAILY, cv,
-                COL_MEAL_MEMBER + "=? AND " + COL_MEAL_DATE + "=?",
-                new String[]{member, date});
+    public void upsertMealsFromRemote(String member, String date, int breakfast, int lunch, int dinner) {
+        upsertMealsFromRemote(Collections.singletonList(new RemoteMeal(member, date, breakfast, lunch, dinner)));
     }
 
-    // ✅ REQUIRED BY FirestoreSyncWorker
-    public List<PendingMeal> getPendingMeals() {
-        List<PendingMeal> list = new ArrayList<>();
-        SQLiteDatabase db = getReadableDatabase();
+    private static final String REMOTE_MEAL_UPDATE_SQL =
+            "UPDATE " + TABLE_MEALS_DAILY + " SET " +
+                    COL_MEAL_BREAKFAST + "=?, " + COL_MEAL_LUNCH + "=?, " + COL_MEAL_DINNER + "=?, " +
+                    COL_MEAL_SYNC_STATE + "=1, " +
+                    // ✅ remote updates should not trigger local notification
+                    COL_MEAL_LAST_CHANGED_TYPE + "=NULL, " + COL_MEAL_LAST_CHANGED_VAL + "=0" +
+                    " WHERE " + COL_MEAL_MEMBER_ID + "=? AND " + COL_MEAL_DATE + "=? AND (" +
+                    COL_MEAL_BREAKFAST + " IS NOT ?1 OR " + COL_MEAL_LUNCH + " IS NOT ?2 OR " +
+                    COL_MEAL_DINNER + " IS NOT ?3 OR " + COL_MEAL_SYNC_STATE + " IS NOT 1 OR " +
+                    COL_MEAL_LAST_CHANGED_TYPE + " IS NOT NULL OR " + COL_MEAL_LAST_CHANGED_VAL + " IS NOT 0)";
+
+    /**
+     * Writes a whole snapshot of remote meals in one transaction.
+     * Rows that already hold the same values are left untouched, so the
+     * member_month_totals triggers only fire for real changes. Days with a
+     * local change still pending in the outbox are skipped: the remote doc is
+     * older. A dead-lettered change doesn't hold the day back.
+     * A change to a closed month rebuilds its archive; only compacted months
+     * (no raw rows left) ignore remote docs.
+     */
+    public void upsertMealsFromRemote(List<RemoteMeal> meals) {
+        if (meals == null || meals.isEmpty()) return;
 
+        SQLiteDatabase db = getWritableDatabase();
+        String openFrom = firstUncompactedDate(db);
+        List<String> emails = new ArrayList<>(meals.size());
+        for (RemoteMeal m : meals) if (m != null) emails.add(m.memberName);
+        Map<String, Long> memberKeys = internMembers(db, emails);
+        Set<String> queued = queuedOutboxKeys(db, OUTBOX_MEAL);
+        Set<String> closed = liveArchivedMonths(db);
+        Set<String> rebuild = new TreeSet<>();
+
+        db.beginTransaction();
+        SQLiteStatement update = db.compileStatement(REMOTE_MEAL_UPDATE_SQL);
+        SQLiteStatement insert = db.compileStatement(
+                "INSERT OR IGNORE INTO " + TABLE_MEALS_DAILY + " (" +
+                        COL_MEAL_MEMBER_ID + ", " + COL_MEAL_DATE + ", " +
+                        COL_MEAL_BREAKFAST + ", " + COL_MEAL_LUNCH + ", " + COL_MEAL_DINNER + ", " +
+                        COL_MEAL_SYNC_STATE + ", " + COL_MEAL_LAST_CHANGED_TYPE + ", " + COL_MEAL_LAST_CHANGED_VAL + ")" +
+                        " VALUES (?, ?, ?, ?, ?, 1, NULL, 0)");
+        try {
+            for (RemoteMeal m : meals) {
+                if (m == null || m.memberName == null || m.memberName.trim().isEmpty() || m.date == null) continue;
+                if (openFrom != null && m.date.compareTo(openFrom) < 0) continue; // month already compacted
+                if (queued.contains(m.memberName + "_" + m.date)) continue;
+                long memberKey = memberKeys.get(m.memberName);
+
+                update.bindLong(1, m.breakfast);
+                update.bindLong(2, m.lunch);
+                update.bindLong(3, m.dinner);
+                update.bindLong(4, memberKey);
+                update.bindString(5, m.date);
+                boolean changed = update.executeUpdateDelete() > 0;
+
+                // no-op when the row exists (changed or not)
+                insert.bindLong(1, memberKey);
+                insert.bindString(2, m.date);
+                insert.bindLong(3, m.breakfast);
+                insert.bindLong(4, m.lunch);
+                insert.bindLong(5, m.dinner);
+                changed |= insert.executeInsert() != -1;
+
+                if (changed && closed.contains(monthOf(m.date))) rebuild.add(monthOf(m.date));
+            }
+            for (String month : rebuild) rebuildArchive(db, month);
+            db.setTransactionSuccessful();
+        } finally {
+            update.close();
+            insert.close();
+            db.endTransaction();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // SYNC OUTBOX (written in the same transaction as the local change,
+    // drained by FirestoreSyncWorker)
+    // -------------------------------------------------------------------------
+
+    // AUTOINCREMENT: ids are never reused, so "delete id N" can't hit a newer change to the same doc
+    private void createOutbox(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_OUTBOX + " (" +
+                COL_OUTBOX_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COL_OUTBOX_ENTITY + " TEXT NOT NULL, " +
+                COL_OUTBOX_KEY + " TEXT NOT NULL, " +
+                COL_OUTBOX_PAYLOAD + " TEXT NOT NULL, " +
+                COL_OUTBOX_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0, " +
+                COL_OUTBOX_NEXT_ATTEMPT + " INTEGER NOT NULL DEFAULT 0, " +
+                COL_OUTBOX_LAST_ERROR + " TEXT, " +
+                COL_OUTBOX_STATE + " INTEGER NOT NULL DEFAULT " + OUTBOX_PENDING + ", " +
+                COL_OUTBOX_CREATED_AT + " INTEGER NOT NULL, " +
+                COL_OUTBOX_COALESCED + " INTEGER NOT NULL DEFAULT 0, " +
+                "UNIQUE(" + COL_OUTBOX_ENTITY + ", " + COL_OUTBOX_KEY + "))");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + IDX_OUTBOX_DUE + " ON " + TABLE_OUTBOX + " (" +
+                COL_OUTBOX_STATE + ", " + COL_OUTBOX_NEXT_ATTEMPT + ")");
+    }
+
+    /**
+     * Queues the current state of one doc, due at notBefore. A newer change to the
+     * same doc replaces the queued one (fresh id, attempts reset, dead letter
+     * revived), so only the latest snapshot is ever uploaded.
+     */
+    private static void enqueue(SQLiteDatabase db, String entity, String key, String payload,
+                                long notBefore, int coalesced) {
+        ContentValues cv = new ContentValues();
+        cv.put(COL_OUTBOX_ENTITY, entity);
+        cv.put(COL_OUTBOX_KEY, key);
+        cv.put(COL_OUTBOX_PAYLOAD, payload);
+        cv.put(COL_OUTBOX_ATTEMPTS, 0);
+        cv.put(COL_OUTBOX_NEXT_ATTEMPT, notBefore);
+        cv.put(COL_OUTBOX_STATE, OUTBOX_PENDING);
+        cv.put(COL_OUTBOX_CREATED_AT, System.currentTimeMillis());
+        cv.put(COL_OUTBOX_COALESCED, coalesced);
+        db.insertWithOnConflict(TABLE_OUTBOX, null, cv, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    private volatile long mealCoalesceMs = DEFAULT_MEAL_COALESCE_MS;
+
+    public long getMealCoalesceWindowMs() {
+        return mealCoalesceMs;
+    }
+
+    public void setMealCoalesceWindowMs(long ms) {
+        mealCoalesceMs = Math.max(0, ms);
+    }
+
+    /**
+     * Queues the meals_daily row as it is now (doc id "<email>_<date>"), held for
+     * the coalesce window. changedCol/previous describe this write (-1: none).
+     * The payload carries a "base": what Firestore last got. If an upload for
+     * the same day is still queued, its base is kept and this write is counted
+     * as absorbed, so the upload notifies once for the whole settled change.
+     */
+    private void enqueueMeal(SQLiteDatabase db, String member, long memberKey, String date,
+                             int changedCol, int previous) {
+        int[] now = new int[3];
         Cursor c = db.rawQuery(
-                "SELECT " + COL_MEAL_MEMBER + "," +
-                        COL_MEAL_DATE + "," +
-                        COL_MEAL_BREAKFAST + "," +
-                        COL_MEAL_LUNCH + "," +
-                        COL_MEAL_DINNER + "," +
-                        COL_MEAL_LAST_CHANGED_TYPE + "," +
-                        COL_MEAL_LAST_CHANGED_VAL +
+                "SELECT " + COL_MEAL_BREAKFAST + ", " + COL_MEAL_LUNCH + ", " + COL_MEAL_DINNER +
                         " FROM " + TABLE_MEALS_DAILY +
-                        " WHERE " + COL_MEAL_SYNC_STATE + "=0",
-                null
-        );
+                        " WHERE " + COL_MEAL_MEMBER_ID + "=? AND " + COL_MEAL_DATE + "=?",
+                new String[]{String.valueOf(memberKey), date});
+        try {
+            if (!c.moveToFirst()) return;
+            for (int i = 0; i < 3; i++) now[i] = c.getInt(i);
+        } finally {
+            c.close();
+        }
+
+        int[] base = now.clone();
+        if (changedCol >= 0) base[changedCol] = previous;
+        int coalesced = 0;
+
+        String key = member + "_" + date;
+        c = db.rawQuery(
+                "SELECT " + COL_OUTBOX_PAYLOAD + ", " + COL_OUTBOX_COALESCED + " FROM " + TABLE_OUTBOX +
+                        " WHERE " + COL_OUTBOX_ENTITY + "=? AND " + COL_OUTBOX_KEY + "=?",
+                new String[]{OUTBOX_MEAL, key});
+        try {
+            if (c.moveToFirst()) {
+                JSONObject queued = new JSONObject(c.getString(0));
+                for (int i = 0; i < 3; i++) base[i] = queued.optInt(MEAL_BASE_FIELDS[i], base[i]);
+                coalesced = c.getInt(1) + 1;
+            }
+        } catch (JSONException e) {
+            // unreadable queued payload: this write starts a fresh base
+        } finally {
+            c.close();
+        }
+
+        enqueue(db, OUTBOX_MEAL, key, mealPayload(member, date, now, base),
+                System.currentTimeMillis() + mealCoalesceMs, coalesced);
+    }
+
+    // payload fields for the last state Firestore got (breakfast, lunch, dinner)
+    static final String[] MEAL_BASE_FIELDS = {"baseBreakfast", "baseLunch", "baseDinner"};
+
+    private static String mealPayload(String member, String date, int[] meals, int[] base) {
+        return json("memberName", member, "date", date,
+                "breakfast", meals[0], "lunch", meals[1], "dinner", meals[2],
+                // FirestoreSyncWorker notifies the meals that went 0 -> 1 since the base
+                MEAL_BASE_FIELDS[0], base[0], MEAL_BASE_FIELDS[1], base[1], MEAL_BASE_FIELDS[2], base[2]);
+    }
+
+    private static String expensePayload(String title, long amountPaisa, String category, String paidBy, String date) {
+        return json("title", title, "amountPaisa", amountPaisa, "category", category,
+                "paidBy", paidBy, "date", date);
+    }
+
+    // name/value pairs; null values are left out
+    private static String json(Object... pairs) {
+        JSONObject o = new JSONObject();
+        try {
+            for (int i = 0; i < pairs.length; i += 2) o.put((String) pairs[i], pairs[i + 1]);
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(e); // only thrown for NaN/infinite numbers
+        }
+        return o.toString();
+    }
+
+    // v16: rows still marked sync_state=0 when the outbox arrived
+    private void enqueuePendingRows(SQLiteDatabase db) {
+        Cursor c = db.rawQuery(
+                "SELECT k." + COL_MKEY_EMAIL + ", m." + COL_MEAL_DATE + ", m." +
+                        COL_MEAL_BREAKFAST + ", m." + COL_MEAL_LUNCH + ", m." + COL_MEAL_DINNER + ", m." +
+                        COL_MEAL_LAST_CHANGED_TYPE + ", m." + COL_MEAL_LAST_CHANGED_VAL +
+                        " FROM " + TABLE_MEALS_DAILY + " m JOIN " + TABLE_MEMBER_KEYS + " k" +
+                        " ON k." + COL_MKEY_ID + " = m." + COL_MEAL_MEMBER_ID +
+                        " WHERE m." + COL_MEAL_SYNC_STATE + "=0", null);
+        while (c.moveToNext()) {
+            String member = c.getString(0), date = c.getString(1);
+            int[] meals = {c.getInt(2), c.getInt(3), c.getInt(4)};
+            // base: the row before its last tap, if that tap was an add
+            int[] base = meals.clone();
+            if (!c.isNull(5) && c.getInt(6) == 1) base[mealColumnIndex(c.getString(5))] = 0;
+            enqueue(db, OUTBOX_MEAL, member + "_" + date, mealPayload(member, date, meals, base), 0, 0);
+        }
+        c.close();
 
+        c = db.rawQuery(
+                "SELECT e." + COL_EXPENSE_REMOTE_ID + ", e." + COL_EXPENSE_TITLE + ", e." +
+                        COL_EXPENSE_AMOUNT + ", e." + COL_EXPENSE_CATEGORY + ", k." +
+                        COL_MKEY_EMAIL + ", e." + COL_EXPENSE_DATE +
+                        EXPENSES_WITH_PAYER +
+                        " WHERE e." + COL_EXPENSE_SYNC_STATE + "=0" +
+                        " AND e." + COL_EXPENSE_REMOTE_ID + " IS NOT NULL", null);
         while (c.moveToNext()) {
-            PendingMeal pm = new PendingMeal();
-            pm.memberName = c.getString(0);
-            pm.date = c.getString(1);
-            pm.breakfast = c.getInt(2);
-            pm.lunch = c.getInt(3);
-            pm.dinner = c.getInt(4);
-            pm.changedMealType = c.isNull(5) ? null : c.getString(5);
-            pm.changedValue = c.getInt(6);
-            list.add(pm);
+            enqueue(db, OUTBOX_EXPENSE, c.getString(0),
+                    expensePayload(c.getString(1), c.getLong(2), c.getString(3), c.getString(4), c.getString(5)), 0, 0);
+        }
+        c.close();
+    }
+
+    // doc ids with an upload still pending; a dead letter won't upload on its own,
+    // so it must not hold back remote changes to the same doc
+    private static Set<String> queuedOutboxKeys(SQLiteDatabase db, String entity) {
+        Set<String> keys = new HashSet<>();
+        Cursor c = db.rawQuery(
+                "SELECT " + COL_OUTBOX_KEY + " FROM " + TABLE_OUTBOX +
+                        " WHERE " + COL_OUTBOX_ENTITY + "=? AND " + COL_OUTBOX_STATE + "=" + OUTBOX_PENDING,
+                new String[]{entity});
+        try {
+            while (c.moveToNext()) keys.add(c.getString(0));
+        } finally {
+            c.close();
         }
+        return keys;
+    }
+
+    private static final String OUTBOX_COLUMNS =
+            COL_OUTBOX_ID + ", " + COL_OUTBOX_ENTITY + ", " + COL_OUTBOX_KEY + ", " + COL_OUTBOX_PAYLOAD + ", " +
+                    COL_OUTBOX_ATTEMPTS + ", " + COL_OUTBOX_NEXT_ATTEMPT + ", " + COL_OUTBOX_LAST_ERROR + ", " +
+                    COL_OUTBOX_STATE + ", " + COL_OUTBOX_CREATED_AT + ", " + COL_OUTBOX_COALESCED;
+
+    private static OutboxItem readOutboxItem(Cursor c) {
+        OutboxItem item = new OutboxItem();
+        item.id = c.getLong(0);
+        item.entity = c.getString(1);
+        item.key = c.getString(2);
+        item.payload = c.getString(3);
+        item.attempts = c.getInt(4);
+        item.nextAttemptAt = c.getLong(5);
+        item.lastError = c.getString(6);
+        item.state = c.getInt(7);
+        item.createdAt = c.getLong(8);
+        item.coalesced = c.getInt(9);
+        return item;
+    }
+
+    /** Pending items whose backoff has run out, oldest change first. */
+    public List<OutboxItem> getDueOutbox(long now, int limit) {
+        List<OutboxItem> list = new ArrayList<>();
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery(
+                "SELECT " + OUTBOX_COLUMNS + " FROM " + TABLE_OUTBOX +
+                        " WHERE " + COL_OUTBOX_STATE + "=" + OUTBOX_PENDING +
+                        " AND " + COL_OUTBOX_NEXT_ATTEMPT + " <= ?" +
+                        " ORDER BY " + COL_OUTBOX_ID + " LIMIT ?",
+                new String[]{String.valueOf(now), String.valueOf(limit)});
+        while (c.moveToNext()) list.add(readOutboxItem(c));
         c.close();
         return list;
     }
 
-    // ✅ REQUIRED BY FirestoreSyncWorker
-    public void markMealSynced(String member, String date) {
-        if (member == null || member.trim().isEmpty() || date == null) return;
+    /**
+     * Removes uploaded items and marks their rows synced, in one transaction.
+     * An item replaced by a newer change while it was uploading is left alone:
+     * its row stays pending and the newer snapshot goes out on the next run.
+     */
+    public void markOutboxDelivered(List<OutboxItem> items) {
+        if (items.isEmpty()) return;
 
         SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        SQLiteStatement delete = db.compileStatement(
+                "DELETE FROM " + TABLE_OUTBOX + " WHERE " + COL_OUTBOX_ID + "=?");
+        SQLiteStatement meal = db.compileStatement(
+                "UPDATE " + TABLE_MEALS_DAILY + " SET " + COL_MEAL_SYNC_STATE + "=1, " +
+                        // ✅ clear trigger so notification does not repeat
+                        COL_MEAL_LAST_CHANGED_TYPE + "=NULL, " + COL_MEAL_LAST_CHANGED_VAL + "=0" +
+                        " WHERE " + COL_MEAL_MEMBER_ID + "=? AND " + COL_MEAL_DATE + "=?");
+        SQLiteStatement expense = db.compileStatement(
+                "UPDATE " + TABLE_EXPENSES + " SET " + COL_EXPENSE_SYNC_STATE + "=1" +
+                        " WHERE " + COL_EXPENSE_REMOTE_ID + "=?");
+        try {
+            for (OutboxItem item : items) {
+                delete.bindLong(1, item.id);
+                if (delete.executeUpdateDelete() == 0) continue;
+
+                if (OUTBOX_MEAL.equals(item.entity)) {
+                    JSONObject p = new JSONObject(item.payload);
+                    meal.bindLong(1, memberId(p.getString("memberName")));
+                    meal.bindString(2, p.getString("date"));
+                    meal.executeUpdateDelete();
+                } else if (OUTBOX_EXPENSE.equals(item.entity)) {
+                    expense.bindString(1, item.key);
+                    expense.executeUpdateDelete();
+                }
+            }
+            db.setTransactionSuccessful();
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("bad outbox payload", e); // worker parsed it before uploading
+        } finally {
+            delete.close();
+            meal.close();
+            expense.close();
+            db.endTransaction();
+        }
+    }
+
+    /** Records a failed upload: retry at nextAttemptAt, or park it as a dead letter. */
+    public void markOutboxFailed(long id, int attempts, long nextAttemptAt, boolean dead, String error) {
         ContentValues cv = new ContentValues();
-        cv.put(COL_MEAL_SYNC_STATE, 1);
+        cv.put(COL_OUTBOX_ATTEMPTS, attempts);
+        cv.put(COL_OUTBOX_NEXT_ATTEMPT, nextAttemptAt);
+        cv.put(COL_OUTBOX_STATE, dead ? OUTBOX_DEAD : OUTBOX_PENDING);
+        cv.put(COL_OUTBOX_LAST_ERROR, error);
+        getWritableDatabase().update(TABLE_OUTBOX, cv, COL_OUTBOX_ID + "=?", new String[]{String.valueOf(id)});
+    }
 
-        // ✅ clear trigger so notification does not repeat
-        cv.put(COL_MEAL_LAST_CHANGED_TYPE, (String) null);
-        cv.put(COL_MEAL_LAST_CHANGED_VAL, 0);
+    /** {pending, dead} item counts. */
+    public int[] getOutboxCounts() {
+        int[] counts = new int[2];
+        Cursor c = getReadableDatabase().rawQuery(
+                "SELECT " + COL_OUTBOX_STATE + ", COUNT(*) FROM " + TABLE_OUTBOX + " GROUP BY " + COL_OUTBOX_STATE, null);
+        while (c.moveToNext()) {
+            if (c.getInt(0) == OUTBOX_DEAD) counts[1] = c.getInt(1);
+            else counts[0] += c.getInt(1);
+        }
+        c.close();
+        return counts;
+    }
+
+    /** Dead letters for the admin, most recent first. */
+    public List<OutboxItem> getDeadOutboxItems(int limit) {
+        List<OutboxItem> list = new ArrayList<>();
+        Cursor c = getReadableDatabase().rawQuery(
+                "SELECT " + OUTBOX_COLUMNS + " FROM " + TABLE_OUTBOX +
+                        " WHERE " + COL_OUTBOX_STATE + "=" + OUTBOX_DEAD +
+                        " ORDER BY " + COL_OUTBOX_ID + " DESC LIMIT ?",
+                new String[]{String.valueOf(limit)});
+        while (c.moveToNext()) list.add(readOutboxItem(c));
+        c.close();
+        return list;
+    }
 
-        db.update(TABLE_MEALS_DAILY, cv,
-                COL_MEAL_MEMBER + "=? AND " + COL_MEAL_DATE + "=?",
-                new String[]{member, date});
+    /** Puts every dead letter back in the queue with a fresh attempt budget. */
+    public int retryDeadOutbox() {
+        ContentValues cv = new ContentValues();
+        cv.put(COL_OUTBOX_STATE, OUTBOX_PENDING);
+        cv.put(COL_OUTBOX_ATTEMPTS, 0);
+        cv.put(COL_OUTBOX_NEXT_ATTEMPT, 0);
+        return getWritableDatabase().update(TABLE_OUTBOX, cv,
+                COL_OUTBOX_STATE + "=?", new String[]{String.valueOf(OUTBOX_DEAD)});
     }
 
     // -------------------------------------------------------------------------
     // MEAL PRICES
     // -------------------------------------------------------------------------
 
-    public boolean setMealPrices(double breakfastPrice, double lunchPrice, double dinnerPrice, String date) {
+    public boolean setMealPrices(long breakfastPrice, long lunchPrice, long dinnerPrice, String date) {
         boolean ok = insertMealPriceHistory(breakfastPrice, lunchPrice, dinnerPrice, date);
         return ok;
     }
 
 
     // ✅ FIX: your app calls this but it was missing before
-    public boolean insertMealPriceHistory(double breakfastPrice, double lunchPrice, double dinnerPrice, String date) {
+    // prices in paisa
+    public boolean insertMealPriceHistory(long breakfastPrice, long lunchPrice, long dinnerPrice, String date) {
         if (date == null || date.trim().isEmpty()) return false;
 
         SQLiteDatabase db = getWritableDatabase();
@@ -1017,8 +1958,12 @@ public class MessDBHelper extends SQLiteOpenHelper {
         }
     }
 
+    // taka, for display
     public double[] getCurrentMealPrices() {
-        double[] prices = new double[]{50.0, 150.0, 150.0};
+        double[] prices = new double[]{
+                Money.taka(MealLedger.DEFAULT_BREAKFAST_PRICE),
+                Money.taka(MealLedger.DEFAULT_LUNCH_PRICE),
+                Money.taka(MealLedger.DEFAULT_DINNER_PRICE)};
         SQLiteDatabase db = getReadableDatabase();
 
         Cursor c = db.rawQuery(
@@ -1029,32 +1974,56 @@ public class MessDBHelper extends SQLiteOpenHelper {
         );
 
         if (c != null && c.moveToFirst()) {
-            prices[0] = c.getDouble(c.getColumnIndexOrThrow(COL_PRICE_BREAKFAST));
-            prices[1] = c.getDouble(c.getColumnIndexOrThrow(COL_PRICE_LUNCH));
-            prices[2] = c.getDouble(c.getColumnIndexOrThrow(COL_PRICE_DINNER));
+            prices[0] = Money.taka(c.getLong(c.getColumnIndexOrThrow(COL_PRICE_BREAKFAST)));
+            prices[1] = Money.taka(c.getLong(c.getColumnIndexOrThrow(COL_PRICE_LUNCH)));
+            prices[2] = Money.taka(c.getLong(c.getColumnIndexOrThrow(COL_PRICE_DINNER)));
             c.close();
         }
         return prices;
     }
 
+    // whole price history, oldest first, for pricing meals outside SQL (MealLedger)
+    public MealLedger.PriceTable getMealPriceTable() {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery(
+                "SELECT " + COL_PRICE_DATE + ", " + COL_PRICE_BREAKFAST + ", " + COL_PRICE_LUNCH + ", " + COL_PRICE_DINNER +
+                        " FROM " + TABLE_MEAL_PRICES +
+                        " ORDER BY " + COL_PRICE_DATE,
+                null
+        );
+        int n = c.getCount();
+        int[] from = new int[n];
+        long[] b = new long[n], l = new long[n], d = new long[n];
+        for (int i = 0; c.moveToNext(); i++) {
+            from[i] = MealLedger.day(c.getString(0));
+            b[i] = c.getLong(1);
+            l[i] = c.getLong(2);
+            d[i] = c.getLong(3);
+        }
+        c.close();
+        return new MealLedger.PriceTable(from, b, l, d);
+    }
+
     // -------------------------------------------------------------------------
     // CALCULATIONS
     // -------------------------------------------------------------------------
 
     public double getMonthlyOtherExpensesForMember(String memberName, String monthPrefix) {
+        if (isMonthClosed(monthPrefix)) return computeMemberLedger(memberName, monthPrefix).otherShare;
+
         double sum = 0;
         SQLiteDatabase db = getReadableDatabase();
 
         Cursor c = db.rawQuery(
                 "SELECT SUM(" + COL_EXPENSE_AMOUNT + ") FROM " + TABLE_EXPENSES +
-                        " WHERE " + COL_EXPENSE_PAIDBY + "=? AND " +
+                        " WHERE " + COL_EXPENSE_PAIDBY_ID + "=? AND " +
                         COL_EXPENSE_CATEGORY + " <> ? AND " +
-                        COL_EXPENSE_DATE + " LIKE ?",
-                new String[]{memberName, CATEGORY_PAYMENT, monthPrefix + "%"}
+                        COL_EXPENSE_DATE + " >= ? AND " + COL_EXPENSE_DATE + " < ?",
+                monthRangeArgs(monthPrefix, memberArg(memberName), CATEGORY_PAYMENT)
         );
 
         if (c != null) {
-            if (c.moveToFirst() && !c.isNull(0)) sum = c.getDouble(0);
+            if (c.moveToFirst() && !c.isNull(0)) sum = Money.taka(c.getLong(0));
             c.close();
         }
         return sum;
@@ -1068,28 +2037,19 @@ public class MessDBHelper extends SQLiteOpenHelper {
 
     public double getMonthlyMealCostForMember(String member, String monthPrefix) {
         if (member == null || monthPrefix == null) return 0.0;
+        if (isMonthClosed(monthPrefix)) return computeMemberLedger(member, monthPrefix).mealCost;
 
         SQLiteDatabase db = getReadableDatabase();
         double total = 0.0;
 
         Cursor c = db.rawQuery(
-                "SELECT " + COL_MEAL_DATE + ", " +
-                        COL_MEAL_BREAKFAST + ", " + COL_MEAL_LUNCH + ", " + COL_MEAL_DINNER +
-                        " FROM " + TABLE_MEALS_DAILY +
-                        " WHERE " + COL_MEAL_MEMBER + "=? AND " + COL_MEAL_DATE + " LIKE ?",
-                new String[]{member, monthPrefix + "%"}
+                "SELECT SUM(" + MEAL_COST_EXPR + ")" + PRICED_MEALS_FROM +
+                        " WHERE m." + COL_MEAL_MEMBER_ID + "=? AND " + MEAL_MONTH_WHERE,
+                monthRangeArgs(monthPrefix, memberArg(member))
         );
 
         if (c != null) {
-            while (c.moveToNext()) {
-                String date = c.getString(0);
-                int b = c.getInt(1);
-                int l = c.getInt(2);
-                int d = c.getInt(3);
-
-                double[] p = getMealPricesForDate(date); // ✅ price effective on that date
-                total += (b * p[0]) + (l * p[1]) + (d * p[2]);
-            }
+            if (c.moveToFirst() && !c.isNull(0)) total = Money.taka(c.getLong(0)); // ✅ price effective on each date
             c.close();
         }
 
@@ -1099,28 +2059,19 @@ public class MessDBHelper extends SQLiteOpenHelper {
 
     public double getMonthlyTotalMealCostAllMembers(String monthPrefix) {
         if (monthPrefix == null) return 0.0;
+        if (isMonthClosed(monthPrefix)) return sumArchivedMonth(COL_MMT_MEAL_COST, monthPrefix);
 
         SQLiteDatabase db = getReadableDatabase();
         double total = 0.0;
 
         Cursor c = db.rawQuery(
-                "SELECT " + COL_MEAL_DATE + ", " +
-                        COL_MEAL_BREAKFAST + ", " + COL_MEAL_LUNCH + ", " + COL_MEAL_DINNER +
-                        " FROM " + TABLE_MEALS_DAILY +
-                        " WHERE " + COL_MEAL_DATE + " LIKE ?",
-                new String[]{monthPrefix + "%"}
+                "SELECT SUM(" + MEAL_COST_EXPR + ")" + PRICED_MEALS_FROM +
+                        " WHERE " + MEAL_MONTH_WHERE,
+                monthRangeArgs(monthPrefix)
         );
 
         if (c != null) {
-            while (c.moveToNext()) {
-                String date = c.getString(0);
-                int b = c.getInt(1);
-                int l = c.getInt(2);
-                int d = c.getInt(3);
-
-                double[] p = getMealPricesForDate(date); // ✅ price effective on that date
-                total += (b * p[0]) + (l * p[1]) + (d * p[2]);
-            }
+            if (c.moveToFirst() && !c.isNull(0)) total = Money.taka(c.getLong(0)); // ✅ price effective on each date
             c.close();
         }
 
@@ -1129,18 +2080,20 @@ public class MessDBHelper extends SQLiteOpenHelper {
 
 
     public double getMonthlyOtherExpenses(String monthPrefix) {
+        if (isMonthClosed(monthPrefix)) return sumArchivedMonth(COL_MMT_OTHER, monthPrefix);
+
         double sum = 0;
         SQLiteDatabase db = getReadableDatabase();
 
         Cursor c = db.rawQuery(
                 "SELECT SUM(" + COL_EXPENSE_AMOUNT + ") FROM " + TABLE_EXPENSES +
-                        " WHERE " + COL_EXPENSE_DATE + " LIKE ? AND " +
-                        COL_EXPENSE_CATEGORY + " <> ?",
-                new String[]{monthPrefix + "%", CATEGORY_PAYMENT}
+                        " WHERE " + COL_EXPENSE_CATEGORY + " <> ? AND " +
+                        COL_EXPENSE_DATE + " >= ? AND " + COL_EXPENSE_DATE + " < ?",
+                monthRangeArgs(monthPrefix, CATEGORY_PAYMENT)
         );
 
         if (c != null) {
-            if (c.moveToFirst() && !c.isNull(0)) sum = c.getDouble(0);
+            if (c.moveToFirst() && !c.isNull(0)) sum = Money.taka(c.getLong(0));
             c.close();
         }
         return sum;
@@ -1150,53 +2103,719 @@ public class MessDBHelper extends SQLiteOpenHelper {
         ExpenseBreakdown breakdown = new ExpenseBreakdown();
         if (member == null || monthPrefix == null) return breakdown;
 
+        // ✅ one lookup in member_month_totals (meal cost already at historical effective price)
+        return MealLedger.breakdown(computeMemberLedger(member, monthPrefix));
+    }
+
+    // -------------------------------------------------------------------------
+    // MEMBER MONTH TOTALS (rollup maintained by triggers)
+    // -------------------------------------------------------------------------
+
+    private static final String MMT_T = TABLE_MEMBER_MONTH_TOTALS;
+
+    // before a table rebuild: newer SQLite re-checks every trigger on RENAME, and these
+    // would still name the tables being replaced
+    private static void dropMemberMonthTotals(SQLiteDatabase db) {
+        for (String on : new String[]{"meals", "expenses", "prices"}) {
+            for (String when : new String[]{"ai", "au", "ad"}) {
+                db.execSQL("DROP TRIGGER IF EXISTS trg_mmt_" + on + "_" + when);
+            }
+        }
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_MEMBER_MONTH_TOTALS);
+    }
+
+    private void createMemberMonthTotals(SQLiteDatabase db) {
+        db.execSQL(memberMonthTotalsTableSql(MMT_T, ""));
+
+        // meals_daily -> counts + priced meal cost
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_mmt_meals_ai AFTER INSERT ON " + TABLE_MEALS_DAILY +
+                " BEGIN " +
+                mmtEnsureRowSql(MMT_T, "NEW." + COL_MEAL_MEMBER_ID, "substr(NEW." + COL_MEAL_DATE + ", 1, 7)") +
+                mmtRefreshMealsSql(MMT_T, "NEW." + COL_MEAL_MEMBER_ID, "substr(NEW." + COL_MEAL_DATE + ", 1, 7)") +
+                " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_mmt_meals_au AFTER UPDATE OF " +
+                COL_MEAL_BREAKFAST + ", " + COL_MEAL_LUNCH + ", " + COL_MEAL_DINNER + ", " +
+                COL_MEAL_MEMBER_ID + ", " + COL_MEAL_DATE + " ON " + TABLE_MEALS_DAILY +
+                " BEGIN " +
+                mmtRefreshMealsSql(MMT_T, "OLD." + COL_MEAL_MEMBER_ID, "substr(OLD." + COL_MEAL_DATE + ", 1, 7)") +
+                mmtEnsureRowSql(MMT_T, "NEW." + COL_MEAL_MEMBER_ID, "substr(NEW." + COL_MEAL_DATE + ", 1, 7)") +
+                mmtRefreshMealsSql(MMT_T, "NEW." + COL_MEAL_MEMBER_ID, "substr(NEW." + COL_MEAL_DATE + ", 1, 7)") +
+                " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_mmt_meals_ad AFTER DELETE ON " + TABLE_MEALS_DAILY +
+                " BEGIN " +
+                mmtRefreshMealsSql(MMT_T, "OLD." + COL_MEAL_MEMBER_ID, "substr(OLD." + COL_MEAL_DATE + ", 1, 7)") +
+                " END");
+
+        // expenses -> other expenses + payments
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_mmt_expenses_ai AFTER INSERT ON " + TABLE_EXPENSES +
+                " BEGIN " +
+                mmtEnsureRowSql(MMT_T, "NEW." + COL_EXPENSE_PAIDBY_ID, "substr(NEW." + COL_EXPENSE_DATE + ", 1, 7)") +
+                mmtRefreshExpensesSql(MMT_T, "NEW." + COL_EXPENSE_PAIDBY_ID, "substr(NEW." + COL_EXPENSE_DATE + ", 1, 7)") +
+                " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_mmt_expenses_au AFTER UPDATE OF " +
+                COL_EXPENSE_AMOUNT + ", " + COL_EXPENSE_CATEGORY + ", " +
+                COL_EXPENSE_PAIDBY_ID + ", " + COL_EXPENSE_DATE + " ON " + TABLE_EXPENSES +
+                " BEGIN " +
+                mmtRefreshExpensesSql(MMT_T, "OLD." + COL_EXPENSE_PAIDBY_ID, "substr(OLD." + COL_EXPENSE_DATE + ", 1, 7)") +
+                mmtEnsureRowSql(MMT_T, "NEW." + COL_EXPENSE_PAIDBY_ID, "substr(NEW." + COL_EXPENSE_DATE + ", 1, 7)") +
+                mmtRefreshExpensesSql(MMT_T, "NEW." + COL_EXPENSE_PAIDBY_ID, "substr(NEW." + COL_EXPENSE_DATE + ", 1, 7)") +
+                " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_mmt_expenses_ad AFTER DELETE ON " + TABLE_EXPENSES +
+                " BEGIN " +
+                mmtRefreshExpensesSql(MMT_T, "OLD." + COL_EXPENSE_PAIDBY_ID, "substr(OLD." + COL_EXPENSE_DATE + ", 1, 7)") +
+                " END");
+
+        // meal_prices -> re-price every month from the changed price date on
+        String[][] priceTriggers = {
+                {"trg_mmt_prices_ai", "AFTER INSERT", "NEW." + COL_PRICE_DATE},
+                {"trg_mmt_prices_au", "AFTER UPDATE", "min(OLD." + COL_PRICE_DATE + ", NEW." + COL_PRICE_DATE + ")"},
+                {"trg_mmt_prices_ad", "AFTER DELETE", "OLD." + COL_PRICE_DATE}
+        };
+        for (String[] t : priceTriggers) {
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + t[0] + " " + t[1] + " ON " + TABLE_MEAL_PRICES +
+                    " BEGIN " +
+                    "UPDATE " + MMT_T + " SET " + COL_MMT_MEAL_COST + " = " +
+                    mmtMealCostExpr(MMT_T + "." + COL_MMT_MEMBER_ID, MMT_T + "." + COL_MMT_MONTH) +
+                    " WHERE " + COL_MMT_MONTH + " >= substr(" + t[2] + ", 1, 7);" +
+                    " END");
+        }
+    }
+
+    private static String memberMonthTotalsTableSql(String table, String temp) {
+        return "CREATE " + temp + "TABLE IF NOT EXISTS " + table + " (" +
+                COL_MMT_MEMBER_ID + " INTEGER NOT NULL, " +
+                COL_MMT_MONTH + " TEXT NOT NULL, " +
+                COL_MMT_BREAKFAST + " INTEGER DEFAULT 0, " +
+                COL_MMT_LUNCH + " INTEGER DEFAULT 0, " +
+                COL_MMT_DINNER + " INTEGER DEFAULT 0, " +
+                COL_MMT_MEAL_COST + " INTEGER DEFAULT 0, " +
+                COL_MMT_OTHER + " INTEGER DEFAULT 0, " +
+                COL_MMT_PAID + " INTEGER DEFAULT 0, " +
+                "PRIMARY KEY(" + COL_MMT_MEMBER_ID + ", " + COL_MMT_MONTH + "))";
+    }
+
+    private static String mmtEnsureRowSql(String table, String member, String month) {
+        return "INSERT OR IGNORE INTO " + table + " (" + COL_MMT_MEMBER_ID + ", " + COL_MMT_MONTH + ")" +
+                " SELECT " + member + ", " + month + " WHERE " + member + " IS NOT NULL;";
+    }
+
+    // "month >= yyyy-MM-01 AND month < next-01" for a yyyy-MM SQL expression
+    private static String mmtMonthRange(String column, String month) {
+        return column + " >= " + month + " || '-01' AND " +
+                column + " < date(" + month + " || '-01', '+1 month')";
+    }
+
+    private static String mmtMealCountExpr(String mealCol, String member, String month) {
+        return "(SELECT IFNULL(SUM(" + mealCol + "), 0) FROM " + TABLE_MEALS_DAILY +
+                " WHERE " + COL_MEAL_MEMBER_ID + " = " + member +
+                " AND " + mmtMonthRange(COL_MEAL_DATE, month) + ")";
+    }
+
+    private static String mmtMealCostExpr(String member, String month) {
+        return "(SELECT IFNULL(SUM(" + MEAL_COST_EXPR + "), 0)" + PRICED_MEALS_FROM +
+                " WHERE m." + COL_MEAL_MEMBER_ID + " = " + member +
+                " AND " + mmtMonthRange("m." + COL_MEAL_DATE, month) + ")";
+    }
+
+    private static String mmtExpenseSumExpr(String categoryTest, String member, String month) {
+        return "(SELECT IFNULL(SUM(" + COL_EXPENSE_AMOUNT + "), 0) FROM " + TABLE_EXPENSES +
+                " WHERE " + COL_EXPENSE_PAIDBY_ID + " = " + member +
+                " AND " + COL_EXPENSE_CATEGORY + categoryTest +
+                " AND " + mmtMonthRange(COL_EXPENSE_DATE, month) + ")";
+    }
+
+    private static String mmtRefreshMealsSql(String table, String member, String month) {
+        return "UPDATE " + table + " SET " + mmtMealsSet(member, month) +
+                " WHERE " + COL_MMT_MEMBER_ID + " = " + member + " AND " + COL_MMT_MONTH + " = " + month + ";";
+    }
+
+    private static String mmtRefreshExpensesSql(String table, String member, String month) {
+        return "UPDATE " + table + " SET " + mmtExpensesSet(member, month) +
+                " WHERE " + COL_MMT_MEMBER_ID + " = " + member + " AND " + COL_MMT_MONTH + " = " + month + ";";
+    }
+
+    private static String mmtMealsSet(String member, String month) {
+        return COL_MMT_BREAKFAST + " = " + mmtMealCountExpr(COL_MEAL_BREAKFAST, member, month) + ", " +
+                COL_MMT_LUNCH + " = " + mmtMealCountExpr(COL_MEAL_LUNCH, member, month) + ", " +
+                COL_MMT_DINNER + " = " + mmtMealCountExpr(COL_MEAL_DINNER, member, month) + ", " +
+                COL_MMT_MEAL_COST + " = " + mmtMealCostExpr(member, month);
+    }
+
+    private static String mmtExpensesSet(String member, String month) {
+        return COL_MMT_OTHER + " = " + mmtExpenseSumExpr(" <> '" + CATEGORY_PAYMENT + "'", member, month) + ", " +
+                COL_MMT_PAID + " = " + mmtExpenseSumExpr(" = '" + CATEGORY_PAYMENT + "'", member, month);
+    }
+
+    // full recompute from meals_daily + expenses into an empty totals table
+    private void fillMemberMonthTotals(SQLiteDatabase db, String table) {
+        db.execSQL("INSERT OR IGNORE INTO " + table + " (" + COL_MMT_MEMBER_ID + ", " + COL_MMT_MONTH + ")" +
+                " SELECT " + COL_MEAL_MEMBER_ID + ", substr(" + COL_MEAL_DATE + ", 1, 7) FROM " + TABLE_MEALS_DAILY +
+                " UNION SELECT " + COL_EXPENSE_PAIDBY_ID + ", substr(" + COL_EXPENSE_DATE + ", 1, 7) FROM " + TABLE_EXPENSES +
+                " WHERE " + COL_EXPENSE_PAIDBY_ID + " IS NOT NULL AND " + COL_EXPENSE_DATE + " IS NOT NULL");
+
+        String member = table + "." + COL_MMT_MEMBER_ID;
+        String month = table + "." + COL_MMT_MONTH;
+        db.execSQL("UPDATE " + table + " SET " + mmtMealsSet(member, month));
+        db.execSQL("UPDATE " + table + " SET " + mmtExpensesSet(member, month));
+    }
+
+    public void rebuildMemberMonthTotals() {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_MEMBER_MONTH_TOTALS, null, null);
+            fillMemberMonthTotals(db, TABLE_MEMBER_MONTH_TOTALS);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Compares member_month_totals against a full recompute.
+     * Returns "member|yyyy-MM" for every row that differs (empty = consistent).
+     */
+    public List<String> checkMemberMonthTotals() {
+        List<String> mismatches = new ArrayList<>();
+        String check = "temp_mmt_check";
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.execSQL("DROP TABLE IF EXISTS " + check);
+        db.execSQL(memberMonthTotalsTableSql(check, "TEMP "));
+        try {
+            fillMemberMonthTotals(db, check);
+
+            String diff = "a." + COL_MMT_BREAKFAST + " IS NOT b." + COL_MMT_BREAKFAST +
+                    " OR a." + COL_MMT_LUNCH + " IS NOT b." + COL_MMT_LUNCH +
+                    " OR a." + COL_MMT_DINNER + " IS NOT b." + COL_MMT_DINNER +
+                    " OR a." + COL_MMT_MEAL_COST + " IS NOT b." + COL_MMT_MEAL_COST +
+                    " OR a." + COL_MMT_OTHER + " IS NOT b." + COL_MMT_OTHER +
+                    " OR a." + COL_MMT_PAID + " IS NOT b." + COL_MMT_PAID;
+            String join = " ON a." + COL_MMT_MEMBER_ID + " = b." + COL_MMT_MEMBER_ID +
+                    " AND a." + COL_MMT_MONTH + " = b." + COL_MMT_MONTH;
+
+            // rows present in the recompute but missing or different in the rollup, then rollup-only rows
+            // that are not all zero (deletes leave zeroed rows behind, which is fine)
+            String email = "(SELECT " + COL_MKEY_EMAIL + " FROM " + TABLE_MEMBER_KEYS +
+                    " WHERE " + COL_MKEY_ID + " = %s." + COL_MMT_MEMBER_ID + ")";
+            Cursor c = db.rawQuery(
+                    "SELECT " + String.format(email, "a") + ", a." + COL_MMT_MONTH +
+                            " FROM " + check + " a LEFT JOIN " + TABLE_MEMBER_MONTH_TOTALS + " b" + join +
+                            " WHERE b." + COL_MMT_MEMBER_ID + " IS NULL OR " + diff +
+                            " UNION SELECT " + String.format(email, "b") + ", b." + COL_MMT_MONTH +
+                            " FROM " + TABLE_MEMBER_MONTH_TOTALS + " b LEFT JOIN " + check + " a" + join +
+                            " WHERE a." + COL_MMT_MEMBER_ID + " IS NULL AND (b." + COL_MMT_BREAKFAST + " <> 0" +
+                            " OR b." + COL_MMT_LUNCH + " <> 0 OR b." + COL_MMT_DINNER + " <> 0" +
+                            " OR b." + COL_MMT_MEAL_COST + " <> 0 OR b." + COL_MMT_OTHER + " <> 0" +
+                            " OR b." + COL_MMT_PAID + " <> 0)",
+                    null
+            );
+            while (c.moveToNext()) mismatches.add(c.getString(0) + "|" + c.getString(1));
+            c.close();
+        } finally {
+            db.execSQL("DROP TABLE IF EXISTS " + check);
+        }
+        return mismatches;
+    }
+
+    /**
+     * Statements that never go through rawQuery (compiled writes, trigger bodies),
+     * for QueryPlanCheck to EXPLAIN alongside the captured queries.
+     */
+    static List<String> planProbeSql() {
+        List<String> sql = new ArrayList<>();
+        sql.add(mealToggleUpdateSql(COL_MEAL_BREAKFAST));
+        sql.add(REMOTE_MEAL_UPDATE_SQL);
+        sql.add(REMOTE_EXPENSE_UPDATE_SQL);
+        sql.add("SELECT " + mmtMealCountExpr(COL_MEAL_BREAKFAST, "?", "?"));
+        sql.add("SELECT " + mmtMealCostExpr("?", "?"));
+        sql.add("SELECT " + mmtExpenseSumExpr(" <> '" + CATEGORY_PAYMENT + "'", "?", "?"));
+        return sql;
+    }
+
+    // -------------------------------------------------------------------------
+    // MONTHLY LEDGER (read from member_month_totals)
+    // -------------------------------------------------------------------------
+
+    public List<Summary> computeMonthlyLedger(String monthPrefix) {
+        List<Summary> list = new ArrayList<>();
+        if (monthPrefix == null) return list;
+
+        // ✅ closed months come from the archive (same columns)
+        String table = isMonthClosed(monthPrefix) ? TABLE_ARCHIVED_MONTHS : TABLE_MEMBER_MONTH_TOTALS;
+
         SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery(
+                "SELECT n." + COL_MEMBER_NAME + ", " + MMT_LEDGER_COLUMNS +
+                        " FROM " + TABLE_MEMBERS + " n" +
+                        " LEFT JOIN " + TABLE_MEMBER_KEYS + " k ON k." + COL_MKEY_EMAIL + " = n." + COL_MEMBER_NAME +
+                        " LEFT JOIN " + table + " t" +
+                        " ON t." + COL_MMT_MEMBER_ID + " = k." + COL_MKEY_ID + " AND t." + COL_MMT_MONTH + " = ?" +
+                        " ORDER BY n." + COL_MEMBER_NAME,
+                new String[]{monthPrefix}
+        );
+        while (c.moveToNext()) list.add(readLedgerRow(c));
+        c.close();
+        return list;
+    }
 
-        int breakfastCount = 0, lunchCount = 0, dinnerCount = 0;
-        double mealCost = 0.0;
+    // single primary-key lookup (works even if the member is not in members yet)
+    public Summary computeMemberLedger(String member, String monthPrefix) {
+        if (member == null || monthPrefix == null) {
+            return new Summary(member, 0, 0, 0, 0.0, 0.0, 0.0, 0.0, 0.0);
+        }
+
+        String table = isMonthClosed(monthPrefix) ? TABLE_ARCHIVED_MONTHS : TABLE_MEMBER_MONTH_TOTALS;
 
+        SQLiteDatabase db = getReadableDatabase();
         Cursor c = db.rawQuery(
-                "SELECT " + COL_MEAL_DATE + ", " +
-                        COL_MEAL_BREAKFAST + ", " + COL_MEAL_LUNCH + ", " + COL_MEAL_DINNER +
-                        " FROM " + TABLE_MEALS_DAILY +
-                        " WHERE " + COL_MEAL_MEMBER + "=? AND " + COL_MEAL_DATE + " LIKE ?",
-                new String[]{member, monthPrefix + "%"}
+                "SELECT k." + COL_MKEY_EMAIL + ", " + MMT_LEDGER_COLUMNS +
+                        " FROM " + table + " t JOIN " + TABLE_MEMBER_KEYS + " k ON k." + COL_MKEY_ID + " = t." + COL_MMT_MEMBER_ID +
+                        " WHERE t." + COL_MMT_MEMBER_ID + " = ? AND t." + COL_MMT_MONTH + " = ?",
+                new String[]{memberArg(member), monthPrefix}
+        );
+        Summary s = c.moveToFirst()
+                ? readLedgerRow(c)
+                : new Summary(member, 0, 0, 0, 0.0, 0.0, 0.0, 0.0, 0.0);
+        c.close();
+        return s;
+    }
+
+    private static final String MMT_LEDGER_COLUMNS =
+            "IFNULL(t." + COL_MMT_BREAKFAST + ", 0), IFNULL(t." + COL_MMT_LUNCH + ", 0), " +
+                    "IFNULL(t." + COL_MMT_DINNER + ", 0), IFNULL(t." + COL_MMT_MEAL_COST + ", 0), " +
+                    "IFNULL(t." + COL_MMT_OTHER + ", 0), IFNULL(t." + COL_MMT_PAID + ", 0)";
+
+    private static Summary readLedgerRow(Cursor c) {
+        return MealLedger.summary(
+                c.getString(0),
+                c.getInt(1), c.getInt(2), c.getInt(3),
+                c.getLong(4), c.getLong(5), c.getLong(6)
         );
+    }
 
-        if (c != null) {
-            while (c.moveToNext()) {
-                String date = c.getString(0);
-                int b = c.getInt(1);
-                int l = c.getInt(2);
-                int d = c.getInt(3);
+    // -------------------------------------------------------------------------
+    // MONTH CLOSE (archive finalized months; drop their raw rows after a grace period)
+    // -------------------------------------------------------------------------
 
-                breakfastCount += b;
-                lunchCount += l;
-                dinnerCount += d;
+    private void createArchivedMonths(SQLiteDatabase db) {
+        db.execSQL(archivedMonthsTableSql(TABLE_ARCHIVED_MONTHS));
+        db.execSQL(archivedCategoriesTableSql(TABLE_ARCHIVED_CATEGORIES));
 
-                double[] p = getMealPricesForDate(date); // ✅ historical effective price
-                mealCost += (b * p[0]) + (l * p[1]) + (d * p[2]);
-            }
-            c.close();
+        // ✅ statements are never edited in place; a late remote edit deletes and rebuilds the month
+        for (String table : new String[]{TABLE_ARCHIVED_MONTHS, TABLE_ARCHIVED_CATEGORIES}) {
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_" + table + "_ro BEFORE UPDATE ON " + table +
+                    " BEGIN SELECT RAISE(ABORT, 'archived months are read-only'); END");
         }
+    }
 
-        breakdown.breakfastCount = breakfastCount;
-        breakdown.lunchCount = lunchCount;
-        breakdown.dinnerCount = dinnerCount;
-        breakdown.mealCost = mealCost;
+    private static String archivedMonthsTableSql(String table) {
+        return "CREATE TABLE IF NOT EXISTS " + table + " (" +
+                COL_MMT_MONTH + " TEXT NOT NULL, " +
+                COL_MMT_MEMBER_ID + " INTEGER NOT NULL, " +
+                COL_MMT_BREAKFAST + " INTEGER DEFAULT 0, " +
+                COL_MMT_LUNCH + " INTEGER DEFAULT 0, " +
+                COL_MMT_DINNER + " INTEGER DEFAULT 0, " +
+                COL_MMT_MEAL_COST + " INTEGER DEFAULT 0, " +
+                COL_MMT_OTHER + " INTEGER DEFAULT 0, " +
+                COL_MMT_PAID + " INTEGER DEFAULT 0, " +
+                COL_ARCH_CLOSED_AT + " TEXT, " +
+                "PRIMARY KEY(" + COL_MMT_MONTH + ", " + COL_MMT_MEMBER_ID + "))";
+    }
 
-        double memberOther = getMonthlyOtherExpensesForMember(member, monthPrefix);
-        breakdown.otherExpensesShare = memberOther;
+    private static String archivedCategoriesTableSql(String table) {
+        return "CREATE TABLE IF NOT EXISTS " + table + " (" +
+                COL_MMT_MONTH + " TEXT NOT NULL, " +
+                COL_ARCH_CATEGORY + " TEXT NOT NULL, " +
+                COL_ARCH_TOTAL + " INTEGER DEFAULT 0, " +
+                COL_ARCH_ENTRIES + " INTEGER DEFAULT 0, " +
+                COL_ARCH_CLOSED_AT + " TEXT, " +
+                "PRIMARY KEY(" + COL_MMT_MONTH + ", " + COL_ARCH_CATEGORY + "))";
+    }
 
-        breakdown.paidAmount = getMonthlyPaidByMember(member, monthPrefix);
+    public boolean isMonthClosed(String monthPrefix) {
+        if (monthPrefix == null) return false;
+        return isMonthClosed(getReadableDatabase(), monthPrefix);
+    }
 
-        breakdown.totalCost = breakdown.mealCost + breakdown.otherExpensesShare;
-        breakdown.balance = breakdown.totalCost - breakdown.paidAmount;
+    private static boolean isMonthClosed(SQLiteDatabase db, String monthPrefix) {
+        Cursor c = db.rawQuery(
+                "SELECT EXISTS(SELECT 1 FROM " + TABLE_ARCHIVED_MONTHS + " WHERE " + COL_MMT_MONTH + "=?)" +
+                        " OR EXISTS(SELECT 1 FROM " + TABLE_ARCHIVED_CATEGORIES + " WHERE " + COL_MMT_MONTH + "=?)",
+                new String[]{monthPrefix, monthPrefix});
+        boolean closed = c.moveToFirst() && c.getInt(0) == 1;
+        c.close();
+        return closed;
+    }
 
-        return breakdown;
+    // months are compacted oldest-first, so everything before this date has no raw rows (null = none)
+    private String firstUncompactedDate(SQLiteDatabase db) {
+        Cursor c = db.rawQuery(
+                "SELECT MAX(" + COL_MMT_MONTH + ") FROM " + TABLE_COMPACTED_MONTHS, null);
+        String lastCompacted = c.moveToFirst() && !c.isNull(0) ? c.getString(0) : null;
+        c.close();
+        return lastCompacted != null ? monthRange(lastCompacted)[1] : null;
     }
 
+    // a local write can't land in a compacted month: its raw rows are gone and its archive is final
+    private boolean isCompactedDate(SQLiteDatabase db, String date) {
+        if (date == null) return false;
+        String openFrom = firstUncompactedDate(db);
+        return openFrom != null && date.compareTo(openFrom) < 0;
+    }
 
+    // a local write to a closed (not compacted) month: re-derive its archive in the caller's transaction
+    private void rebuildIfClosed(SQLiteDatabase db, String date) {
+        String month = monthOf(date);
+        if (isMonthClosed(db, month)) rebuildArchive(db, month);
+    }
+
+    // closed months that still have their raw rows, oldest first
+    private Set<String> liveArchivedMonths(SQLiteDatabase db) {
+        Set<String> months = new TreeSet<>();
+        Cursor c = db.rawQuery(
+                "SELECT " + COL_MMT_MONTH + " FROM " + TABLE_ARCHIVED_MONTHS +
+                        " UNION SELECT " + COL_MMT_MONTH + " FROM " + TABLE_ARCHIVED_CATEGORIES +
+                        " EXCEPT SELECT " + COL_MMT_MONTH + " FROM " + TABLE_COMPACTED_MONTHS,
+                null);
+        while (c.moveToNext()) months.add(c.getString(0));
+        c.close();
+        return months;
+    }
+
+    private double sumArchivedMonth(String expr, String monthPrefix) {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery(
+                "SELECT SUM(" + expr + ") FROM " + TABLE_ARCHIVED_MONTHS + " WHERE " + COL_MMT_MONTH + "=?",
+                new String[]{monthPrefix});
+        double sum = c.moveToFirst() && !c.isNull(0) ? Money.taka(c.getLong(0)) : 0.0;
+        c.close();
+        return sum;
+    }
+
+    /** category -> total spent, for a closed month (empty if the month is still open). */
+    public Map<String, Double> getArchivedCategoryTotals(String monthPrefix) {
+        Map<String, Double> totals = new LinkedHashMap<>();
+        if (monthPrefix == null) return totals;
+
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery(
+                "SELECT " + COL_ARCH_CATEGORY + ", " + COL_ARCH_TOTAL + " FROM " + TABLE_ARCHIVED_CATEGORIES +
+                        " WHERE " + COL_MMT_MONTH + "=? ORDER BY " + COL_ARCH_CATEGORY,
+                new String[]{monthPrefix});
+        while (c.moveToNext()) totals.put(c.getString(0), Money.taka(c.getLong(1)));
+        c.close();
+        return totals;
+    }
+
+    private void createCompactedMonths(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_COMPACTED_MONTHS + " (" +
+                COL_MMT_MONTH + " TEXT PRIMARY KEY, " +
+                COL_COMPACTED_AT + " INTEGER NOT NULL)");
+    }
+
+    // before v18 closing always compacted, so an archived month without raw rows was compacted
+    private static void markCompactedArchives(SQLiteDatabase db) {
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_COMPACTED_MONTHS + " (" + COL_MMT_MONTH + ", " + COL_COMPACTED_AT + ")" +
+                " SELECT a." + COL_MMT_MONTH + ", CAST(MIN(a." + COL_ARCH_CLOSED_AT + ") AS INTEGER) FROM (" +
+                "SELECT " + COL_MMT_MONTH + ", " + COL_ARCH_CLOSED_AT + " FROM " + TABLE_ARCHIVED_MONTHS +
+                " UNION ALL SELECT " + COL_MMT_MONTH + ", " + COL_ARCH_CLOSED_AT + " FROM " + TABLE_ARCHIVED_CATEGORIES + ") a" +
+                " WHERE NOT EXISTS(SELECT 1 FROM " + TABLE_MEALS_DAILY +
+                " WHERE " + COL_MEAL_DATE + " >= a." + COL_MMT_MONTH + " || '-01'" +
+                " AND " + COL_MEAL_DATE + " < date(a." + COL_MMT_MONTH + " || '-01', '+1 month'))" +
+                " AND NOT EXISTS(SELECT 1 FROM " + TABLE_EXPENSES +
+                " WHERE " + COL_EXPENSE_DATE + " >= a." + COL_MMT_MONTH + " || '-01'" +
+                " AND " + COL_EXPENSE_DATE + " < date(a." + COL_MMT_MONTH + " || '-01', '+1 month'))" +
+                " GROUP BY a." + COL_MMT_MONTH);
+    }
+
+    /**
+     * Closes every month before firstOpenMonth (yyyy-MM), oldest first.
+     * A month is closed by copying its member_month_totals rows and per-category
+     * expense totals into the archive. Its raw meals_daily and expenses rows stay
+     * (see compactMonthsBefore), so a remote edit that arrives after the close is
+     * still applied and the month's archive is rebuilt from them. Stops at the
+     * first month that still has unsynced local rows, so closed months always
+     * form a prefix of history.
+     *
+     * @return number of months closed
+     */
+    public int closeMonthsBefore(String firstOpenMonth) {
+        if (firstOpenMonth == null) return 0;
+        String openFrom = monthRange(firstOpenMonth)[0];
+
+        SQLiteDatabase db = getWritableDatabase();
+        Set<String> closed = liveArchivedMonths(db);
+        List<String> months = new ArrayList<>();
+        Cursor c = db.rawQuery(
+                "SELECT substr(" + COL_MEAL_DATE + ", 1, 7) m FROM " + TABLE_MEALS_DAILY +
+                        " WHERE " + COL_MEAL_DATE + " < ?" +
+                        " UNION SELECT substr(" + COL_EXPENSE_DATE + ", 1, 7) FROM " + TABLE_EXPENSES +
+                        " WHERE " + COL_EXPENSE_DATE + " < ?" +
+                        " ORDER BY m",
+                new String[]{openFrom, openFrom});
+        while (c.moveToNext()) months.add(c.getString(0));
+        c.close();
+
+        int count = 0;
+        for (String month : months) {
+            if (closed.contains(month)) continue; // kept current by the remote upserts
+            if (!closeMonth(db, month)) break;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Drops the raw rows of closed months before firstKeptMonth (yyyy-MM), oldest
+     * first. Only the archive is left, so remote docs dated in a compacted month
+     * are ignored from then on; callers keep COMPACT_AFTER_MONTHS of closed months
+     * raw so other devices' late uploads still count.
+     *
+     * @return number of months compacted
+     */
+    public int compactMonthsBefore(String firstKeptMonth) {
+        if (firstKeptMonth == null) return 0;
+
+        SQLiteDatabase db = getWritableDatabase();
+        int count = 0;
+        for (String month : liveArchivedMonths(db)) {
+            if (month.compareTo(firstKeptMonth) >= 0) break;
+            if (!compactMonth(db, month)) break;
+            count++;
+        }
+        return count;
+    }
+
+    private boolean closeMonth(SQLiteDatabase db, String monthPrefix) {
+        String[] range = monthRange(monthPrefix);
+
+        db.beginTransaction();
+        try {
+            if (hasUnsyncedRows(db, range)) return false; // not final yet: local edits still waiting to sync
+
+            writeArchive(db, monthPrefix, String.valueOf(System.currentTimeMillis()));
+            db.setTransactionSuccessful();
+            return true;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private boolean compactMonth(SQLiteDatabase db, String monthPrefix) {
+        String[] range = monthRange(monthPrefix);
+
+        db.beginTransaction();
+        try {
+            if (hasUnsyncedRows(db, range)) return false;
+
+            db.delete(TABLE_MEALS_DAILY, COL_MEAL_DATE + " >= ? AND " + COL_MEAL_DATE + " < ?", range);
+            db.delete(TABLE_EXPENSES, COL_EXPENSE_DATE + " >= ? AND " + COL_EXPENSE_DATE + " < ?", range);
+            db.delete(TABLE_MEMBER_MONTH_TOTALS, COL_MMT_MONTH + "=?", new String[]{monthPrefix});
+
+            ContentValues cv = new ContentValues();
+            cv.put(COL_MMT_MONTH, monthPrefix);
+            cv.put(COL_COMPACTED_AT, System.currentTimeMillis());
+            db.insertWithOnConflict(TABLE_COMPACTED_MONTHS, null, cv, SQLiteDatabase.CONFLICT_IGNORE);
+
+            db.setTransactionSuccessful();
+            return true;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static boolean hasUnsyncedRows(SQLiteDatabase db, String[] range) {
+        Cursor c = db.rawQuery(
+                "SELECT EXISTS(SELECT 1 FROM " + TABLE_MEALS_DAILY +
+                        " WHERE " + COL_MEAL_SYNC_STATE + "=0 AND " + COL_MEAL_DATE + " >= ? AND " + COL_MEAL_DATE + " < ?)" +
+                        " OR EXISTS(SELECT 1 FROM " + TABLE_EXPENSES +
+                        " WHERE " + COL_EXPENSE_SYNC_STATE + "=0 AND " + COL_EXPENSE_DATE + " >= ? AND " + COL_EXPENSE_DATE + " < ?)",
+                new String[]{range[0], range[1], range[0], range[1]});
+        boolean pending = c.moveToFirst() && c.getInt(0) == 1;
+        c.close();
+        return pending;
+    }
+
+    // derives a closed month's statement again from its raw rows; closed_at stays the original one
+    private void rebuildArchive(SQLiteDatabase db, String monthPrefix) {
+        String[] month = {monthPrefix};
+        Cursor c = db.rawQuery(
+                "SELECT MIN(" + COL_ARCH_CLOSED_AT + ") FROM (" +
+                        "SELECT " + COL_ARCH_CLOSED_AT + " FROM " + TABLE_ARCHIVED_MONTHS + " WHERE " + COL_MMT_MONTH + "=?" +
+                        " UNION ALL SELECT " + COL_ARCH_CLOSED_AT + " FROM " + TABLE_ARCHIVED_CATEGORIES + " WHERE " + COL_MMT_MONTH + "=?)",
+                new String[]{monthPrefix, monthPrefix});
+        String closedAt = c.moveToFirst() && !c.isNull(0) ? c.getString(0) : null;
+        c.close();
+
+        db.delete(TABLE_ARCHIVED_MONTHS, COL_MMT_MONTH + "=?", month);
+        db.delete(TABLE_ARCHIVED_CATEGORIES, COL_MMT_MONTH + "=?", month);
+        writeArchive(db, monthPrefix, closedAt != null ? closedAt : String.valueOf(System.currentTimeMillis()));
+    }
+
+    private static void writeArchive(SQLiteDatabase db, String monthPrefix, String closedAt) {
+        String[] range = monthRange(monthPrefix);
+
+        // the rollup already holds this month's per-member statement
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_ARCHIVED_MONTHS + " (" +
+                        COL_MMT_MONTH + ", " + COL_MMT_MEMBER_ID + ", " +
+                        COL_MMT_BREAKFAST + ", " + COL_MMT_LUNCH + ", " + COL_MMT_DINNER + ", " +
+                        COL_MMT_MEAL_COST + ", " + COL_MMT_OTHER + ", " + COL_MMT_PAID + ", " + COL_ARCH_CLOSED_AT + ")" +
+                        " SELECT " + COL_MMT_MONTH + ", " + COL_MMT_MEMBER_ID + ", " +
+                        COL_MMT_BREAKFAST + ", " + COL_MMT_LUNCH + ", " + COL_MMT_DINNER + ", " +
+                        COL_MMT_MEAL_COST + ", " + COL_MMT_OTHER + ", " + COL_MMT_PAID + ", ?" +
+                        " FROM " + TABLE_MEMBER_MONTH_TOTALS +
+                        " WHERE " + COL_MMT_MONTH + "=? AND (" +
+                        COL_MMT_BREAKFAST + " <> 0 OR " + COL_MMT_LUNCH + " <> 0 OR " + COL_MMT_DINNER + " <> 0 OR " +
+                        COL_MMT_MEAL_COST + " <> 0 OR " + COL_MMT_OTHER + " <> 0 OR " + COL_MMT_PAID + " <> 0)",
+                new Object[]{closedAt, monthPrefix});
+
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_ARCHIVED_CATEGORIES + " (" +
+                        COL_MMT_MONTH + ", " + COL_ARCH_CATEGORY + ", " + COL_ARCH_TOTAL + ", " +
+                        COL_ARCH_ENTRIES + ", " + COL_ARCH_CLOSED_AT + ")" +
+                        " SELECT ?, IFNULL(" + COL_EXPENSE_CATEGORY + ", ''), SUM(" + COL_EXPENSE_AMOUNT + "), COUNT(*), ?" +
+                        " FROM " + TABLE_EXPENSES +
+                        " WHERE " + COL_EXPENSE_DATE + " >= ? AND " + COL_EXPENSE_DATE + " < ?" +
+                        " GROUP BY IFNULL(" + COL_EXPENSE_CATEGORY + ", '')",
+                new Object[]{monthPrefix, closedAt, range[0], range[1]});
+    }
+
+    // -------------------------------------------------------------------------
+    // DB MAINTENANCE (DbMaintenanceWorker: idle + charging)
+    // -------------------------------------------------------------------------
+
+    private static final int MAINTENANCE_LOG_KEEP = 60;
+
+    private void createMaintenanceLog(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_MAINTENANCE_LOG + " (" +
+                COL_MAINT_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                COL_MAINT_RUN_AT + " INTEGER NOT NULL, " +
+                COL_MAINT_DB_BYTES + " INTEGER, " +
+                COL_MAINT_WAL_BYTES + " INTEGER, " +
+                COL_MAINT_PAGE_COUNT + " INTEGER, " +
+                COL_MAINT_FREELIST + " INTEGER, " +
+                COL_MAINT_DB_BYTES_AFTER + " INTEGER, " +
+                COL_MAINT_ANALYZE_MS + " INTEGER, " +
+                COL_MAINT_VACUUM_MS + " INTEGER, " +
+                COL_MAINT_INTEGRITY_MS + " INTEGER, " +
+                COL_MAINT_VACUUM_MODE + " TEXT, " +
+                COL_MAINT_INTEGRITY + " TEXT, " +
+                COL_MAINT_ERROR + " TEXT)");
+    }
+
+    /**
+     * Refreshes planner statistics, reclaims free pages, runs quick_check and
+     * logs sizes + per-step durations to db_maintenance_log. Worker thread only.
+     * The first run on a file created before v13 does one full VACUUM to switch
+     * it to auto_vacuum=INCREMENTAL; later runs only free pages incrementally.
+     */
+    public MaintenanceRun runMaintenance() {
+        SQLiteDatabase db = getWritableDatabase();
+        File file = new File(db.getPath());
+        File wal = new File(db.getPath() + "-wal");
+
+        MaintenanceRun run = new MaintenanceRun();
+        run.runAt = System.currentTimeMillis();
+        run.dbBytes = file.length();
+        run.walBytes = wal.length();
+        run.pageCount = pragmaLong(db, "PRAGMA page_count");
+        run.freelistPages = pragmaLong(db, "PRAGMA freelist_count");
+
+        long t0 = SystemClock.elapsedRealtime();
+        try {
+            db.execSQL("ANALYZE");
+            runPragma(db, "PRAGMA optimize"); // SQLite 3.18+; ignored on older versions
+        } catch (SQLiteException e) {
+            if (run.error == null) run.error = "analyze: " + e.getMessage();
+        }
+        run.analyzeMs = SystemClock.elapsedRealtime() - t0;
+
+        t0 = SystemClock.elapsedRealtime();
+        try {
+            if (pragmaLong(db, "PRAGMA auto_vacuum") != 2) {
+                runPragma(db, "PRAGMA auto_vacuum = INCREMENTAL");
+                db.execSQL("VACUUM");
+                run.vacuumMode = "full";
+            } else {
+                runPragma(db, "PRAGMA incremental_vacuum");
+                run.vacuumMode = "incremental";
+            }
+            runPragma(db, "PRAGMA wal_checkpoint(TRUNCATE)");
+        } catch (SQLiteException e) {
+            if (run.error == null) run.error = "vacuum: " + e.getMessage();
+        }
+        run.vacuumMs = SystemClock.elapsedRealtime() - t0;
+
+        t0 = SystemClock.elapsedRealtime();
+        try {
+            Cursor c = db.rawQuery("PRAGMA quick_check", null);
+            run.integrity = c.moveToFirst() ? c.getString(0) : "no result";
+            c.close();
+        } catch (SQLiteException e) {
+            run.integrity = "failed";
+            if (run.error == null) run.error = "quick_check: " + e.getMessage();
+        }
+        run.integrityMs = SystemClock.elapsedRealtime() - t0;
+
+        run.dbBytesAfter = file.length();
+
+        ContentValues cv = new ContentValues();
+        cv.put(COL_MAINT_RUN_AT, run.runAt);
+        cv.put(COL_MAINT_DB_BYTES, run.dbBytes);
+        cv.put(COL_MAINT_WAL_BYTES, run.walBytes);
+        cv.put(COL_MAINT_PAGE_COUNT, run.pageCount);
+        cv.put(COL_MAINT_FREELIST, run.freelistPages);
+        cv.put(COL_MAINT_DB_BYTES_AFTER, run.dbBytesAfter);
+        cv.put(COL_MAINT_ANALYZE_MS, run.analyzeMs);
+        cv.put(COL_MAINT_VACUUM_MS, run.vacuumMs);
+        cv.put(COL_MAINT_INTEGRITY_MS, run.integrityMs);
+        cv.put(COL_MAINT_VACUUM_MODE, run.vacuumMode);
+        cv.put(COL_MAINT_INTEGRITY, run.integrity);
+        cv.put(COL_MAINT_ERROR, run.error);
+        db.insert(TABLE_MAINTENANCE_LOG, null, cv);
+
+        db.execSQL("DELETE FROM " + TABLE_MAINTENANCE_LOG + " WHERE " + COL_MAINT_ID + " NOT IN (" +
+                "SELECT " + COL_MAINT_ID + " FROM " + TABLE_MAINTENANCE_LOG +
+                " ORDER BY " + COL_MAINT_ID + " DESC LIMIT " + MAINTENANCE_LOG_KEEP + ")");
+        return run;
+    }
+
+    /** Newest first. */
+    public List<MaintenanceRun> getMaintenanceRuns(int limit) {
+        List<MaintenanceRun> runs = new ArrayList<>();
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery(
+                "SELECT " + COL_MAINT_RUN_AT + ", " + COL_MAINT_DB_BYTES + ", " + COL_MAINT_WAL_BYTES + ", " +
+                        COL_MAINT_PAGE_COUNT + ", " + COL_MAINT_FREELIST + ", " + COL_MAINT_DB_BYTES_AFTER + ", " +
+                        COL_MAINT_ANALYZE_MS + ", " + COL_MAINT_VACUUM_MS + ", " + COL_MAINT_INTEGRITY_MS + ", " +
+                        COL_MAINT_VACUUM_MODE + ", " + COL_MAINT_INTEGRITY + ", " + COL_MAINT_ERROR +
+                        " FROM " + TABLE_MAINTENANCE_LOG +
+                        " ORDER BY " + COL_MAINT_ID + " DESC LIMIT ?",
+                new String[]{String.valueOf(limit)}
+        );
+        while (c.moveToNext()) {
+            MaintenanceRun run = new MaintenanceRun();
+            run.runAt = c.getLong(0);
+            run.dbBytes = c.getLong(1);
+            run.walBytes = c.getLong(2);
+            run.pageCount = c.getLong(3);
+            run.freelistPages = c.getLong(4);
+            run.dbBytesAfter = c.getLong(5);
+            run.analyzeMs = c.getLong(6);
+            run.vacuumMs = c.getLong(7);
+            run.integrityMs = c.getLong(8);
+            run.vacuumMode = c.getString(9);
+            run.integrity = c.getString(10);
+            run.error = c.getString(11);
+            runs.add(run);
+        }
+        c.close();
+        return runs;
+    }
+
+    private static long pragmaLong(SQLiteDatabase db, String pragma) {
+        return DatabaseUtils.longForQuery(db, pragma, null);
+    }
 
     // -------------------------------------------------------------------------
     // USER APPROVAL HELPERS (local pending)
@@ -1269,6 +2888,7 @@ public class MessDBHelper extends SQLiteOpenHelper {
         cvUser.put(COL_USER_STATUS, "active");
 
         int updated = db.update(TABLE_USERS, cvUser, COL_USER_ID + "=?", new String[]{userId});
+        userDirectory.invalidate(username);
         if (updated <= 0) return false;
 
         addOrUpdateMember(username, "member", contact, address, parentContact);
@@ -1279,6 +2899,7 @@ public class MessDBHelper extends SQLiteOpenHelper {
         if (userId == null || userId.isEmpty()) return false;
         SQLiteDatabase db = getWritableDatabase();
         int rows = db.delete(TABLE_USERS, COL_USER_ID + "=?", new String[]{userId});
+        userDirectory.invalidateAll(); // keyed by username, not id
         return rows > 0;
     }
 
@@ -1291,41 +2912,104 @@ public class MessDBHelper extends SQLiteOpenHelper {
                                         String title,
                                         String category,
                                         String paidBy,
-                                        double amount) {
-
-        if (remoteId == null || remoteId.trim().isEmpty()) return;
-        if (date == null || paidBy == null) return;
-
-        SQLiteDatabase db = this.getWritableDatabase();
-
-        String safeTitle = (title == null) ? "" : title;
-        String safeCategory = (category == null) ? "" : category;
-
-        ContentValues cv = new ContentValues();
-        cv.put(COL_EXPENSE_REMOTE_ID, remoteId);
-        cv.put(COL_EXPENSE_SYNC_STATE, 1);
-        cv.put(COL_EXPENSE_DATE, date);
-        cv.put(COL_EXPENSE_TITLE, safeTitle);
-        cv.put(COL_EXPENSE_CATEGORY, safeCategory);
-        cv.put(COL_EXPENSE_PAIDBY, paidBy);
-        cv.put(COL_EXPENSE_AMOUNT, amount);
+                                        long amountPaisa) {
+        upsertExpensesFromRemote(Collections.singletonList(
+                new RemoteExpense(remoteId, date, title, category, paidBy, amountPaisa)));
+    }
 
-        Cursor c = db.query(
-                TABLE_EXPENSES,
-                new String[]{COL_EXPENSE_ID},
-                COL_EXPENSE_REMOTE_ID + "=?",
-                new String[]{remoteId},
-                null, null, null
-        );
+    public void upsertExpensesFromRemote(List<RemoteExpense> expenses) {
+        replaceSyncedExpensesForMonth(null, expenses);
+    }
 
+    private static final String REMOTE_EXPENSE_UPDATE_SQL =
+            "UPDATE " + TABLE_EXPENSES + " SET " +
+                    COL_EXPENSE_DATE + "=?, " + COL_EXPENSE_TITLE + "=?, " + COL_EXPENSE_CATEGORY + "=?, " +
+                    COL_EXPENSE_PAIDBY_ID + "=?, " + COL_EXPENSE_AMOUNT + "=?, " + COL_EXPENSE_SYNC_STATE + "=1" +
+                    " WHERE " + COL_EXPENSE_REMOTE_ID + "=? AND (" +
+                    COL_EXPENSE_DATE + " IS NOT ?1 OR " + COL_EXPENSE_TITLE + " IS NOT ?2 OR " +
+                    COL_EXPENSE_CATEGORY + " IS NOT ?3 OR " + COL_EXPENSE_PAIDBY_ID + " IS NOT ?4 OR " +
+                    COL_EXPENSE_AMOUNT + " IS NOT ?5 OR " + COL_EXPENSE_SYNC_STATE + " IS NOT 1)";
+
+    /**
+     * Same as clearSyncedExpensesForMonth + upsertExpensesFromRemote, in one transaction.
+     * Pass a null monthPrefix to only upsert. Closed months touched here (an
+     * expense added, changed, or moved in or out) get their archive rebuilt.
+     */
+    public void replaceSyncedExpensesForMonth(String monthPrefix, List<RemoteExpense> expenses) {
+        SQLiteDatabase db = getWritableDatabase();
+        String openFrom = firstUncompactedDate(db);
+        List<String> emails = new ArrayList<>();
+        if (expenses != null) for (RemoteExpense e : expenses) if (e != null) emails.add(e.paidBy);
+        Map<String, Long> memberKeys = internMembers(db, emails);
+        Set<String> closed = liveArchivedMonths(db);
+        Set<String> rebuild = new TreeSet<>();
+
+        db.beginTransaction();
+        SQLiteStatement update = db.compileStatement(REMOTE_EXPENSE_UPDATE_SQL);
+        // only needed to notice an expense moving out of a closed month
+        SQLiteStatement priorDate = closed.isEmpty() ? null : db.compileStatement(
+                "SELECT " + COL_EXPENSE_DATE + " FROM " + TABLE_EXPENSES + " WHERE " + COL_EXPENSE_REMOTE_ID + "=?");
+        // relies on the unique remote_id index (v9)
+        SQLiteStatement insert = db.compileStatement(
+                "INSERT OR IGNORE INTO " + TABLE_EXPENSES + " (" +
+                        COL_EXPENSE_REMOTE_ID + ", " + COL_EXPENSE_SYNC_STATE + ", " + COL_EXPENSE_DATE + ", " +
+                        COL_EXPENSE_TITLE + ", " + COL_EXPENSE_CATEGORY + ", " +
+                        COL_EXPENSE_PAIDBY_ID + ", " + COL_EXPENSE_AMOUNT + ")" +
+                        " VALUES (?, 1, ?, ?, ?, ?, ?)");
         try {
-            if (c != null && c.moveToFirst()) {
-                db.update(TABLE_EXPENSES, cv, COL_EXPENSE_REMOTE_ID + "=?", new String[]{remoteId});
-            } else {
-                db.insert(TABLE_EXPENSES, null, cv);
+            if (monthPrefix != null) {
+                clearSyncedExpensesForMonth(monthPrefix);
+                if (closed.contains(monthPrefix)) rebuild.add(monthPrefix);
+            }
+
+            if (expenses != null) {
+                for (RemoteExpense e : expenses) {
+                    if (e == null || e.remoteId == null || e.remoteId.trim().isEmpty()) continue;
+                    if (e.date == null || e.paidBy == null) continue;
+                    if (openFrom != null && e.date.compareTo(openFrom) < 0) continue; // month already compacted
+
+                    String before = priorDate != null ? dateOf(priorDate, e.remoteId) : null;
+                    String safeTitle = (e.title == null) ? "" : e.title;
+                    String safeCategory = (e.category == null) ? "" : e.category;
+                    long payer = memberKeys.get(e.paidBy);
+
+                    update.bindString(1, e.date);
+                    update.bindString(2, safeTitle);
+                    update.bindString(3, safeCategory);
+                    update.bindLong(4, payer);
+                    update.bindLong(5, e.amountPaisa);
+                    update.bindString(6, e.remoteId);
+                    boolean changed = update.executeUpdateDelete() > 0;
+
+                    insert.bindString(1, e.remoteId);
+                    insert.bindString(2, e.date);
+                    insert.bindString(3, safeTitle);
+                    insert.bindString(4, safeCategory);
+                    insert.bindLong(5, payer);
+                    insert.bindLong(6, e.amountPaisa);
+                    changed |= insert.executeInsert() != -1;
+
+                    if (!changed) continue;
+                    if (closed.contains(monthOf(e.date))) rebuild.add(monthOf(e.date));
+                    if (before != null && closed.contains(monthOf(before))) rebuild.add(monthOf(before));
+                }
             }
+            for (String month : rebuild) rebuildArchive(db, month);
+            db.setTransactionSuccessful();
         } finally {
-            if (c != null) c.close();
+            update.close();
+            insert.close();
+            if (priorDate != null) priorDate.close();
+            db.endTransaction();
+        }
+    }
+
+    private static String dateOf(SQLiteStatement priorDate, String remoteId) {
+        priorDate.bindString(1, remoteId);
+        try {
+            return priorDate.simpleQueryForString();
+        } catch (SQLiteDoneException notYetStored) {
+            return null;
         }
     }
 
@@ -1340,32 +3024,22 @@ public class MessDBHelper extends SQLiteOpenHelper {
         if (memberName == null || monthPrefix == null) return new double[]{0.0, 0.0};
 
         SQLiteDatabase db = this.getReadableDatabase();
-        String likePattern = monthPrefix + "%";
 
-        Cursor c1 = db.rawQuery(
-                "SELECT SUM(" + COL_EXPENSE_AMOUNT + ") FROM " + TABLE_EXPENSES +
-                        " WHERE " + COL_EXPENSE_PAIDBY + "=? AND " +
-                        COL_EXPENSE_DATE + " LIKE ? AND " +
-                        COL_EXPENSE_CATEGORY + " <> ?",
-                new String[]{memberName, likePattern, CATEGORY_PAYMENT}
-        );
-        try {
-            if (c1 != null && c1.moveToFirst()) otherExp = c1.isNull(0) ? 0.0 : c1.getDouble(0);
-        } finally {
-            if (c1 != null) c1.close();
-        }
-
-        Cursor c2 = db.rawQuery(
-                "SELECT SUM(" + COL_EXPENSE_AMOUNT + ") FROM " + TABLE_EXPENSES +
-                        " WHERE " + COL_EXPENSE_PAIDBY + "=? AND " +
-                        COL_EXPENSE_DATE + " LIKE ? AND " +
-                        COL_EXPENSE_CATEGORY + "=?",
-                new String[]{memberName, likePattern, CATEGORY_PAYMENT}
+        Cursor c = db.rawQuery(
+                "SELECT SUM(CASE WHEN " + COL_EXPENSE_CATEGORY + " <> ? THEN " + COL_EXPENSE_AMOUNT + " ELSE 0 END), " +
+                        "SUM(CASE WHEN " + COL_EXPENSE_CATEGORY + " = ? THEN " + COL_EXPENSE_AMOUNT + " ELSE 0 END)" +
+                        " FROM " + TABLE_EXPENSES +
+                        " WHERE " + COL_EXPENSE_PAIDBY_ID + "=? AND " +
+                        COL_EXPENSE_DATE + " >= ? AND " + COL_EXPENSE_DATE + " < ?",
+                monthRangeArgs(monthPrefix, CATEGORY_PAYMENT, CATEGORY_PAYMENT, memberArg(memberName))
         );
         try {
-            if (c2 != null && c2.moveToFirst()) paid = c2.isNull(0) ? 0.0 : c2.getDouble(0);
+            if (c != null && c.moveToFirst()) {
+                otherExp = c.isNull(0) ? 0.0 : Money.taka(c.getLong(0));
+                paid = c.isNull(1) ? 0.0 : Money.taka(c.getLong(1));
+            }
         } finally {
-            if (c2 != null) c2.close();
+            if (c != null) c.close();
         }
 
         return new double[]{otherExp, paid};
@@ -1375,17 +3049,16 @@ public class MessDBHelper extends SQLiteOpenHelper {
         if (monthPrefix == null) return 0.0;
 
         SQLiteDatabase db = this.getReadableDatabase();
-        String likePattern = monthPrefix + "%";
         double total = 0.0;
 
         Cursor c = db.rawQuery(
                 "SELECT SUM(" + COL_EXPENSE_AMOUNT + ") FROM " + TABLE_EXPENSES +
-                        " WHERE " + COL_EXPENSE_DATE + " LIKE ? AND " +
-                        COL_EXPENSE_CATEGORY + " <> ?",
-                new String[]{likePattern, CATEGORY_PAYMENT}
+                        " WHERE " + COL_EXPENSE_CATEGORY + " <> ? AND " +
+                        COL_EXPENSE_DATE + " >= ? AND " + COL_EXPENSE_DATE + " < ?",
+                monthRangeArgs(monthPrefix, CATEGORY_PAYMENT)
         );
         try {
-            if (c != null && c.moveToFirst()) total = c.isNull(0) ? 0.0 : c.getDouble(0);
+            if (c != null && c.moveToFirst()) total = c.isNull(0) ? 0.0 : Money.taka(c.getLong(0));
         } finally {
             if (c != null) c.close();
         }
@@ -1395,99 +3068,43 @@ public class MessDBHelper extends SQLiteOpenHelper {
     public String getDisplayNameByUsername(String username) {
         if (username == null) return "Unknown";
 
-        SQLiteDatabase db = getReadableDatabase();
-        Cursor c = db.rawQuery(
-                "SELECT " + COL_USER_FULL_NAME +
-                        " FROM " + TABLE_USERS +
-                        " WHERE " + COL_USER_USERNAME + "=? LIMIT 1",
-                new String[]{username}
-        );
-
-        String name = username;
-        if (c != null) {
-            if (c.moveToFirst() && !c.isNull(0)) {
-                name = c.getString(0);
-            }
-            c.close();
-        }
-        return name;
+        User u = userDirectory.get(username);
+        return (u != null && u.getFullName() != null) ? u.getFullName() : username;
     }
 
     // ===================== USER PROFILE GETTERS (for MemberDetails) =====================
+    // all served from userDirectory (one users query per profile, then cached)
 
-    public String getFullNameByUsername(String username) {
-        if (username == null || username.trim().isEmpty()) return null;
+    public UserDirectory getUserDirectory() {
+        return userDirectory;
+    }
 
-        SQLiteDatabase db = getReadableDatabase();
-        Cursor c = db.rawQuery(
-                "SELECT " + COL_USER_FULL_NAME +
-                        " FROM " + TABLE_USERS +
-                        " WHERE " + COL_USER_USERNAME + "=? LIMIT 1",
-                new String[]{username}
-        );
+    /** Warms the directory for a list of usernames with a single query (e.g. before building a picker). */
+    public void preloadUserProfiles(Collection<String> usernames) {
+        userDirectory.preload(usernames);
+    }
 
-        String val = null;
-        if (c != null) {
-            if (c.moveToFirst() && !c.isNull(0)) val = c.getString(0);
-            c.close();
-        }
-        return val;
+    public String getFullNameByUsername(String username) {
+        if (username == null || username.trim().isEmpty()) return null;
+        User u = userDirectory.get(username);
+        return u != null ? u.getFullName() : null;
     }
 
     public String getContactByUsername(String username) {
         if (username == null || username.trim().isEmpty()) return null;
-
-        SQLiteDatabase db = getReadableDatabase();
-        Cursor c = db.rawQuery(
-                "SELECT " + COL_USER_CONTACT +
-                        " FROM " + TABLE_USERS +
-                        " WHERE " + COL_USER_USERNAME + "=? LIMIT 1",
-                new String[]{username}
-        );
-
-        String val = null;
-        if (c != null) {
-            if (c.moveToFirst() && !c.isNull(0)) val = c.getString(0);
-            c.close();
-        }
-        return val;
+        User u = userDirectory.get(username);
+        return u != null ? u.getContact() : null;
     }
 
     public String getParentContactByUsername(String username) {
         if (username == null || username.trim().isEmpty()) return null;
-
-        SQLiteDatabase db = getReadableDatabase();
-        Cursor c = db.rawQuery(
-                "SELECT " + COL_USER_PARENT_CONTACT +
-                        " FROM " + TABLE_USERS +
-                        " WHERE " + COL_USER_USERNAME + "=? LIMIT 1",
-                new String[]{username}
-        );
-
-        String val = null;
-        if (c != null) {
-            if (c.moveToFirst() && !c.isNull(0)) val = c.getString(0);
-            c.close();
-        }
-        return val;
+        User u = userDirectory.get(username);
+        return u != null ? u.getParentContact() : null;
     }
 
     public String getAddressByUsername(String username) {
         if (username == null || username.trim().isEmpty()) return null;
-
-        SQLiteDatabase db = getReadableDatabase();
-        Cursor c = db.rawQuery(
-                "SELECT " + COL_USER_ADDRESS +
-                        " FROM " + TABLE_USERS +
-                        " WHERE " + COL_USER_USERNAME + "=? LIMIT 1",
-                new String[]{username}
-        );
-
-        String val = null;
-        if (c != null) {
-            if (c.moveToFirst() && !c.isNull(0)) val = c.getString(0);
-            c.close();
-        }
-        return val;
+        User u = userDirectory.get(username);
+        return u != null ? u.getAddress() : null;
     }
 }
@@ -0,0 +1,145 @@
+package com.example.messmanagement;
+
+import android.app.Activity;
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs MessDBHelper work off the main thread.
+ * - one writer thread: writes are applied in the order they were submitted
+ * - a small reader pool: with WAL, reads run alongside the writer
+ * Results come back through deliver(...) on the main thread.
+ */
+public class MessRepository {
+
+    private static final String TAG = "MessRepository";
+    static final int READER_THREADS = 2;
+
+    private static volatile MessRepository instance;
+
+    private final MessDBHelper db;
+    private final ListeningExecutorService writer;
+    private final ListeningExecutorService readers;
+    private final Executor mainExecutor;
+
+    public interface DbCall<T> {
+        T run(MessDBHelper db) throws Exception;
+    }
+
+    public interface UiCallback<T> {
+        void onResult(T result);
+    }
+
+    public static MessRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (MessRepository.class) {
+                if (instance == null) {
+                    instance = new MessRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private MessRepository(Context appContext) {
+        db = MessDBHelper.getInstance(appContext);
+        writer = MoreExecutors.listeningDecorator(
+                Executors.newSingleThreadExecutor(namedThreads("mess-db-writer")));
+        readers = MoreExecutors.listeningDecorator(
+                Executors.newFixedThreadPool(READER_THREADS, namedThreads("mess-db-reader")));
+        mainExecutor = ContextCompat.getMainExecutor(appContext);
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + n.incrementAndGet());
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        };
+    }
+
+    // -------------------------------------------------------------------------
+    // generic entry points
+    // -------------------------------------------------------------------------
+
+    public <T> ListenableFuture<T> read(DbCall<T> call) {
+        return readers.submit(() -> call.run(db));
+    }
+
+    public <T> ListenableFuture<T> write(DbCall<T> call) {
+        return writer.submit(() -> call.run(db));
+    }
+
+    /** Posts the result to the main thread; dropped if the activity is gone. */
+    public <T> void deliver(Activity owner, ListenableFuture<T> future, UiCallback<T> callback) {
+        Futures.addCallback(future, new FutureCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                if (owner != null && (owner.isFinishing() || owner.isDestroyed())) return;
+                callback.onResult(result);
+            }
+
+            @Override
+            public void onFailure(@NonNull Throwable t) {
+                Log.e(TAG, "db task failed", t);
+            }
+        }, mainExecutor);
+    }
+
+    // -------------------------------------------------------------------------
+    // writes used by the screens / snapshot listeners
+    // -------------------------------------------------------------------------
+
+    /** Stored meals for that day after the tap, or null if the tap changed nothing. */
+    public ListenableFuture<int[]> setMealForDate(String member, String date, String meal, int value) {
+        return write(d -> d.setMealForDate(member, date, meal, value)
+                ? d.getMealsForDate(member, date)
+                : null);
+    }
+
+    public ListenableFuture<Void> upsertMealsFromRemote(List<RemoteMeal> meals) {
+        return write(d -> {
+            d.upsertMealsFromRemote(meals);
+            return null;
+        });
+    }
+
+    public ListenableFuture<Void> upsertExpensesFromRemote(List<RemoteExpense> expenses) {
+        return write(d -> {
+            d.upsertExpensesFromRemote(expenses);
+            return null;
+        });
+    }
+
+    public ListenableFuture<Boolean> insertMealPriceHistory(long breakfast, long lunch, long dinner, String date) {
+        return write(d -> d.insertMealPriceHistory(breakfast, lunch, dinner, date));
+    }
+
+    // -------------------------------------------------------------------------
+    // reads
+    // -------------------------------------------------------------------------
+
+    public ListenableFuture<List<Summary>> computeMonthlyLedger(String monthPrefix) {
+        return read(d -> d.computeMonthlyLedger(monthPrefix));
+    }
+
+    public ListenableFuture<Summary> computeMemberLedger(String member, String monthPrefix) {
+        return read(d -> d.computeMemberLedger(member, monthPrefix));
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.messmanagement;
+
+// one outbox row: a local change waiting to be written to Firestore
+public class OutboxItem {
+    public long id;
+    public String entity;       // MessDBHelper.OUTBOX_MEAL / OUTBOX_EXPENSE
+    public String key;          // Firestore doc id
+    public String payload;      // JSON snapshot of the local row
+    public int attempts;
+    public long nextAttemptAt;  // epoch millis
+    public String lastError;
+    public int state;           // MessDBHelper.OUTBOX_PENDING / OUTBOX_DEAD
+    public long createdAt;      // epoch millis
+    public int coalesced;       // earlier writes to the same doc this one replaced
+}
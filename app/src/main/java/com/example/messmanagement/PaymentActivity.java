@@ -28,8 +28,8 @@ public class PaymentActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_payment);
 
-        messDb = new MessDBHelper(this);
-        kvDb = new KeyValueDB(this);
+        messDb = MessDBHelper.getInstance(this);
+        kvDb = KeyValueDB.getInstance(this);
 
         currentUserName = kvDb.getValueByKey("username");
         if (currentUserName == null) currentUserName = "Guest";
@@ -85,7 +85,7 @@ public class PaymentActivity extends AppCompatActivity {
         messDb.addExpensePending(
                 remoteId,
                 title,
-                amount,
+                Money.paisa(amount),
                 MessDBHelper.CATEGORY_PAYMENT,
                 currentUserName,
                 date
@@ -1,10 +0,0 @@
-package com.example.messmanagement;
-
-public class PendingExpense {
-    public String remoteId;
-    public String title;
-    public double amount;
-    public String category;
-    public String paidBy;
-    public String date;
-}
@@ -44,8 +44,8 @@ public class ProfileActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_profile);
 
-        kvDb = new KeyValueDB(this);
-        messDb = new MessDBHelper(this);
+        kvDb = KeyValueDB.getInstance(this);
+        messDb = MessDBHelper.getInstance(this);
 
         mAuth = FirebaseAuth.getInstance();
         fs = FirebaseFirestore.getInstance();
@@ -0,0 +1,335 @@
+package com.example.messmanagement;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+/**
+ * Incremental pull of meals_daily and expenses into SQLite.
+ * FirestoreSyncWorker stamps every doc with updatedAt (server time); the
+ * stamp*UpdatedAt functions in functions/index.js stamp docs written by app
+ * versions that don't, so those edits still get past the mark. For each
+ * collection KeyValueDB keeps the newest updatedAt already applied (the mark);
+ * attach(...) reads what is past the mark in pages, then listens for changes
+ * after it, so reads follow what changed instead of the whole history.
+ * Screens render from SQLite and are only told when something was applied.
+ * attachMonth(...) does the same for one month (optionally one member's meals)
+ * with server-side range queries on date, so a screen that shows a month
+ * never reads docs of other months; firestore.indexes.json declares the
+ * composite indexes these queries need.
+ */
+public class PullSync {
+
+    public static final String MEALS = "meals_daily";
+    public static final String EXPENSES = "expenses";
+    static final String FIELD_UPDATED_AT = "updatedAt";
+    static final String FIELD_DATE = "date";
+    static final String FIELD_MEMBER = "memberName";
+
+    private static final String TAG = "PullSync";
+    static final int PAGE_SIZE = 300;
+
+    // server time is taken at commit, so a slow write can land just under a mark
+    // we already passed; re-reading this much is cheap and the upserts are idempotent
+    static final long OVERLAP_SECONDS = 60;
+
+    // "<seconds>:<nanos>" per scope; missing = the scope's full read hasn't finished yet
+    static final String KEY_MARK_PREFIX = "pull_mark_";
+
+    private static volatile PullSync instance;
+
+    private final FirebaseFirestore fs;
+    private final MessRepository repo;
+    private final KeyValueDB kvDb;
+
+    // one thread: pulls of the same collection never overlap
+    private final ListeningExecutorService pager;
+
+    public static PullSync getInstance(Context context) {
+        if (instance == null) {
+            synchronized (PullSync.class) {
+                if (instance == null) {
+                    instance = new PullSync(context.getApplicationContext(), FirebaseFirestore.getInstance());
+                }
+            }
+        }
+        return instance;
+    }
+
+    // PullSyncEmulatorTest passes a Firestore pointed at the emulator
+    PullSync(Context appContext, FirebaseFirestore fs) {
+        this.fs = fs;
+        repo = MessRepository.getInstance(appContext);
+        kvDb = KeyValueDB.getInstance(appContext);
+        pager = MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "pull-sync");
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        }));
+    }
+
+    /**
+     * Catches collection up to the server, then keeps following it.
+     * onChanged runs on the main thread after docs were applied to SQLite.
+     * Remove the returned registration in onPause like any Firestore listener.
+     */
+    public ListenerRegistration attach(Activity owner, String collection, Runnable onChanged) {
+        return attach(owner, new Scope(collection, null, null), onChanged);
+    }
+
+    /** Like attach, but only docs dated in monthPrefix (yyyy-MM); memberName narrows meals to one member. */
+    public ListenerRegistration attachMonth(Activity owner, String collection, String monthPrefix,
+                                            String memberName, Runnable onChanged) {
+        return attach(owner, new Scope(collection, monthPrefix, memberName), onChanged);
+    }
+
+    private ListenerRegistration attach(Activity owner, Scope scope, Runnable onChanged) {
+        Attachment a = new Attachment();
+        ListenableFuture<Integer> caughtUp = pager.submit(() -> {
+            try {
+                return catchUp(scope, a);
+            } catch (Exception e) {
+                // offline or denied: the screen keeps showing SQLite, the listener may still work
+                Log.w(TAG, scope + " catch-up failed", e);
+                return 0;
+            }
+        });
+        repo.deliver(owner, caughtUp, applied -> {
+            if (a.removed) return;
+            if (applied > 0) onChanged.run();
+            a.live = listen(owner, scope, onChanged);
+        });
+        return a;
+    }
+
+    /** The catch-up attachMonth starts with, without the listener after it; completes with the docs read. */
+    ListenableFuture<Integer> catchUpMonth(String collection, String monthPrefix, String memberName) {
+        Scope scope = new Scope(collection, monthPrefix, memberName);
+        return pager.submit(() -> catchUp(scope, new Attachment()));
+    }
+
+    static String monthMarkKey(String collection, String monthPrefix, String memberName) {
+        return KEY_MARK_PREFIX + collection + "_" + monthPrefix + (memberName != null ? "_" + memberName : "");
+    }
+
+    /** What one attach follows: a whole collection, or one month of it (optionally one member's docs). */
+    private final class Scope {
+        final String collection, month, member;
+
+        Scope(String collection, String month, String member) {
+            this.collection = collection;
+            this.month = month;
+            this.member = member;
+        }
+
+        String markKey() {
+            return month != null ? monthMarkKey(collection, month, member) : KEY_MARK_PREFIX + collection;
+        }
+
+        // the docs of this scope, filtered on the server
+        Query docs() {
+            Query q = fs.collection(collection);
+            if (member != null) q = q.whereEqualTo(FIELD_MEMBER, member);
+            if (month != null) {
+                String[] range = MessDBHelper.monthRange(month);
+                q = q.whereGreaterThanOrEqualTo(FIELD_DATE, range[0]).whereLessThan(FIELD_DATE, range[1]);
+            }
+            return q;
+        }
+
+        // first run: also docs written before updatedAt existed
+        Query fullRead() {
+            return month != null ? docs().orderBy(FIELD_DATE) : docs().orderBy(FieldPath.documentId());
+        }
+
+        Query changedSince(Timestamp mark) {
+            return docs().whereGreaterThan(FIELD_UPDATED_AT, since(mark)).orderBy(FIELD_UPDATED_AT);
+        }
+
+        @Override
+        public String toString() {
+            return collection + (month != null ? " " + month : "") + (member != null ? " " + member : "");
+        }
+    }
+
+    private static final class Attachment implements ListenerRegistration {
+        volatile boolean removed;
+        ListenerRegistration live; // main thread only
+
+        @Override
+        public void remove() {
+            removed = true;
+            if (live != null) {
+                live.remove();
+                live = null;
+            }
+        }
+    }
+
+    // ===================== PAGED CATCH-UP =====================
+
+    private int catchUp(Scope scope, Attachment a) throws Exception {
+        Timestamp mark = readMark(scope);
+        Query base = mark == null ? scope.fullRead() : scope.changedSince(mark);
+
+        Timestamp newest = mark != null ? mark : new Timestamp(0, 0);
+        DocumentSnapshot last = null;
+        int read = 0, pages = 0;
+        long t0 = SystemClock.elapsedRealtime();
+
+        while (!a.removed) {
+            Query page = base.limit(PAGE_SIZE);
+            if (last != null) page = page.startAfter(last);
+
+            QuerySnapshot snap = Tasks.await(page.get(Source.SERVER));
+            List<DocumentSnapshot> docs = snap.getDocuments();
+            newest = apply(scope.collection, docs, newest);
+            read += docs.size();
+            pages++;
+
+            // a full read only becomes a mark once it is complete
+            if (mark != null) writeMark(scope, newest);
+            if (docs.size() < PAGE_SIZE) {
+                if (mark == null) writeMark(scope, newest);
+                break;
+            }
+            last = docs.get(docs.size() - 1);
+        }
+
+        Log.i(TAG, scope + (mark == null ? " full read: " : " since mark: ") + read + " docs in " +
+                pages + " pages, " + (SystemClock.elapsedRealtime() - t0) + " ms");
+        return read;
+    }
+
+    // ===================== LIVE TAIL =====================
+
+    private ListenerRegistration listen(Activity owner, Scope scope, Runnable onChanged) {
+        Timestamp mark = readMark(scope);
+        if (mark == null) return null; // full read didn't finish; the next attach retries it
+
+        return scope.changedSince(mark)
+                .addSnapshotListener((value, error) -> {
+                    if (error != null) {
+                        Log.w(TAG, scope + " listen failed", error);
+                        return;
+                    }
+                    if (value == null) return;
+
+                    // only the docs this snapshot added or changed are read
+                    List<DocumentSnapshot> changed = new ArrayList<>();
+                    for (DocumentChange dc : value.getDocumentChanges()) {
+                        if (dc.getType() != DocumentChange.Type.REMOVED) changed.add(dc.getDocument());
+                    }
+                    if (changed.isEmpty()) return;
+
+                    repo.deliver(owner, pager.submit(() -> {
+                        writeMark(scope, apply(scope.collection, changed, readMark(scope)));
+                        return null;
+                    }), v -> onChanged.run());
+                });
+    }
+
+    // ===================== APPLY =====================
+
+    // writes the docs on the db writer thread; returns the newest updatedAt seen
+    private Timestamp apply(String collection, List<DocumentSnapshot> docs, Timestamp newest) throws Exception {
+        List<RemoteMeal> meals = new ArrayList<>();
+        List<RemoteExpense> expenses = new ArrayList<>();
+
+        for (DocumentSnapshot doc : docs) {
+            if (doc.getMetadata().hasPendingWrites()) continue; // our own upload, no server time yet
+
+            Timestamp at = doc.getTimestamp(FIELD_UPDATED_AT);
+            if (at != null && (newest == null || at.compareTo(newest) > 0)) newest = at;
+
+            if (MEALS.equals(collection)) {
+                RemoteMeal m = toMeal(doc);
+                if (m != null) meals.add(m);
+            } else {
+                RemoteExpense e = toExpense(doc);
+                if (e != null) expenses.add(e);
+            }
+        }
+
+        if (!meals.isEmpty()) repo.upsertMealsFromRemote(meals).get();
+        if (!expenses.isEmpty()) repo.upsertExpensesFromRemote(expenses).get();
+        return newest;
+    }
+
+    private static RemoteMeal toMeal(DocumentSnapshot doc) {
+        String memberName = doc.getString("memberName");
+        String date = doc.getString("date");
+        if (memberName == null || date == null) return null;
+
+        Long bL = doc.getLong("breakfast");
+        Long lL = doc.getLong("lunch");
+        Long dL = doc.getLong("dinner");
+
+        int b = (bL == null) ? 0 : bL.intValue();
+        int l = (lL == null) ? 0 : lL.intValue();
+        int d = (dL == null) ? 0 : dL.intValue();
+
+        return new RemoteMeal(memberName, date, b, l, d);
+    }
+
+    private static RemoteExpense toExpense(DocumentSnapshot doc) {
+        String date = doc.getString("date");
+        String paidBy = doc.getString("paidBy");
+        if (date == null || paidBy == null) return null;
+
+        String title = doc.getString("title");
+        String category = doc.getString("category");
+
+        return new RemoteExpense(
+                doc.getId(),
+                date,
+                title != null ? title : "",
+                category != null ? category : "",
+                paidBy,
+                FirestoreMoney.get(doc, "amount")
+        );
+    }
+
+    // ===================== MARK =====================
+
+    private Timestamp readMark(Scope scope) {
+        String v = kvDb.getValueByKey(scope.markKey());
+        if (v == null) return null;
+        try {
+            int sep = v.indexOf(':');
+            return new Timestamp(Long.parseLong(v.substring(0, sep)), Integer.parseInt(v.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            return null; // unreadable: do the full read again
+        }
+    }
+
+    private void writeMark(Scope scope, Timestamp mark) {
+        if (mark == null) return;
+        Timestamp old = readMark(scope);
+        if (old != null && old.compareTo(mark) >= 0) return;
+        kvDb.insertOrUpdate(scope.markKey(), mark.getSeconds() + ":" + mark.getNanoseconds());
+    }
+
+    private static Timestamp since(Timestamp mark) {
+        return new Timestamp(Math.max(0, mark.getSeconds() - OVERLAP_SECONDS), mark.getNanoseconds());
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.messmanagement;
+
+import android.app.Activity;
+import android.app.Application;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Debug-only SQL accounting for MessDBHelper / KeyValueDB.
+ *
+ * Every cursor the helpers open goes through CURSOR_FACTORY, which (when enabled)
+ * counts the query, its rows and the time to run it + fill the first window,
+ * per screen (resumed activity, or a name set with setScreen) and per call site
+ * (the MessDBHelper / KeyValueDB / UserDirectory method that issued it).
+ * Writes through compiled statements / insert / update are not counted.
+ *
+ * Each screen's numbers are logged (tag "QueryStats") when it pauses;
+ * tests can call reset(), run a screen and then assertQueryBudget(...).
+ *
+ * setCapture(true) also records the distinct SQL text of those queries
+ * (used by QueryPlanCheck to EXPLAIN everything the helpers ran).
+ */
+public final class QueryStats {
+
+    private static final String TAG = "QueryStats";
+    private static final String PKG = "com.example.messmanagement.";
+
+    private static volatile boolean enabled = false;
+    private static volatile boolean capturing = false;
+    private static volatile String screen = "app";
+
+    private static final Map<String, Stat> byScreen = new ConcurrentHashMap<>();
+    private static final Map<String, Stat> bySite = new ConcurrentHashMap<>();
+    private static final Map<String, String> capturedSql = new ConcurrentHashMap<>(); // sql -> first call site
+
+    public static final class Stat {
+        public final AtomicLong queries = new AtomicLong();
+        public final AtomicLong rows = new AtomicLong();
+        public final AtomicLong nanos = new AtomicLong();
+
+        @Override
+        public String toString() {
+            return queries.get() + " queries, " + rows.get() + " rows, " + (nanos.get() / 1000) + " us";
+        }
+    }
+
+    private QueryStats() { }
+
+    /** Passed to the SQLiteOpenHelper constructors; a plain SQLiteCursor while disabled. */
+    public static final SQLiteDatabase.CursorFactory CURSOR_FACTORY = (db, driver, editTable, query) -> {
+        if (capturing) capture(query);
+        return enabled
+                ? new CountingCursor(driver, editTable, query, screen, callSite())
+                : new SQLiteCursor(driver, editTable, query);
+    };
+
+    /** Debug builds: turn counting on and follow the resumed activity. */
+    public static void install(Application app) {
+        enabled = true;
+        app.registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityResumed(Activity activity) {
+                screen = activity.getClass().getSimpleName();
+            }
+
+            @Override
+            public void onActivityPaused(Activity activity) {
+                logScreen(activity.getClass().getSimpleName());
+            }
+
+            @Override public void onActivityCreated(Activity activity, Bundle savedInstanceState) { }
+            @Override public void onActivityStarted(Activity activity) { }
+            @Override public void onActivityStopped(Activity activity) { }
+            @Override public void onActivitySaveInstanceState(Activity activity, Bundle outState) { }
+            @Override public void onActivityDestroyed(Activity activity) { }
+        });
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /** Attribute following queries to this name (e.g. "monthly_summary" in a test). */
+    public static void setScreen(String name) {
+        screen = name != null ? name : "app";
+    }
+
+    /** Turning capture on starts from an empty set of SQL. */
+    public static void setCapture(boolean on) {
+        if (on) capturedSql.clear();
+        capturing = on;
+    }
+
+    public static void reset() {
+        byScreen.clear();
+        bySite.clear();
+    }
+
+    /** Distinct SQL seen while capturing, with the call site that first ran it. */
+    public static Map<String, String> capturedSql() {
+        return capturedSql;
+    }
+
+    public static long queryCount(String screenName) {
+        Stat s = byScreen.get(screenName);
+        return s != null ? s.queries.get() : 0;
+    }
+
+    public static Map<String, Stat> byScreen() {
+        return byScreen;
+    }
+
+    public static Map<String, Stat> bySite() {
+        return bySite;
+    }
+
+    /** Throws AssertionError (with the per-site breakdown) when a screen went over budget. */
+    public static void assertQueryBudget(String screenName, int maxQueries) {
+        long n = queryCount(screenName);
+        if (n > maxQueries) {
+            throw new AssertionError(screenName + " ran " + n + " queries (budget " + maxQueries + ")\n" + dump());
+        }
+    }
+
+    public static void logScreen(String screenName) {
+        Stat s = byScreen.get(screenName);
+        if (s != null) Log.d(TAG, screenName + ": " + s);
+    }
+
+    /** Per-site table, busiest first. */
+    public static String dump() {
+        List<Map.Entry<String, Stat>> sites = new ArrayList<>(bySite.entrySet());
+        sites.sort((a, b) -> Long.compare(b.getValue().queries.get(), a.getValue().queries.get()));
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Stat> e : byScreen.entrySet()) {
+            sb.append("screen ").append(e.getKey()).append(": ").append(e.getValue()).append('\n');
+        }
+        for (Map.Entry<String, Stat> e : sites) {
+            sb.append("  ").append(e.getKey()).append(": ").append(e.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public static void logDump() {
+        Log.d(TAG, dump());
+    }
+
+    private static void record(String screenName, String site, long rows, long nanos) {
+        add(byScreen, screenName, rows, nanos);
+        add(bySite, site, rows, nanos);
+    }
+
+    private static void add(Map<String, Stat> map, String key, long rows, long nanos) {
+        Stat s = map.get(key);
+        if (s == null) {
+            map.putIfAbsent(key, new Stat());
+            s = map.get(key);
+        }
+        s.queries.incrementAndGet();
+        s.rows.addAndGet(rows);
+        s.nanos.addAndGet(nanos);
+    }
+
+    // SQLiteQuery.toString() is "SQLiteQuery: " + sql
+    private static void capture(SQLiteQuery query) {
+        String sql = query.toString();
+        if (sql.startsWith("SQLiteQuery: ")) sql = sql.substring("SQLiteQuery: ".length());
+        if (!capturedSql.containsKey(sql)) capturedSql.putIfAbsent(sql, callSite());
+    }
+
+    // innermost app frame = the helper method that opened the cursor
+    private static String callSite() {
+        for (StackTraceElement f : new Throwable().getStackTrace()) {
+            String cls = f.getClassName();
+            if (cls.startsWith(PKG) && !cls.startsWith(PKG + "QueryStats")) {
+                return cls.substring(PKG.length()) + "." + f.getMethodName();
+            }
+        }
+        return "?";
+    }
+
+    // times the first getCount() (query execution + first window fill), then records once
+    private static final class CountingCursor extends SQLiteCursor {
+        private final String screenName;
+        private final String site;
+        private boolean recorded = false;
+
+        CountingCursor(SQLiteCursorDriver driver, String editTable, SQLiteQuery query,
+                       String screenName, String site) {
+            super(driver, editTable, query);
+            this.screenName = screenName;
+            this.site = site;
+        }
+
+        @Override
+        public int getCount() {
+            if (recorded) return super.getCount();
+            long t0 = System.nanoTime();
+            int n = super.getCount();
+            recorded = true;
+            record(screenName, site, n, System.nanoTime() - t0);
+            return n;
+        }
+
+        @Override
+        public void close() {
+            if (!recorded) {
+                recorded = true;
+                record(screenName, site, 0, 0); // opened but never read
+            }
+            super.close();
+        }
+    }
+}
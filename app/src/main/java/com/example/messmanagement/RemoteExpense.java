@@ -0,0 +1,21 @@
+package com.example.messmanagement;
+
+// one expenses doc from Firestore, for batch upserts into SQLite
+public class RemoteExpense {
+    public String remoteId;
+    public String date;
+    public String title;
+    public String category;
+    public String paidBy;
+    public long amountPaisa;
+
+    public RemoteExpense(String remoteId, String date, String title,
+                         String category, String paidBy, long amountPaisa) {
+        this.remoteId = remoteId;
+        this.date = date;
+        this.title = title;
+        this.category = category;
+        this.paidBy = paidBy;
+        this.amountPaisa = amountPaisa;
+    }
+}
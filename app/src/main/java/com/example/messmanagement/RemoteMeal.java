@@ -0,0 +1,18 @@
+package com.example.messmanagement;
+
+// one meals_daily doc from Firestore, for batch upserts into SQLite
+public class RemoteMeal {
+    public String memberName;
+    public String date;
+    public int breakfast;
+    public int lunch;
+    public int dinner;
+
+    public RemoteMeal(String memberName, String date, int breakfast, int lunch, int dinner) {
+        this.memberName = memberName;
+        this.date = date;
+        this.breakfast = breakfast;
+        this.lunch = lunch;
+        this.dinner = dinner;
+    }
+}
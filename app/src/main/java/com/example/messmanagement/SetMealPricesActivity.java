@@ -31,7 +31,7 @@ public class SetMealPricesActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_set_meal_prices);
 
-        messDb = new MessDBHelper(this);
+        messDb = MessDBHelper.getInstance(this);
         fs = FirebaseFirestore.getInstance();
 
         ivBack = findViewById(R.id.ivBack);
@@ -75,8 +75,12 @@ public class SetMealPricesActivity extends AppCompatActivity {
 
             String today = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault()).format(new Date());
 
-// ✅ FIX: match MessDBHelper signature (double,double,double,String)
-            boolean localOk = messDb.insertMealPriceHistory(breakfastPrice, lunchPrice, dinnerPrice, today);
+            long breakfastPaisa = Money.paisa(breakfastPrice);
+            long lunchPaisa = Money.paisa(lunchPrice);
+            long dinnerPaisa = Money.paisa(dinnerPrice);
+
+// ✅ FIX: match MessDBHelper signature (long,long,long,String) — paisa
+            boolean localOk = messDb.insertMealPriceHistory(breakfastPaisa, lunchPaisa, dinnerPaisa, today);
             if (!localOk) {
                 Toast.makeText(this, "Failed to update meal prices (local)", Toast.LENGTH_SHORT).show();
                 return;
@@ -86,9 +90,9 @@ public class SetMealPricesActivity extends AppCompatActivity {
             // ✅ Save to Firestore so other devices sync instantly
             Map<String, Object> data = new HashMap<>();
             data.put("effectiveDate", today);
-            data.put("breakfastPrice", breakfastPrice);
-            data.put("lunchPrice", lunchPrice);
-            data.put("dinnerPrice", dinnerPrice);
+            FirestoreMoney.put(data, "breakfastPrice", breakfastPaisa);
+            FirestoreMoney.put(data, "lunchPrice", lunchPaisa);
+            FirestoreMoney.put(data, "dinnerPrice", dinnerPaisa);
             data.put("createdAt", FieldValue.serverTimestamp());
 
             fs.collection("meal_prices").document(today)
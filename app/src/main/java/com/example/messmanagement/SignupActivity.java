@@ -42,10 +42,10 @@ public class SignupActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_signup);
 
-        messDb = new MessDBHelper(this);
+        messDb = MessDBHelper.getInstance(this);
         mAuth = FirebaseAuth.getInstance();
         fs = FirebaseFirestore.getInstance();
-        kvDb = new KeyValueDB(this);
+        kvDb = KeyValueDB.getInstance(this);
 
         createdByAdmin = getIntent().getBooleanExtra("created_by_admin", false);
 
@@ -29,6 +29,37 @@ public class SyncScheduler {
         );
     }
 
+    // Call once next to startPeriodicSync; runs at most daily, idle + charging only
+    public static void scheduleDbMaintenance(Context context) {
+        PeriodicWorkRequest periodic =
+                new PeriodicWorkRequest.Builder(DbMaintenanceWorker.class, 1, TimeUnit.DAYS)
+                        .setConstraints(DbMaintenanceWorker.idleChargingConstraints())
+                        .build();
+
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                DbMaintenanceWorker.UNIQUE_WORK_NAME,
+                ExistingPeriodicWorkPolicy.KEEP,
+                periodic
+        );
+    }
+
+    // Call after a meal tap; each tap restarts the wait, so a burst of taps uploads once
+    public static void scheduleMealFlush(Context context) {
+        long windowMs = MessDBHelper.getInstance(context).getMealCoalesceWindowMs();
+
+        OneTimeWorkRequest flush =
+                new OneTimeWorkRequest.Builder(FirestoreSyncWorker.class)
+                        .setConstraints(FirestoreSyncWorker.networkConstraints())
+                        .setInitialDelay(windowMs, TimeUnit.MILLISECONDS)
+                        .build();
+
+        WorkManager.getInstance(context).enqueueUniqueWork(
+                FirestoreSyncWorker.UNIQUE_WORK_NAME + "_meals",
+                ExistingWorkPolicy.REPLACE,
+                flush
+        );
+    }
+
     // Call when user presses “Sync” button or after login
     public static void runOneTimeSyncNow(Context context) {
         Constraints constraints = FirestoreSyncWorker.networkConstraints();
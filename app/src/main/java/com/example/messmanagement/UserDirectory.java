@@ -0,0 +1,131 @@
+package com.example.messmanagement;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory lookup of users rows by username (email), for display names and
+ * profile fields. Whole profiles (without the password) are cached in a
+ * bounded LRU; MessDBHelper invalidates entries whenever it writes users.
+ */
+public class UserDirectory {
+
+    private static final int MAX_USERS = 128;
+    private static final int MAX_IN_ARGS = 500; // stay under SQLite's 999 bind limit
+
+    // cached "no such user", so repeated misses don't hit the db either
+    private static final User MISSING = new User(null, null, null, null, null, null, null, false, null);
+
+    private static final String PROFILE_COLUMNS =
+            MessDBHelper.COL_USER_ID + ", " + MessDBHelper.COL_USER_FULL_NAME + ", " +
+                    MessDBHelper.COL_USER_USERNAME + ", " + MessDBHelper.COL_USER_CONTACT + ", " +
+                    MessDBHelper.COL_USER_ADDRESS + ", " + MessDBHelper.COL_USER_PARENT_CONTACT + ", " +
+                    MessDBHelper.COL_USER_IS_ADMIN + ", " + MessDBHelper.COL_USER_STATUS;
+
+    private final MessDBHelper dbHelper;
+    private final LruCache<String, User> cache = new LruCache<>(MAX_USERS);
+
+    // bumped on every invalidation; a load that raced a write is not cached
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    UserDirectory(MessDBHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /** Cached profile, or null if there is no such user. Password is never loaded. */
+    public User get(String username) {
+        if (username == null || username.trim().isEmpty()) return null;
+
+        User cached = cache.get(username);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached == MISSING ? null : cached;
+        }
+        misses.incrementAndGet();
+
+        int gen = generation.get();
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Cursor c = db.rawQuery(
+                "SELECT " + PROFILE_COLUMNS + " FROM " + MessDBHelper.TABLE_USERS +
+                        " WHERE " + MessDBHelper.COL_USER_USERNAME + "=? LIMIT 1",
+                new String[]{username});
+        User user = c.moveToFirst() ? readProfile(c) : null;
+        c.close();
+
+        if (gen == generation.get()) cache.put(username, user != null ? user : MISSING);
+        return user;
+    }
+
+    /** Loads every not-yet-cached username with one IN (...) query per 500 names. */
+    public void preload(Collection<String> usernames) {
+        if (usernames == null || usernames.isEmpty()) return;
+
+        List<String> todo = new ArrayList<>();
+        for (String u : usernames) {
+            if (u != null && !u.trim().isEmpty() && cache.get(u) == null && !todo.contains(u)) todo.add(u);
+        }
+        if (todo.isEmpty()) return;
+
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        for (int from = 0; from < todo.size(); from += MAX_IN_ARGS) {
+            List<String> chunk = todo.subList(from, Math.min(todo.size(), from + MAX_IN_ARGS));
+
+            StringBuilder in = new StringBuilder();
+            for (int i = 0; i < chunk.size(); i++) in.append(i == 0 ? "?" : ",?");
+
+            int gen = generation.get();
+            List<User> found = new ArrayList<>();
+            Cursor c = db.rawQuery(
+                    "SELECT " + PROFILE_COLUMNS + " FROM " + MessDBHelper.TABLE_USERS +
+                            " WHERE " + MessDBHelper.COL_USER_USERNAME + " IN (" + in + ")",
+                    chunk.toArray(new String[0]));
+            while (c.moveToNext()) found.add(readProfile(c));
+            c.close();
+
+            if (gen != generation.get()) continue;
+            for (String u : chunk) cache.put(u, MISSING);
+            for (User user : found) cache.put(user.getUsername(), user);
+        }
+    }
+
+    public void invalidate(String username) {
+        generation.incrementAndGet();
+        if (username != null) cache.remove(username);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.evictAll();
+    }
+
+    public long hitCount() {
+        return hits.get();
+    }
+
+    public long missCount() {
+        return misses.get();
+    }
+
+    private static User readProfile(Cursor c) {
+        return new User(
+                c.getString(0),
+                c.getString(1),
+                c.getString(2),
+                null,
+                c.getString(3),
+                c.getString(4),
+                c.getString(5),
+                c.getInt(6) == 1,
+                c.getString(7));
+    }
+}
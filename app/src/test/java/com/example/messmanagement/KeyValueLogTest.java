@@ -0,0 +1,108 @@
+package com.example.messmanagement;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class KeyValueLogTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void badHeader_isMovedAsideAndLogKeepsPersisting() throws Exception {
+        File file = tmp.newFile("key_value.log");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("SQLite format 3\0garbage".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        KeyValueLog log = new KeyValueLog(file);
+        assertTrue(log.open().isEmpty());
+        assertTrue(log.getDiscardedFile().exists());
+
+        log.append(Collections.singletonMap("username", "a@mess.test"), null);
+        log.close();
+
+        assertEquals("a@mess.test", reopen(file).get("username"));
+    }
+
+    @Test
+    public void tornTail_isCutOffAndLaterBatchesSurvive() throws Exception {
+        File file = new File(tmp.getRoot(), "key_value.log");
+        KeyValueLog log = new KeyValueLog(file);
+        log.open();
+        log.append(map("username", "a@mess.test", "role", "member"), null);
+        log.append(map("role", "admin"), Collections.singleton("username"));
+        log.close();
+        long good = file.length();
+
+        // crash mid-write: half a record header, then a record with a bad checksum
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(good);
+            raf.write(new byte[]{0x12, 0x34, 0x56, 0x78, 1, 0, 0});
+        }
+
+        log = new KeyValueLog(file);
+        Map<String, String> live = log.open();
+        assertEquals(map("role", "admin"), live);
+        assertEquals(good, file.length());
+
+        log.append(map("is_logged_in", "true"), null);
+        log.close();
+
+        Map<String, String> after = reopen(file);
+        assertEquals("admin", after.get("role"));
+        assertEquals("true", after.get("is_logged_in"));
+        assertNull(after.get("username"));
+    }
+
+    @Test
+    public void corruptRecord_endsReplayAtLastGoodRecord() throws Exception {
+        File file = new File(tmp.getRoot(), "key_value.log");
+        KeyValueLog log = new KeyValueLog(file);
+        log.open();
+        log.append(map("username", "a@mess.test"), null);
+        long good = file.length();
+        log.append(map("role", "admin"), null);
+        log.close();
+
+        // flip one byte of the second record's value
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(file.length() - 1);
+            raf.write('X');
+        }
+
+        log = new KeyValueLog(file);
+        assertEquals(map("username", "a@mess.test"), log.open());
+        assertEquals(good, file.length());
+        log.append(map("role", "member"), null);
+        log.close();
+
+        assertEquals(map("username", "a@mess.test", "role", "member"), reopen(file));
+    }
+
+    private static Map<String, String> reopen(File file) throws Exception {
+        KeyValueLog log = new KeyValueLog(file);
+        try {
+            return log.open();
+        } finally {
+            log.close();
+        }
+    }
+
+    private static Map<String, String> map(String... kv) {
+        Map<String, String> m = new HashMap<>();
+        for (int i = 0; i < kv.length; i += 2) m.put(kv[i], kv[i + 1]);
+        return m;
+    }
+}
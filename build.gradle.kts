@@ -2,6 +2,7 @@
 
 plugins {
     alias(libs.plugins.android.application) apply false
+    alias(libs.plugins.jmh) apply false
 
     // 🔹 Add this line: plugin id + version
     id("com.google.gms.google-services") version "4.4.2" apply false
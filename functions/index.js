@@ -1,6 +1,7 @@
 const {setGlobalOptions} = require("firebase-functions/v2");
 const {onDocumentWritten} = require("firebase-functions/v2/firestore");
 const admin = require("firebase-admin");
+const {FieldValue} = require("firebase-admin/firestore");
 
 admin.initializeApp();
 
@@ -10,6 +11,10 @@ setGlobalOptions({maxInstances: 10});
 const TOPIC_ALL = "mess_all";
 const CATEGORY_PAYMENT = "PAYMENT";
 const ANDROID_CHANNEL_ID = "mess_notifications_channel";
+const FIELD_UPDATED_AT = "updatedAt";
+
+// Firestore "FAILED_PRECONDITION": the doc was written again after this event
+const FAILED_PRECONDITION = 9;
 
 /**
  * Send notification to all users (topic)
@@ -144,3 +149,76 @@ exports.notifyOnPayment = onDocumentWritten(
       }
     }
 );
+
+function sameValue(a, b) {
+  if (a === b) return true;
+  if (a == null || b == null) return false;
+  if (typeof a.isEqual === "function") return a.isEqual(b);
+  return JSON.stringify(a) === JSON.stringify(b);
+}
+
+/**
+ * true when the write changed any field other than updatedAt
+ */
+function changedOtherFields(before, after) {
+  const keys = new Set([...Object.keys(before || {}), ...Object.keys(after || {})]);
+  keys.delete(FIELD_UPDATED_AT);
+  for (const key of keys) {
+    if (!sameValue(before && before[key], after && after[key])) return true;
+  }
+  return false;
+}
+
+/**
+ * ✅ updatedAt STAMP
+ * PullSync only reads docs whose updatedAt is past its mark, so a write from an
+ * app version that doesn't set updatedAt would never reach other devices.
+ * Stamps server time when a write changed the doc but left updatedAt alone.
+ * No loop: the stamp itself changes updatedAt, so its own trigger returns.
+ * Deletes are ignored (PullSync never applies removals).
+ */
+async function stampUpdatedAt(event) {
+  const after = event.data.after;
+  if (!after.exists) return;
+
+  const before = event.data.before.exists ? event.data.before.data() : null;
+  const data = after.data();
+
+  // the writer (current app, or this function) set it
+  const stamped = data[FIELD_UPDATED_AT];
+  if (stamped && !sameValue(stamped, before && before[FIELD_UPDATED_AT])) return;
+  if (before && !changedOtherFields(before, data)) return;
+
+  try {
+    // only if nothing wrote the doc since; a newer write gets its own event
+    await after.ref.update(
+        {[FIELD_UPDATED_AT]: FieldValue.serverTimestamp()},
+        {lastUpdateTime: after.updateTime}
+    );
+  } catch (e) {
+    if (e.code === FAILED_PRECONDITION) return;
+    throw e;
+  }
+}
+
+exports.stampMealUpdatedAt = onDocumentWritten(
+    "meals_daily/{docId}",
+    async (event) => {
+      try {
+        await stampUpdatedAt(event);
+      } catch (e) {
+        console.error("stampMealUpdatedAt error:", e);
+      }
+    }
+);
+
+exports.stampExpenseUpdatedAt = onDocumentWritten(
+    "expenses/{expenseId}",
+    async (event) => {
+      try {
+        await stampUpdatedAt(event);
+      } catch (e) {
+        console.error("stampExpenseUpdatedAt error:", e);
+      }
+    }
+);
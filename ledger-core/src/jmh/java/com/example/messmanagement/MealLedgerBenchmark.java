@@ -0,0 +1,99 @@
+package com.example.messmanagement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ledger throughput (ledgers/s) for a month or a year of meals and expenses,
+ * 10-500 members, a price change roughly every 45 days. Fixed seed, so runs compare.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MealLedgerBenchmark {
+
+    @Param({"10", "50", "100", "500"})
+    public int members;
+
+    @Param({"month", "year"})
+    public String period;
+
+    private String[] names;
+    private int[] mealMember, mealDay, breakfast, lunch, dinner;
+    private int[] expenseMember;
+    private long[] expenseAmount; // paisa
+    private boolean[] expenseIsPayment;
+    private MealLedger.PriceTable prices;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(42);
+        int months = "year".equals(period) ? 12 : 1;
+        int days = months * 30;
+
+        names = new String[members];
+        for (int i = 0; i < members; i++) names[i] = "member" + i + "@mess.test";
+
+        int priceCount = 1 + days / 45;
+        int[] from = new int[priceCount];
+        long[] b = new long[priceCount], l = new long[priceCount], d = new long[priceCount];
+        for (int i = 0; i < priceCount; i++) {
+            from[i] = dayOf(i * 45);
+            b[i] = (40 + rnd.nextInt(20)) * 100L;
+            l[i] = (120 + rnd.nextInt(60)) * 100L;
+            d[i] = (120 + rnd.nextInt(60)) * 100L;
+        }
+        prices = new MealLedger.PriceTable(from, b, l, d);
+
+        int rows = members * days;
+        mealMember = new int[rows];
+        mealDay = new int[rows];
+        breakfast = new int[rows];
+        lunch = new int[rows];
+        dinner = new int[rows];
+        int r = 0;
+        for (int day = 0; day < days; day++) {
+            for (int m = 0; m < members; m++, r++) {
+                mealMember[r] = m;
+                mealDay[r] = dayOf(day);
+                breakfast[r] = rnd.nextDouble() < 0.7 ? 1 : 0;
+                lunch[r] = rnd.nextDouble() < 0.9 ? 1 : 0;
+                dinner[r] = rnd.nextDouble() < 0.85 ? 1 : 0;
+            }
+        }
+
+        // a bazar most days + two payments per member per month
+        int expenses = days + members * 2 * months;
+        expenseMember = new int[expenses];
+        expenseAmount = new long[expenses];
+        expenseIsPayment = new boolean[expenses];
+        for (int i = 0; i < expenses; i++) {
+            boolean payment = i >= days;
+            expenseMember[i] = payment ? (i - days) % members : rnd.nextInt(members);
+            expenseAmount[i] = (payment ? 1000 + rnd.nextInt(4000) : 300 + rnd.nextInt(2200)) * 100L;
+            expenseIsPayment[i] = payment;
+        }
+    }
+
+    // day n of the synthetic period as yyyyMMdd (30-day months are enough here)
+    private static int dayOf(int n) {
+        return 2025_00_00 + (1 + n / 30) * 100 + (1 + n % 30);
+    }
+
+    @Benchmark
+    public Summary[] ledger() {
+        return MealLedger.ledger(names,
+                mealMember, mealDay, breakfast, lunch, dinner,
+                prices,
+                expenseMember, expenseAmount, expenseIsPayment);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.messmanagement;
+
+/**
+ * Meal-cost and balance math, with no Android (or database) dependency.
+ *
+ * Inputs are parallel primitive arrays (one index per meal row / expense row),
+ * days are yyyyMMdd ints (see day(String)), members are indexes into the
+ * members array and money is in paisa (see Money). The same call gives a month
+ * or a year ledger depending on which rows are passed in.
+ *
+ * MessDBHelper's SQL rollup and MonthlySummaryActivity's Firestore path both
+ * end up here, so the two always agree on how a Summary is built.
+ */
+public final class MealLedger {
+
+    // same defaults as the v1 meal_prices row (paisa), used before any price is effective
+    public static final long DEFAULT_BREAKFAST_PRICE = 5000;
+    public static final long DEFAULT_LUNCH_PRICE = 15000;
+    public static final long DEFAULT_DINNER_PRICE = 15000;
+
+    private MealLedger() { }
+
+    /** Price history (paisa): from[i] (yyyyMMdd, ascending) is the first day prices[i] apply. */
+    public static final class PriceTable {
+        public final int[] from;
+        public final long[] breakfast;
+        public final long[] lunch;
+        public final long[] dinner;
+
+        public PriceTable(int[] from, long[] breakfast, long[] lunch, long[] dinner) {
+            this.from = from;
+            this.breakfast = breakfast;
+            this.lunch = lunch;
+            this.dinner = dinner;
+        }
+
+        /** One price for every day. */
+        public static PriceTable flat(long breakfast, long lunch, long dinner) {
+            return new PriceTable(new int[]{0}, new long[]{breakfast}, new long[]{lunch}, new long[]{dinner});
+        }
+
+        /** Index of the price effective on day (latest from <= day), or -1 if none yet. */
+        public int indexOn(int day) {
+            int lo = 0, hi = from.length - 1, found = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (from[mid] <= day) {
+                    found = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return found;
+        }
+
+        public long mealCost(int day, int b, int l, int d) {
+            int i = indexOn(day);
+            if (i < 0) {
+                return b * DEFAULT_BREAKFAST_PRICE + l * DEFAULT_LUNCH_PRICE + d * DEFAULT_DINNER_PRICE;
+            }
+            return b * breakfast[i] + l * lunch[i] + d * dinner[i];
+        }
+    }
+
+    /**
+     * One Summary per member (same order as members).
+     * Meal rows are priced on their own day; rows whose member index is out of
+     * range (not a known member) are skipped.
+     */
+    public static Summary[] ledger(String[] members,
+                                   int[] mealMember, int[] mealDay,
+                                   int[] breakfast, int[] lunch, int[] dinner,
+                                   PriceTable prices,
+                                   int[] expenseMember, long[] expenseAmount, boolean[] expenseIsPayment) {
+        int n = members.length;
+        int[] b = new int[n], l = new int[n], d = new int[n];
+        long[] mealCost = new long[n], other = new long[n], paid = new long[n];
+
+        for (int i = 0; i < mealMember.length; i++) {
+            int m = mealMember[i];
+            if (m < 0 || m >= n) continue;
+            b[m] += breakfast[i];
+            l[m] += lunch[i];
+            d[m] += dinner[i];
+            mealCost[m] += prices.mealCost(mealDay[i], breakfast[i], lunch[i], dinner[i]);
+        }
+
+        for (int i = 0; i < expenseMember.length; i++) {
+            int m = expenseMember[i];
+            if (m < 0 || m >= n) continue;
+            if (expenseIsPayment[i]) paid[m] += expenseAmount[i];
+            else other[m] += expenseAmount[i];
+        }
+
+        Summary[] out = new Summary[n];
+        for (int m = 0; m < n; m++) {
+            out[m] = summary(members[m], b[m], l[m], d[m], mealCost[m], other[m], paid[m]);
+        }
+        return out;
+    }
+
+    /**
+     * Totals a member's month in paisa: cost = meals + own other expenses,
+     * balance = cost - paid. The Summary carries taka for display.
+     */
+    public static Summary summary(String member, int breakfast, int lunch, int dinner,
+                                  long mealCost, long otherExpenses, long paid) {
+        long totalCost = mealCost + otherExpenses;
+        return new Summary(member, breakfast, lunch, dinner,
+                Money.taka(mealCost), Money.taka(otherExpenses), Money.taka(paid),
+                Money.taka(totalCost), Money.taka(balance(totalCost, paid)));
+    }
+
+    /** Positive = still due, negative = paid in advance. */
+    public static long balance(long totalCost, long paid) {
+        return totalCost - paid;
+    }
+
+    /** Same, for taka totals read back from MessDBHelper's getters. */
+    public static double balance(double totalCost, double paid) {
+        return totalCost - paid;
+    }
+
+    public static ExpenseBreakdown breakdown(Summary s) {
+        ExpenseBreakdown breakdown = new ExpenseBreakdown();
+        breakdown.breakfastCount = s.breakfast;
+        breakdown.lunchCount = s.lunch;
+        breakdown.dinnerCount = s.dinner;
+        breakdown.mealCost = s.mealCost;
+        breakdown.otherExpensesShare = s.otherShare;
+        breakdown.paidAmount = s.paid;
+        breakdown.totalCost = s.totalCost;
+        breakdown.balance = s.balance;
+        return breakdown;
+    }
+
+    /** "yyyy-MM-dd" (anything after the day is ignored) -> yyyyMMdd; 0 if it doesn't parse. */
+    public static int day(String date) {
+        if (date == null || date.length() < 10) return 0;
+        int y = digits(date, 0, 4), m = digits(date, 5, 7), d = digits(date, 8, 10);
+        if (y < 0 || m < 0 || d < 0) return 0;
+        return y * 10000 + m * 100 + d;
+    }
+
+    private static int digits(String s, int from, int to) {
+        int v = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+}
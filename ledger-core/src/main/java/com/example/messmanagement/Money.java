@@ -0,0 +1,41 @@
+package com.example.messmanagement;
+
+import java.util.Locale;
+
+/**
+ * Money is stored and summed as whole paisa (1/100 taka) in a long, so month
+ * totals are exact. Doubles only appear at the edges: user input, display and
+ * Firestore docs written before amounts had a paisa field.
+ */
+public final class Money {
+
+    public static final long PAISA_PER_TAKA = 100;
+
+    private Money() { }
+
+    /** Taka (user input, legacy Firestore doubles) -> paisa, rounded half up. */
+    public static long paisa(double taka) {
+        return Math.round(taka * PAISA_PER_TAKA);
+    }
+
+    public static double taka(long paisa) {
+        return paisa / (double) PAISA_PER_TAKA;
+    }
+
+    /**
+     * Firestore compatibility: the integer paisa field when the doc has one,
+     * else the legacy double taka field, else 0.
+     */
+    public static long fromRemote(Number paisa, Number taka) {
+        if (paisa != null) return paisa.longValue();
+        if (taka != null) return paisa(taka.doubleValue());
+        return 0;
+    }
+
+    /** "150" or "150.50" (no currency sign). */
+    public static String plain(long paisa) {
+        long whole = paisa / PAISA_PER_TAKA, frac = Math.abs(paisa % PAISA_PER_TAKA);
+        String sign = paisa < 0 && whole == 0 ? "-" : "";
+        return frac == 0 ? sign + whole : String.format(Locale.US, "%s%d.%02d", sign, whole, frac);
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.messmanagement;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MealLedgerTest {
+
+    private static final double EPS = 1e-9;
+
+    // 50/150/150 taka from Jan 1, 60/160/160 from Jan 15, 70/170/170 from Feb 1
+    private static final MealLedger.PriceTable PRICES = new MealLedger.PriceTable(
+            new int[]{20240101, 20240115, 20240201},
+            new long[]{5000, 6000, 7000},
+            new long[]{15000, 16000, 17000},
+            new long[]{15000, 16000, 17000});
+
+    @Test
+    public void indexOn_picksLatestPriceEffectiveOnDay() {
+        assertEquals(-1, PRICES.indexOn(20231231));
+        assertEquals(0, PRICES.indexOn(20240101));
+        assertEquals(0, PRICES.indexOn(20240114));
+        assertEquals(1, PRICES.indexOn(20240115));
+        assertEquals(1, PRICES.indexOn(20240131));
+        assertEquals(2, PRICES.indexOn(20240201));
+        assertEquals(2, PRICES.indexOn(20991231));
+    }
+
+    @Test
+    public void mealCost_usesDefaultsBeforeFirstPrice() {
+        long expected = MealLedger.DEFAULT_BREAKFAST_PRICE + 2 * MealLedger.DEFAULT_LUNCH_PRICE
+                + MealLedger.DEFAULT_DINNER_PRICE;
+        assertEquals(expected, PRICES.mealCost(20231231, 1, 2, 1));
+    }
+
+    @Test
+    public void mealCost_pricesEachDayAtBoundary() {
+        assertEquals(5000 + 15000 + 15000, PRICES.mealCost(20240114, 1, 1, 1));
+        assertEquals(6000 + 16000 + 16000, PRICES.mealCost(20240115, 1, 1, 1));
+        assertEquals(0, PRICES.mealCost(20240115, 0, 0, 0));
+    }
+
+    @Test
+    public void flat_appliesToEveryDay() {
+        MealLedger.PriceTable flat = MealLedger.PriceTable.flat(1000, 2000, 3000);
+        assertEquals(0, flat.indexOn(MealLedger.day("2000-01-01")));
+        assertEquals(6000, flat.mealCost(MealLedger.day("2031-12-31"), 1, 1, 1));
+    }
+
+    @Test
+    public void ledger_pricesMealsOnTheirOwnDay() {
+        Summary[] out = MealLedger.ledger(new String[]{"a@mess.test"},
+                new int[]{0, 0, 0}, new int[]{20240114, 20240115, 20240201},
+                new int[]{1, 1, 0}, new int[]{1, 0, 1}, new int[]{0, 1, 1},
+                PRICES,
+                new int[0], new long[0], new boolean[0]);
+
+        Summary s = out[0];
+        assertEquals(2, s.breakfast);
+        assertEquals(2, s.lunch);
+        assertEquals(2, s.dinner);
+        // 50+150 on Jan 14, 60+160 on Jan 15, 170+170 on Feb 1
+        assertEquals(200 + 220 + 340, s.mealCost, EPS);
+        assertEquals(s.mealCost, s.totalCost, EPS);
+        assertEquals(s.totalCost, s.balance, EPS);
+    }
+
+    @Test
+    public void ledger_memberWithNoMealsHasZeroCost() {
+        Summary[] out = MealLedger.ledger(new String[]{"a@mess.test", "b@mess.test"},
+                new int[]{0}, new int[]{20240110}, new int[]{1}, new int[]{1}, new int[]{1},
+                PRICES,
+                new int[]{1}, new long[]{50000}, new boolean[]{true});
+
+        Summary b = out[1];
+        assertEquals("b@mess.test", b.memberName);
+        assertEquals(0, b.breakfast + b.lunch + b.dinner);
+        assertEquals(0.0, b.mealCost, EPS);
+        assertEquals(0.0, b.totalCost, EPS);
+        assertEquals(500.0, b.paid, EPS);
+        assertEquals(-500.0, b.balance, EPS); // paid in advance
+    }
+
+    @Test
+    public void ledger_emptyMonthIsAllZero() {
+        Summary[] out = MealLedger.ledger(new String[]{"a@mess.test"},
+                new int[0], new int[0], new int[0], new int[0], new int[0],
+                PRICES,
+                new int[0], new long[0], new boolean[0]);
+
+        Summary s = out[0];
+        assertEquals(0, s.breakfast + s.lunch + s.dinner);
+        assertEquals(0.0, s.totalCost, EPS);
+        assertEquals(0.0, s.paid, EPS);
+        assertEquals(0.0, s.balance, EPS);
+    }
+
+    @Test
+    public void ledger_separatesPaymentsFromOtherExpenses() {
+        Summary[] out = MealLedger.ledger(new String[]{"a@mess.test"},
+                new int[]{0}, new int[]{20240201}, new int[]{0}, new int[]{1}, new int[]{0},
+                PRICES,
+                new int[]{0, 0, 0, 0}, new long[]{12050, 30000, 20000, 7525},
+                new boolean[]{false, true, true, false});
+
+        Summary s = out[0];
+        assertEquals(170.0, s.mealCost, EPS);
+        assertEquals(120.50 + 75.25, s.otherShare, EPS);
+        assertEquals(500.0, s.paid, EPS);
+        assertEquals(170.0 + 195.75, s.totalCost, EPS);
+        assertEquals(170.0 + 195.75 - 500.0, s.balance, EPS);
+    }
+
+    @Test
+    public void ledger_skipsRowsOfUnknownMembers() {
+        Summary[] out = MealLedger.ledger(new String[]{"a@mess.test"},
+                new int[]{-1, 1, 0}, new int[]{20240110, 20240110, 20240110},
+                new int[]{1, 1, 1}, new int[]{0, 0, 0}, new int[]{0, 0, 0},
+                PRICES,
+                new int[]{-1, 1}, new long[]{10000, 10000}, new boolean[]{true, false});
+
+        Summary s = out[0];
+        assertEquals(1, s.breakfast);
+        assertEquals(50.0, s.mealCost, EPS);
+        assertEquals(0.0, s.paid, EPS);
+        assertEquals(0.0, s.otherShare, EPS);
+    }
+
+    @Test
+    public void breakdown_copiesSummary() {
+        Summary s = MealLedger.summary("a@mess.test", 1, 2, 3, 45000, 1050, 20000);
+        ExpenseBreakdown b = MealLedger.breakdown(s);
+
+        assertEquals(1, b.breakfastCount);
+        assertEquals(2, b.lunchCount);
+        assertEquals(3, b.dinnerCount);
+        assertEquals(450.0, b.mealCost, EPS);
+        assertEquals(10.50, b.otherExpensesShare, EPS);
+        assertEquals(200.0, b.paidAmount, EPS);
+        assertEquals(460.50, b.totalCost, EPS);
+        assertEquals(260.50, b.balance, EPS);
+    }
+
+    @Test
+    public void day_parsesDateAndRejectsGarbage() {
+        assertEquals(20240229, MealLedger.day("2024-02-29"));
+        assertEquals(20240229, MealLedger.day("2024-02-29T10:00:00"));
+        assertEquals(0, MealLedger.day("2024-2-29"));
+        assertEquals(0, MealLedger.day("2024-xx-29"));
+        assertEquals(0, MealLedger.day(null));
+    }
+}
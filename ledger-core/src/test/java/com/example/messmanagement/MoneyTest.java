@@ -0,0 +1,50 @@
+package com.example.messmanagement;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MoneyTest {
+
+    @Test
+    public void paisa_roundsToNearestPaisa() {
+        assertEquals(15000, Money.paisa(150));
+        assertEquals(1999, Money.paisa(19.99));        // 1998.9999999999998 before rounding
+        assertEquals(30, Money.paisa(0.1 + 0.2));       // 30.000000000000004
+        assertEquals(1234, Money.paisa(12.3449));
+        assertEquals(1235, Money.paisa(12.345 + 1e-9));
+    }
+
+    @Test
+    public void paisa_roundsHalfUp() {
+        assertEquals(1013, Money.paisa(10.125));        // exact in binary: 1012.5
+        assertEquals(-1012, Money.paisa(-10.125));      // Math.round: half goes toward +infinity
+    }
+
+    @Test
+    public void taka_isExactInverseForWholePaisa() {
+        assertEquals(19.99, Money.taka(1999), 0.0);
+        assertEquals(-0.05, Money.taka(-5), 0.0);
+        for (long p = -10000; p <= 10000; p += 7) {
+            assertEquals(p, Money.paisa(Money.taka(p)));
+        }
+    }
+
+    @Test
+    public void fromRemote_prefersPaisaField() {
+        assertEquals(12345, Money.fromRemote(12345L, 999.0));
+        assertEquals(12346, Money.fromRemote(null, 123.456));
+        assertEquals(0, Money.fromRemote(null, null));
+    }
+
+    @Test
+    public void plain_formatsWholeAndFractionalTaka() {
+        assertEquals("150", Money.plain(15000));
+        assertEquals("150.50", Money.plain(15050));
+        assertEquals("0.05", Money.plain(5));
+        assertEquals("0", Money.plain(0));
+        assertEquals("-150.50", Money.plain(-15050));
+        assertEquals("-0.50", Money.plain(-50));
+        assertEquals("-150", Money.plain(-15000));
+    }
+}
@@ -21,4 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "Mess Management"
 include(":app")
+include(":ledger-core")
  
\ No newline at end of file